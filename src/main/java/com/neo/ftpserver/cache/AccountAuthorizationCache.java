@@ -0,0 +1,175 @@
+package com.neo.ftpserver.cache;
+
+import com.neo.ftpserver.constans.FtpCommand;
+import com.neo.ftpserver.constans.PasswordScheme;
+import com.neo.ftpserver.dto.AccountFtpDto;
+import com.neo.ftpserver.dto.AccountFtpRoleDto;
+import com.neo.ftpserver.permission.AccountAuthorization;
+import com.neo.ftpserver.permission.Credential;
+import com.neo.ftpserver.permission.IpMatcher;
+import com.neo.ftpserver.util.HomeDirectoryUtils;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Biên dịch AccountFtpCache + AccountFtpRoleCache thành AccountAuthorization cho từng account,
+ * để đường xử lý lệnh chỉ còn một lần tra map và kiểm tra bit.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AccountAuthorizationCache {
+
+    private final AccountFtpCache accountFtpCache;
+    private final AccountFtpRoleCache accountFtpRoleCache;
+
+    private volatile ConcurrentHashMap<String, AccountAuthorization> snapshot = new ConcurrentHashMap<>();
+    // Credential giả theo scheme/chi phí phổ biến nhất trong snapshot, dùng khi account không tồn tại
+    private volatile Credential dummyCredential = Credential.dummyLike(Credential.parse("0".repeat(64)));
+
+    @PostConstruct
+    public void init() {
+        rebuildAll();
+        accountFtpCache.addRefreshListener(this::onAccountRefresh);
+        // Role thay đổi ảnh hưởng tới mọi account dùng role đó → biên dịch lại toàn bộ
+        accountFtpRoleCache.addRefreshListener(changedKeys -> rebuildAll());
+    }
+
+    public AccountAuthorization get(String account) {
+        return account != null ? snapshot.get(account) : null;
+    }
+
+    public int size() {
+        return snapshot.size();
+    }
+
+    public Credential getDummyCredential() {
+        return dummyCredential;
+    }
+
+    private synchronized void onAccountRefresh(Collection<String> changedKeys) {
+        if (changedKeys == null) {
+            rebuildAll();
+            return;
+        }
+        ConcurrentHashMap<String, AccountAuthorization> current = snapshot;
+        for (String account : changedKeys) {
+            AccountFtpDto dto = accountFtpCache.getObject(account);
+            if (dto == null) {
+                current.remove(account);
+            } else {
+                current.put(account, compile(dto));
+            }
+        }
+        refreshDummyCredential(current.values());
+    }
+
+    /**
+     * Biên dịch lại toàn bộ account và swap snapshot (loại bỏ luôn account đã bị xóa)
+     */
+    public synchronized void rebuildAll() {
+        Instant start = Instant.now();
+        ConcurrentHashMap<String, AccountAuthorization> next = new ConcurrentHashMap<>();
+        for (Map.Entry<String, AccountFtpDto> entry : accountFtpCache.getCache().entrySet()) {
+            try {
+                next.put(entry.getKey(), compile(entry.getValue()));
+            } catch (Exception e) {
+                log.error(">> Compile authorization failed for account {}", entry.getKey(), e);
+            }
+        }
+        snapshot = next;
+        refreshDummyCredential(next.values());
+        log.info(">> Authorization snapshot rebuilt: {} accounts, time: {}ms", next.size(), Duration.between(start, Instant.now()).toMillis());
+    }
+
+    /**
+     * Chọn nhóm (scheme, chi phí) đông account nhất làm mẫu cho credential giả; chưa có account thì dùng SHA256
+     */
+    private void refreshDummyCredential(Collection<AccountAuthorization> authorizations) {
+        Map<String, Integer> counts = new HashMap<>();
+        Map<String, Credential> templates = new HashMap<>();
+        String best = null;
+        for (AccountAuthorization authorization : authorizations) {
+            Credential credential = authorization.getCredential();
+            if (credential == null || credential.getScheme() == PasswordScheme.UNSUPPORTED) {
+                continue;
+            }
+            String key = credential.costKey();
+            templates.putIfAbsent(key, credential);
+            int count = counts.merge(key, 1, Integer::sum);
+            if (best == null || count > counts.get(best)) {
+                best = key;
+            }
+        }
+        if (best != null) {
+            dummyCredential = Credential.dummyLike(templates.get(best));
+            log.info(">> Dummy credential for unknown accounts: {}", best);
+        }
+    }
+
+    private AccountAuthorization compile(AccountFtpDto dto) {
+        AccountFtpRoleDto role = dto.getRoleAccess() != null ? accountFtpRoleCache.getObject(dto.getRoleAccess()) : null;
+        EnumSet<FtpCommand> denied = EnumSet.noneOf(FtpCommand.class);
+        Set<String> deniedOther = new HashSet<>();
+        if (role != null && role.getCmdsDenied() != null) {
+            for (String token : role.getCmdsDenied().split("[,;\\s]+")) {
+                if (token.isEmpty()) {
+                    continue;
+                }
+                FtpCommand command = FtpCommand.of(token);
+                if (command != null) {
+                    denied.add(command);
+                } else {
+                    deniedOther.add(token.toUpperCase());
+                }
+            }
+        }
+        // typeConnect: 1 = FTP only, 2 = FTPS only, 3 = Both; không cấu hình thì chặn cả hai
+        Integer type = dto.getTypeConnect();
+        boolean ftpAllowed = type != null && (type == 1 || type == 3);
+        boolean ftpsAllowed = type != null && (type == 2 || type == 3);
+        return AccountAuthorization.builder()
+                .account(dto.getAccount())
+                .enabled(dto.getStatus() != null && dto.getStatus() == 1)
+                .roleAccess(dto.getRoleAccess())
+                .writeEnable(role == null || !Boolean.FALSE.equals(role.getWriteEnable()))
+                .deniedCommands(denied)
+                .deniedOtherCommands(Set.copyOf(deniedOther))
+                .ipMatcher(IpMatcher.compile(dto.getIpList()))
+                .ftpAllowed(ftpAllowed)
+                .ftpsAllowed(ftpsAllowed)
+                .homeDirectory(HomeDirectoryUtils.resolveHomeDirectory(dto).toString())
+                .credential(Credential.parse(dto.getPassword()))
+                .maxUploadRate(limit(dto.getMaxUploadRate(), role != null ? role.getMaxUploadRate() : null))
+                .maxDownloadRate(limit(dto.getMaxDownloadRate(), role != null ? role.getMaxDownloadRate() : null))
+                .maxLogins((int) limit(toLong(dto.getMaxLogins()), role != null ? toLong(role.getMaxLogins()) : null))
+                .maxLoginsPerIp((int) limit(toLong(dto.getMaxLoginsPerIp()), role != null ? toLong(role.getMaxLoginsPerIp()) : null))
+                .build();
+    }
+
+    /**
+     * Giới hạn của account (nếu > 0) ưu tiên hơn của role, không cấu hình thì 0 = không giới hạn
+     */
+    private static long limit(Long accountValue, Long roleValue) {
+        if (accountValue != null && accountValue > 0) {
+            return accountValue;
+        }
+        return roleValue != null && roleValue > 0 ? roleValue : 0;
+    }
+
+    private static Long toLong(Integer value) {
+        return value == null ? null : value.longValue();
+    }
+}
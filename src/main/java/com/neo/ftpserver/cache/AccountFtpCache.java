@@ -7,6 +7,7 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -26,7 +27,24 @@ public class AccountFtpCache extends CacheSwapService<AccountFtpDto> {
         return map;
     }
 
-    @Scheduled(fixedDelayString = "10000")
+    @Override
+    protected List<AccountFtpDto> fetchChangedSince(LocalDateTime since) {
+        // Dùng >= để không bỏ sót bản ghi commit muộn cùng mốc thời gian, ghi đè lại là vô hại
+        String sql = "SELECT * FROM ACCOUNT_FTP WHERE UPDATED_DATE >= ?";
+        return jdbcTemplate.query(sql, new BeanPropertyRowMapper<>(AccountFtpDto.class), since);
+    }
+
+    @Override
+    protected String keyOf(AccountFtpDto item) {
+        return item.getAccount();
+    }
+
+    @Override
+    protected LocalDateTime updatedDateOf(AccountFtpDto item) {
+        return item.getUpdatedDate();
+    }
+
+    @Scheduled(fixedDelayString = "${cache.refresh.interval:10000}")
     public void forceRefresh() {
         super.forceRefresh();
     }
@@ -27,7 +27,7 @@ public class AccountFtpRoleCache extends CacheSwapService<AccountFtpRoleDto> {
         return map;
     }
 
-    @Scheduled(fixedDelayString = "10000")
+    @Scheduled(fixedDelayString = "${cache.refresh.interval:10000}")
     public void forceRefresh() {
         super.forceRefresh();
     }
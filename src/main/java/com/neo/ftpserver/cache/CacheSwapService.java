@@ -1,13 +1,23 @@
 package com.neo.ftpserver.cache;
 
+import com.neo.ftpserver.intf.CacheRefreshListener;
 import com.neo.ftpserver.intf.CacheService;
+import com.neo.ftpserver.metrics.LatencyHistogram;
 import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 @Slf4j
@@ -16,11 +26,53 @@ public abstract class CacheSwapService<T> implements CacheService<T> {
     //** AtomicReference thuộc generic
 
     private final AtomicReference<ConcurrentHashMap<String, T>> activeCache = new AtomicReference<>(new ConcurrentHashMap<>());
-    private final AtomicReference<ConcurrentHashMap<String, T>> stagingCache = new AtomicReference<>(new ConcurrentHashMap<>());
+
+    // Bật/tắt chế độ làm mới tăng dần (chỉ lấy các bản ghi thay đổi sau watermark)
+    @Value("${cache.refresh.incremental:true}")
+    private boolean incremental;
+
+    // Chu kỳ đối soát toàn bộ bảng để phát hiện bản ghi bị xóa
+    @Value("${cache.refresh.full-reconcile-interval:300000}")
+    private long fullReconcileInterval;
+
+    // Mốc thời gian updatedDate lớn nhất đã nạp vào cache
+    private volatile LocalDateTime watermark;
+    private volatile long lastFullRefreshAt;
+
+    private final List<CacheRefreshListener> listeners = new CopyOnWriteArrayList<>();
+
+    // Thống kê làm mới cache
+    private final AtomicLong fullRefreshCount = new AtomicLong();
+    private final AtomicLong deltaRefreshCount = new AtomicLong();
+    private final AtomicLong failedRefreshCount = new AtomicLong();
+    private volatile long lastRefreshDurationMs;
+    private volatile int lastRefreshRows;
+    private final LatencyHistogram refreshDurations = new LatencyHistogram();
 
     // Phương thức trừu tượng để lấy dữ liệu từ cơ sở dữ liệu
     protected abstract ConcurrentHashMap<String, T> fetchDataFromDB();
 
+    /**
+     * Lấy các bản ghi thay đổi kể từ watermark. Trả về null nếu cache không hỗ trợ làm mới tăng dần.
+     */
+    protected List<T> fetchChangedSince(LocalDateTime since) {
+        return null;
+    }
+
+    /**
+     * Khóa của bản ghi trong cache (dùng khi áp dụng delta)
+     */
+    protected String keyOf(T item) {
+        return null;
+    }
+
+    /**
+     * Thời điểm cập nhật của bản ghi, dùng để tiến watermark
+     */
+    protected LocalDateTime updatedDateOf(T item) {
+        return null;
+    }
+
     @Override
     public ConcurrentHashMap<String, T> getCache() {
         return activeCache.get();
@@ -31,7 +83,23 @@ public abstract class CacheSwapService<T> implements CacheService<T> {
     }
 
     public void cacheDataSync() {
-        ConcurrentHashMap<String, T> currentStaging = stagingCache.get();
+        if (isDeltaDue()) {
+            deltaSync();
+        } else {
+            fullSync();
+        }
+    }
+
+    private boolean isDeltaDue() {
+        return incremental
+                && watermark != null
+                && System.currentTimeMillis() - lastFullRefreshAt < fullReconcileInterval;
+    }
+
+    /**
+     * Nạp lại toàn bộ bảng và swap cache - đồng thời là bước đối soát bản ghi bị xóa
+     */
+    private void fullSync() {
         try {
             Instant startTime = Instant.now();
             log.debug(">> Start cache update for {}", this.getClass().getSimpleName());
@@ -43,23 +111,92 @@ public abstract class CacheSwapService<T> implements CacheService<T> {
                 log.warn(">> Fetched data is empty/null, keeping current cache (size: {})", currentSize);
                 return;
             }
-            // Prepare staging buffer
-            currentStaging.clear();
-            currentStaging.putAll(newData);
-            int newStagingSize = currentStaging.size();
-            // ATOMIC SWAP - Double buffering magic happens here
-            ConcurrentHashMap<String, T> previousActive = activeCache.getAndSet(currentStaging);
-            stagingCache.set(previousActive);
-            // Log with accurate sizes (captured before potential race conditions)
+            // ATOMIC SWAP - map mới được dựng riêng nên swap trực tiếp, không cần copy sang staging
+            ConcurrentHashMap<String, T> previousActive = activeCache.getAndSet(newData);
+            watermark = maxUpdatedDate(newData.values(), null);
+            lastFullRefreshAt = System.currentTimeMillis();
             long duration = Duration.between(startTime, Instant.now()).toMillis();
-            log.info(">> Cache swapped successfully for {}: {} → {} items, time: {}ms", this.getClass().getSimpleName(), previousActive.size(), newStagingSize, duration);
+            recordRefresh(fullRefreshCount, duration, newData.size());
+            log.info(">> Cache swapped successfully for {}: {} → {} items, time: {}ms", this.getClass().getSimpleName(), previousActive.size(), newData.size(), duration);
+            // Chỉ báo cho listener khi dữ liệu thực sự khác đi
+            if (!previousActive.equals(newData)) {
+                notifyListeners(null);
+            }
         } catch (Exception e) {
+            failedRefreshCount.incrementAndGet();
             // Capture size before logging to avoid potential race
             int currentSize = activeCache.get().size();
             log.error(">> Cache update failed for {}, keeping current cache (size: {})", this.getClass().getSimpleName(), currentSize, e);
         }
     }
 
+    /**
+     * Chỉ lấy các bản ghi có updatedDate >= watermark và ghi đè vào cache đang active
+     */
+    private void deltaSync() {
+        try {
+            Instant startTime = Instant.now();
+            List<T> changed = fetchChangedSince(watermark);
+            if (changed == null) {
+                // Subclass không hỗ trợ delta → quay về nạp toàn bộ
+                fullSync();
+                return;
+            }
+            ConcurrentHashMap<String, T> active = activeCache.get();
+            List<String> changedKeys = new ArrayList<>(changed.size());
+            for (T item : changed) {
+                String key = keyOf(item);
+                if (key != null && !item.equals(active.put(key, item))) {
+                    changedKeys.add(key);
+                }
+            }
+            watermark = maxUpdatedDate(changed, watermark);
+            long duration = Duration.between(startTime, Instant.now()).toMillis();
+            recordRefresh(deltaRefreshCount, duration, changed.size());
+            if (!changed.isEmpty()) {
+                log.info(">> Cache delta applied for {}: {} rows, size: {}, time: {}ms", this.getClass().getSimpleName(), changed.size(), active.size(), duration);
+            }
+            if (!changedKeys.isEmpty()) {
+                notifyListeners(changedKeys);
+            }
+        } catch (Exception e) {
+            failedRefreshCount.incrementAndGet();
+            log.error(">> Cache delta update failed for {}, keeping current cache (size: {})", this.getClass().getSimpleName(), activeCache.get().size(), e);
+        }
+    }
+
+    public void addRefreshListener(CacheRefreshListener listener) {
+        listeners.add(listener);
+    }
+
+    private void notifyListeners(Collection<String> changedKeys) {
+        for (CacheRefreshListener listener : listeners) {
+            try {
+                listener.onRefresh(changedKeys);
+            } catch (Exception e) {
+                log.error(">> Cache refresh listener failed for {}", this.getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+    private LocalDateTime maxUpdatedDate(Iterable<T> items, LocalDateTime current) {
+        LocalDateTime max = current;
+        for (T item : items) {
+            LocalDateTime updated = updatedDateOf(item);
+            if (updated != null && (max == null || updated.isAfter(max))) {
+                max = updated;
+            }
+        }
+        return max;
+    }
+
+    private void recordRefresh(AtomicLong counter, long durationMs, int rows) {
+        counter.incrementAndGet();
+        lastRefreshDurationMs = durationMs;
+        lastRefreshRows = rows;
+        refreshDurations.record(TimeUnit.MILLISECONDS.toNanos(durationMs));
+    }
+
     // Thêm methods hữu ích
     public int getCacheSize() {
         return activeCache.get().size();
@@ -69,10 +206,38 @@ public abstract class CacheSwapService<T> implements CacheService<T> {
         return activeCache.get().containsKey(key);
     }
 
+    public long getFullRefreshCount() {
+        return fullRefreshCount.get();
+    }
+
+    public long getDeltaRefreshCount() {
+        return deltaRefreshCount.get();
+    }
+
+    public long getFailedRefreshCount() {
+        return failedRefreshCount.get();
+    }
+
+    public long getLastRefreshDurationMs() {
+        return lastRefreshDurationMs;
+    }
+
+    public int getLastRefreshRows() {
+        return lastRefreshRows;
+    }
+
+    public LatencyHistogram getRefreshDurations() {
+        return refreshDurations;
+    }
+
+    public LocalDateTime getWatermark() {
+        return watermark;
+    }
+
     // Method để force refresh cache
     @PostConstruct
     public void forceRefresh() {
         log.debug(">> Force refresh cache for {}", this.getClass().getSimpleName());
         cacheDataSync();
     }
-}
\ No newline at end of file
+}
@@ -1,20 +1,44 @@
 package com.neo.ftpserver.config;
 
+import com.neo.ftpserver.constans.ListenerExecutorType;
+import com.neo.ftpserver.ftp.CachedListingCommand;
 import com.neo.ftpserver.ftp.CustomUserManager;
+import com.neo.ftpserver.ftp.DirectoryListingCache;
+import com.neo.ftpserver.ftp.InFlightTransfers;
+import com.neo.ftpserver.ftp.ListenerTuning;
+import com.neo.ftpserver.ftp.NioFileSystemFactory;
+import com.neo.ftpserver.ftp.PassivePortAllocator;
+import com.neo.ftpserver.ftp.PooledDataConnectionConfiguration;
+import com.neo.ftpserver.ftp.ReloadableSslConfiguration;
+import com.neo.ftpserver.ftp.ThrottledFileSystemFactory;
+import com.neo.ftpserver.ftp.TransferThrottle;
+import com.neo.ftpserver.ftp.TunedNioListener;
+import com.neo.ftpserver.ftp.TunedSslConfiguration;
+import com.neo.ftpserver.metrics.TlsHandshakeMetrics;
 import com.neo.ftpserver.permission.AuditLogFtplet;
+import com.neo.ftpserver.permission.ConnectionFloodFilter;
+import com.neo.ftpserver.permission.LoginRateLimiter;
 import com.neo.ftpserver.permission.UnifiedFtplet;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.ftpserver.ConnectionConfigFactory;
 import org.apache.ftpserver.DataConnectionConfigurationFactory;
+import org.apache.ftpserver.FtpServerConfigurationException;
 import org.apache.ftpserver.FtpServerFactory;
+import org.apache.ftpserver.command.CommandFactoryFactory;
 import org.apache.ftpserver.ftplet.Ftplet;
+import org.apache.ftpserver.listener.Listener;
 import org.apache.ftpserver.listener.ListenerFactory;
+import org.apache.ftpserver.ssl.SslConfiguration;
 import org.apache.ftpserver.ssl.SslConfigurationFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 
 import java.io.File;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -23,55 +47,64 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class FtpServerConfig {
 
-    @Value("${ftp.server.ftp-port:2121}")
-    private int ftpPort;
-    @Value("${ftp.server.ftps-port:990}")
-    private int ftpsPort;
-
     @Value("${ftp.server.passive-ports:30000-30100}")
     private String passivePorts;
 
     @Value("${ftp.server.passive-external-address:}")
     private String passiveExternalAddress;
 
-    @Value("${ftp.ssl.keystore.path}")
-    private String keystorePath;
+    // Cổng vừa trả chưa được cấp lại ngay, tránh kết nối trễ của phiên cũ rơi vào phiên mới
+    @Value("${ftp.server.passive-port-cooldown-ms:2000}")
+    private long passivePortCooldownMs;
+
+    // Thời gian tối đa chờ cổng passive khi đã dùng hết dải
+    @Value("${ftp.server.passive-port-max-wait-ms:3000}")
+    private long passivePortMaxWaitMs;
+
+    // Tổng số phiên login đồng thời toàn server
+    @Value("${ftp.server.max-logins:1000}")
+    private int maxLogins;
 
-    @Value("${ftp.ssl.keystore.password}")
-    private String keystorePassword;
+    // Kích thước thread pool dùng chung (executor SHARED), 0 = theo max-logins
+    @Value("${ftp.server.max-threads:0}")
+    private int maxThreads;
 
     private final AuditLogFtplet auditLogFtplet;
     private final UnifiedFtplet unifiedFtplet;
     private final CustomUserManager userManager;
+    private final TransferThrottle transferThrottle;
+    private final InFlightTransfers inFlightTransfers;
+    private final DirectoryListingCache listingCache;
+    private final Environment environment;
+    private final LoginRateLimiter loginRateLimiter;
+    private final TlsHandshakeMetrics tlsHandshakeMetrics;
 
 
+    @Bean
+    public PassivePortAllocator passivePortAllocator() {
+        return new PassivePortAllocator(passivePorts, passivePortCooldownMs, passivePortMaxWaitMs);
+    }
+
     @Bean
     public FtpServerFactory ftpServerFactory() {
         FtpServerFactory serverFactory = new FtpServerFactory();
         serverFactory.setUserManager(userManager);
-        // Listener 1: FTP thường
-        ListenerFactory ftpListenerFactory = new ListenerFactory();
-        ftpListenerFactory.setPort(ftpPort);
-        serverFactory.addListener("default", ftpListenerFactory.createListener());
-        // Listener 2: FTPS (explicit)
-        ListenerFactory ftpsListenerFactory = new ListenerFactory();
-        ftpsListenerFactory.setPort(ftpsPort);
-        // SSL/TLS
-        SslConfigurationFactory ssl = new SslConfigurationFactory();
-        ssl.setKeystoreFile(new File(keystorePath));
-        ssl.setKeystorePassword(keystorePassword);
-        // Listener (explicit FTPS)
-        ftpsListenerFactory.setSslConfiguration(ssl.createSslConfiguration());
-        ftpsListenerFactory.setImplicitSsl(false);
-        serverFactory.addListener("ftps", ftpsListenerFactory.createListener());
-        // Passive mode config
-        DataConnectionConfigurationFactory dataConnFactory = new DataConnectionConfigurationFactory();
-        dataConnFactory.setPassivePorts(passivePorts);
-        if (!passiveExternalAddress.isEmpty()) {
-            dataConnFactory.setPassiveExternalAddress(passiveExternalAddress);
+        ConnectionConfigFactory connectionConfigFactory = new ConnectionConfigFactory();
+        connectionConfigFactory.setMaxLogins(maxLogins);
+        connectionConfigFactory.setMaxThreads(maxThreads);
+        serverFactory.setConnectionConfig(connectionConfigFactory.createConnectionConfig());
+        // Home directory được tạo bất đồng bộ khi cache làm mới; createHome chỉ là lưới an toàn cho lần login đầu
+        NioFileSystemFactory fileSystemFactory = new NioFileSystemFactory(true, listingCache);
+        // Stream đọc/ghi file đi qua token bucket theo account và giới hạn tổng của server
+        serverFactory.setFileSystem(new ThrottledFileSystemFactory(fileSystemFactory, transferThrottle, inFlightTransfers));
+        // LIST/NLST/MLSD đọc từ cache listing thư mục
+        CommandFactoryFactory commandFactoryFactory = new CommandFactoryFactory();
+        for (CachedListingCommand.Kind kind : CachedListingCommand.Kind.values()) {
+            commandFactoryFactory.addCommand(kind.name(), new CachedListingCommand(kind, listingCache));
         }
-//        listenerFactory.setDataConnectionConfiguration(dataConnFactory.createDataConnectionConfiguration());
-//        serverFactory.addListener("default", listenerFactory.createListener());
+        serverFactory.setCommandFactory(commandFactoryFactory.createCommandFactory());
+        // Listener đọc cấu hình qua Environment để FtpReloadService dựng lại được khi reload
+        serverFactory.setListeners(createListeners());
         // Permission ip
         Map<String, Ftplet> map = new LinkedHashMap<>();
         map.put("unifiedFtplet", unifiedFtplet);
@@ -80,4 +113,105 @@ public class FtpServerConfig {
 
         return serverFactory;
     }
+
+    @Bean
+    public ReloadableSslConfiguration reloadableSslConfiguration() {
+        return new ReloadableSslConfiguration(createSslConfiguration());
+    }
+
+    /**
+     * Dựng các listener theo cấu hình hiện tại của Environment (chưa start).
+     * Dải cổng passive và allocator dùng chung không đổi khi reload.
+     */
+    public Map<String, Listener> createListeners() {
+        // Passive mode config, áp dụng cho mọi listener; cổng cấp từ allocator dùng chung
+        DataConnectionConfigurationFactory dataConnFactory = new DataConnectionConfigurationFactory();
+        dataConnFactory.setPassivePorts(passivePorts);
+        if (!passiveExternalAddress.isEmpty()) {
+            dataConnFactory.setPassiveExternalAddress(passiveExternalAddress);
+        }
+        PassivePortAllocator portAllocator = passivePortAllocator();
+        // IP bị cấm/flood kết nối bị đóng ngay khi tạo session, trước handshake TLS
+        ConnectionFloodFilter floodFilter = new ConnectionFloodFilter(loginRateLimiter);
+        Map<String, Listener> listeners = new LinkedHashMap<>();
+        // Listener 1: FTP thường
+        ListenerFactory ftpListenerFactory = newListenerFactory("default",
+                environment.getProperty("ftp.server.ftp-port", Integer.class, 2121), dataConnFactory, portAllocator, floodFilter);
+        listeners.put("default", new TunedNioListener("default", ftpListenerFactory, listenerTuning("default")));
+        // SSL/TLS dùng chung cho các listener FTPS để session cache chung một SSLContext; swap được khi đổi keystore
+        SslConfiguration ssl = reloadableSslConfiguration();
+        // Listener 2: FTPS (explicit)
+        ListenerFactory ftpsListenerFactory = newListenerFactory("ftps",
+                environment.getProperty("ftp.server.ftps-port", Integer.class, 990), dataConnFactory, portAllocator, floodFilter);
+        ftpsListenerFactory.setSslConfiguration(ssl);
+        ftpsListenerFactory.setImplicitSsl(false);
+        listeners.put("ftps", new TunedNioListener("ftps", ftpsListenerFactory, listenerTuning("ftps")));
+        // Listener 3: FTPS implicit (TLS ngay khi kết nối, không qua AUTH) cho client cũ, tùy chọn
+        if (environment.getProperty("ftp.server.implicit-ftps-enabled", Boolean.class, false)) {
+            ListenerFactory implicitListenerFactory = newListenerFactory("ftps-implicit",
+                    environment.getProperty("ftp.server.implicit-ftps-port", Integer.class, 8990), dataConnFactory, portAllocator, floodFilter);
+            implicitListenerFactory.setSslConfiguration(ssl);
+            implicitListenerFactory.setImplicitSsl(true);
+            listeners.put("ftps-implicit", new TunedNioListener("ftps-implicit", implicitListenerFactory, listenerTuning("ftps-implicit")));
+        }
+        return listeners;
+    }
+
+    private ListenerFactory newListenerFactory(String listener, int port, DataConnectionConfigurationFactory dataConnFactory,
+                                               PassivePortAllocator portAllocator, ConnectionFloodFilter floodFilter) {
+        ListenerFactory factory = new ListenerFactory();
+        factory.setPort(port);
+        factory.setSessionFilter(floodFilter);
+        factory.setIdleTimeout(listenerProperty(listener, "idle-timeout", Integer.class, 300));
+        factory.setDataConnectionConfiguration(new PooledDataConnectionConfiguration(
+                dataConnFactory.createDataConnectionConfiguration(), portAllocator));
+        return factory;
+    }
+
+    /**
+     * Đọc keystore và tham số TLS hiện tại; dùng lúc khởi động và khi reload keystore
+     */
+    public TunedSslConfiguration createSslConfiguration() {
+        // Session ticket (stateless resume, TLS 1.3) là thuộc tính JVM, chỉ có hiệu lực nếu đặt trước lần dùng TLS đầu tiên
+        if (System.getProperty("jdk.tls.server.enableSessionTicketExtension") == null) {
+            System.setProperty("jdk.tls.server.enableSessionTicketExtension",
+                    environment.getProperty("ftp.ssl.session-tickets", "true"));
+        }
+        SslConfigurationFactory ssl = new SslConfigurationFactory();
+        ssl.setKeystoreFile(new File(environment.getRequiredProperty("ftp.ssl.keystore.path")));
+        ssl.setKeystorePassword(environment.getRequiredProperty("ftp.ssl.keystore.password"));
+        ssl.setSslProtocol(environment.getProperty("ftp.ssl.protocols", String[].class, new String[]{"TLSv1.3", "TLSv1.2"}));
+        // Rỗng = danh sách AEAD mặc định của TunedSslConfiguration
+        String[] cipherSuites = environment.getProperty("ftp.ssl.cipher-suites", String[].class, new String[0]);
+        try {
+            return new TunedSslConfiguration(ssl.createSslConfiguration(),
+                    cipherSuites.length > 0 ? Arrays.asList(cipherSuites) : TunedSslConfiguration.DEFAULT_CIPHER_SUITES,
+                    // Session TLS giữ phía server để kênh data và lần kết nối lại resume thay vì handshake đầy đủ
+                    environment.getProperty("ftp.ssl.session-cache-size", Integer.class, 20000),
+                    environment.getProperty("ftp.ssl.session-timeout", Integer.class, 3600),
+                    tlsHandshakeMetrics);
+        } catch (GeneralSecurityException e) {
+            throw new FtpServerConfigurationException("SSL could not be initialized, check configuration", e);
+        }
+    }
+
+    /**
+     * Tham số MINA của listener: ftp.server.listeners.&lt;name&gt;.* ghi đè ftp.server.*
+     */
+    private ListenerTuning listenerTuning(String listener) {
+        return new ListenerTuning(
+                listenerProperty(listener, "processor-count", Integer.class, 0),
+                listenerProperty(listener, "executor", ListenerExecutorType.class, ListenerExecutorType.SHARED),
+                listenerProperty(listener, "executor-threads", Integer.class, 0),
+                listenerProperty(listener, "read-buffer-size", Integer.class, 2048),
+                listenerProperty(listener, "receive-buffer-size", Integer.class, 512),
+                listenerProperty(listener, "send-buffer-size", Integer.class, 0),
+                listenerProperty(listener, "tcp-no-delay", Boolean.class, true),
+                listenerProperty(listener, "backlog", Integer.class, 50));
+    }
+
+    private <T> T listenerProperty(String listener, String key, Class<T> type, T defaultValue) {
+        T value = environment.getProperty("ftp.server.listeners." + listener + "." + key, type);
+        return value != null ? value : environment.getProperty("ftp.server." + key, type, defaultValue);
+    }
 }
@@ -0,0 +1,13 @@
+package com.neo.ftpserver.constans;
+
+/**
+ * Cách xử lý khi hàng đợi audit đầy
+ */
+public enum AuditBackpressure {
+    // Chờ tới khi có chỗ trống
+    BLOCK,
+    // Bỏ sự kiện, chỉ tăng bộ đếm
+    DROP,
+    // Ghi đồng bộ thẳng ra file log trên luồng gọi
+    SPILL
+}
@@ -0,0 +1,15 @@
+package com.neo.ftpserver.constans;
+
+/**
+ * Lý do đăng nhập/phiên bị từ chối, dùng làm label metric
+ */
+public enum AuthFailureReason {
+    // USER từ IP không nằm trong whitelist của account
+    IP_DENIED,
+    // PASS sai (reply 530)
+    BAD_PASSWORD,
+    // Account không được phép dùng loại kết nối hiện tại (FTP/FTPS)
+    CONNECTION_TYPE,
+    // IP/account đang bị LoginRateLimiter cấm do đăng nhập sai quá nhiều
+    BANNED
+}
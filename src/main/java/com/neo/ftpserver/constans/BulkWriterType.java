@@ -0,0 +1,13 @@
+package com.neo.ftpserver.constans;
+
+/**
+ * Cách ghi một batch audit vào database
+ */
+public enum BulkWriterType {
+    // batchUpdate với câu logging.job.sql-insert (chạy với mọi DB)
+    JDBC,
+    // Oracle: batch array-bind với id lấy trước theo block từ sequence, tùy chọn hint APPEND_VALUES
+    ORACLE,
+    // PostgreSQL: COPY vào bảng tạm rồi INSERT ... ON CONFLICT DO NOTHING
+    POSTGRES_COPY
+}
@@ -0,0 +1,33 @@
+package com.neo.ftpserver.constans;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Danh sách lệnh FTP mà Apache FtpServer hỗ trợ, dùng làm chỉ số cho EnumSet lệnh bị chặn
+ */
+public enum FtpCommand {
+    ABOR, ACCT, APPE, AUTH, CDUP, CWD, DELE, EPRT, EPSV, FEAT, HELP, LANG, LIST, MD5, MMD5, MDTM, MFMT,
+    MKD, MLSD, MLST, MODE, NLST, NOOP, OPTS, PASS, PASV, PBSZ, PORT, PROT, PWD, QUIT, REIN, REST, RETR,
+    RMD, RNFR, RNTO, SITE, SIZE, STAT, STOR, STOU, STRU, SYST, TYPE, USER, XCUP, XCWD, XMKD, XPWD, XRMD;
+
+    private static final Map<String, FtpCommand> BY_NAME = new HashMap<>();
+
+    static {
+        for (FtpCommand command : values()) {
+            BY_NAME.put(command.name(), command);
+        }
+    }
+
+    /**
+     * Tra cứu lệnh theo tên, trả về null nếu không phải lệnh chuẩn
+     */
+    public static FtpCommand of(String name) {
+        if (name == null) {
+            return null;
+        }
+        FtpCommand command = BY_NAME.get(name);
+        // FtpServer đã upper-case lệnh, chỉ chuẩn hóa lại khi tra cứu trượt
+        return command != null ? command : BY_NAME.get(name.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,13 @@
+package com.neo.ftpserver.constans;
+
+/**
+ * Executor xử lý lệnh FTP phía sau MINA I/O processor của một listener
+ */
+public enum ListenerExecutorType {
+    // Dùng chung thread pool của FtpServerContext (hành vi mặc định của FtpServer, kích thước = max-threads)
+    SHARED,
+    // Pool riêng cho listener, giữ thứ tự sự kiện theo session
+    ORDERED,
+    // Như ORDERED nhưng mỗi worker là virtual thread (JDK 21+), JDK cũ tự lùi về platform thread
+    VIRTUAL
+}
@@ -0,0 +1,11 @@
+package com.neo.ftpserver.constans;
+
+/**
+ * Cách đọc file log spool trong AbstractJobProcessLog
+ */
+public enum LogReaderMode {
+    // Đọc tuần tự qua FileChannel, decode từng dòng và ghi lại từng dòng ra logs-of-day
+    STREAM,
+    // Memory-map file, quét newline trực tiếp trên buffer và copy nguyên file sang archive bằng transferTo
+    MMAP
+}
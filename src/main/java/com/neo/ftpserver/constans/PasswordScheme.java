@@ -0,0 +1,15 @@
+package com.neo.ftpserver.constans;
+
+/**
+ * Định dạng mật khẩu lưu trong account_ftp.password
+ */
+public enum PasswordScheme {
+    // 64 ký tự hex SHA-256 không salt (định dạng cũ), có thể có tiền tố {SHA256}
+    SHA256,
+    // pbkdf2_sha256$<iterations>$<salt>$<hash base64>
+    PBKDF2_SHA256,
+    // $2a$/$2b$/$2y$ - cần spring-security-crypto trên classpath
+    BCRYPT,
+    // Không nhận ra định dạng → không cho đăng nhập
+    UNSUPPORTED
+}
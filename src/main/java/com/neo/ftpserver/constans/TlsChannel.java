@@ -0,0 +1,11 @@
+package com.neo.ftpserver.constans;
+
+/**
+ * Kênh FTPS thực hiện handshake TLS, dùng làm label metric
+ */
+public enum TlsChannel {
+    // Kết nối lệnh (AUTH TLS hoặc implicit FTPS)
+    CONTROL,
+    // Kết nối dữ liệu PROT P, mỗi lần LIST/RETR/STOR một handshake
+    DATA
+}
@@ -20,4 +20,9 @@ public class AccountFtpDto {
     private Long maxLength = 50L;
     private Long groupId;
     private String folderFix;
+    // Giới hạn băng thông (byte/s) và số phiên đăng nhập; null/0 = lấy theo role
+    private Long maxUploadRate;
+    private Long maxDownloadRate;
+    private Integer maxLogins;
+    private Integer maxLoginsPerIp;
 }
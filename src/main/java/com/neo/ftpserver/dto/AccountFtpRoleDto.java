@@ -10,4 +10,8 @@ public class AccountFtpRoleDto {
     private Boolean writeEnable;   // Có cho phép ghi hay không
     private Integer idx;           // Thứ tự hiển thị
     private String cmdsDenied;     // Danh sách lệnh FTP bị từ chối
+    private Long maxUploadRate;    // Băng thông upload tối đa (byte/s), null/0 = không giới hạn
+    private Long maxDownloadRate;  // Băng thông download tối đa (byte/s), null/0 = không giới hạn
+    private Integer maxLogins;     // Số phiên đăng nhập đồng thời tối đa, null/0 = không giới hạn
+    private Integer maxLoginsPerIp; // Số phiên đồng thời tối đa trên một IP, null/0 = không giới hạn
 }
@@ -17,6 +17,9 @@ public class FtpAuditLog {
     private String action;
     private String filePath;
     private Long fileSize;
+    // Chỉ có ở sự kiện truyền file: thời gian truyền (ms) và tốc độ trung bình (byte/s)
+    private Long durationMs;
+    private Long throughput;
     private String clientIp;
     private boolean isSecure;
     @JsonFormat(pattern = "dd/MM/yyyy HH:mm:ss")
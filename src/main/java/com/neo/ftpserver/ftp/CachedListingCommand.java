@@ -0,0 +1,175 @@
+package com.neo.ftpserver.ftp;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ftpserver.command.AbstractCommand;
+import org.apache.ftpserver.command.impl.listing.FileFilter;
+import org.apache.ftpserver.command.impl.listing.FileFormater;
+import org.apache.ftpserver.command.impl.listing.LISTFileFormater;
+import org.apache.ftpserver.command.impl.listing.ListArgument;
+import org.apache.ftpserver.command.impl.listing.ListArgumentParser;
+import org.apache.ftpserver.command.impl.listing.MLSTFileFormater;
+import org.apache.ftpserver.command.impl.listing.NLSTFileFormater;
+import org.apache.ftpserver.command.impl.listing.RegexFileFilter;
+import org.apache.ftpserver.command.impl.listing.VisibleFileFilter;
+import org.apache.ftpserver.ftplet.DataConnection;
+import org.apache.ftpserver.ftplet.DefaultFtpReply;
+import org.apache.ftpserver.ftplet.FtpException;
+import org.apache.ftpserver.ftplet.FtpFile;
+import org.apache.ftpserver.ftplet.FtpReply;
+import org.apache.ftpserver.ftplet.FtpRequest;
+import org.apache.ftpserver.impl.FtpIoSession;
+import org.apache.ftpserver.impl.FtpServerContext;
+import org.apache.ftpserver.impl.IODataConnectionFactory;
+import org.apache.ftpserver.impl.LocalizedDataTransferFtpReply;
+import org.apache.ftpserver.impl.LocalizedFtpReply;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.SocketException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * LIST/NLST/MLSD thay cho lệnh mặc định của FtpServer: cùng định dạng và mã phản hồi,
+ * nhưng listing thư mục được lấy từ DirectoryListingCache và gửi ra data connection theo dòng.
+ * Listing có pattern hoặc trỏ vào một file đơn lẻ không được cache.
+ */
+@Slf4j
+public class CachedListingCommand extends AbstractCommand {
+
+    public enum Kind {
+        LIST, NLST, MLSD
+    }
+
+    private final Kind kind;
+    private final DirectoryListingCache listingCache;
+
+    public CachedListingCommand(Kind kind, DirectoryListingCache listingCache) {
+        this.kind = kind;
+        this.listingCache = listingCache;
+    }
+
+    @Override
+    public void execute(FtpIoSession session, FtpServerContext context, FtpRequest request) throws IOException, FtpException {
+        try {
+            session.resetState();
+            ListArgument argument = ListArgumentParser.parse(request.getArgument());
+            FtpFile target = session.getFileSystemView().getFile(argument.getFile());
+            if (kind == Kind.LIST && !target.doesExist()) {
+                log.debug("Listing on a non-existing file");
+                session.write(LocalizedDataTransferFtpReply.translate(session, request, context,
+                        FtpReply.REPLY_450_REQUESTED_FILE_ACTION_NOT_TAKEN, "LIST", null, target));
+                return;
+            }
+            if (session.getDataConnection() instanceof IODataConnectionFactory factory && factory.getInetAddress() == null) {
+                session.write(new DefaultFtpReply(FtpReply.REPLY_503_BAD_SEQUENCE_OF_COMMANDS, "PORT or PASV must be issued first"));
+                return;
+            }
+            session.write(LocalizedFtpReply.translate(session, request, context,
+                    FtpReply.REPLY_150_FILE_STATUS_OKAY, kind.name(), null)).awaitUninterruptibly(10000);
+            DataConnection dataConnection;
+            try {
+                dataConnection = session.getDataConnection().openConnection();
+            } catch (Exception e) {
+                log.debug("Exception getting the output data stream", e);
+                session.write(LocalizedFtpReply.translate(session, request, context,
+                        FtpReply.REPLY_425_CANT_OPEN_DATA_CONNECTION, kind.name(), null));
+                return;
+            }
+            boolean failure = false;
+            try {
+                Iterator<String> lines = listing(session, argument, target);
+                dataConnection.transferToClient(session.getFtpletSession(), new ListingInputStream(lines));
+            } catch (SocketException e) {
+                log.debug("Socket exception during data transfer", e);
+                failure = true;
+                session.write(LocalizedFtpReply.translate(session, request, context,
+                        FtpReply.REPLY_426_CONNECTION_CLOSED_TRANSFER_ABORTED, kind.name(), null));
+            } catch (IOException e) {
+                log.debug("IOException during data transfer", e);
+                failure = true;
+                session.write(LocalizedFtpReply.translate(session, request, context,
+                        FtpReply.REPLY_551_REQUESTED_ACTION_ABORTED_PAGE_TYPE_UNKNOWN, kind.name(), null));
+            } catch (IllegalArgumentException e) {
+                log.debug("Illegal listing syntax: {}", request.getArgument(), e);
+                failure = true;
+                session.write(LocalizedFtpReply.translate(session, request, context,
+                        FtpReply.REPLY_501_SYNTAX_ERROR_IN_PARAMETERS_OR_ARGUMENTS, kind.name(), null));
+            }
+            if (!failure) {
+                session.write(LocalizedFtpReply.translate(session, request, context,
+                        FtpReply.REPLY_226_CLOSING_DATA_CONNECTION, kind.name(), null));
+            }
+        } finally {
+            session.getDataConnection().closeDataConnection();
+        }
+    }
+
+    private Iterator<String> listing(FtpIoSession session, ListArgument argument, FtpFile target) {
+        FileFormater formater = formater(session, argument);
+        FileFilter filter = argument.hasOption('a') ? null : new VisibleFileFilter();
+        if (argument.getPattern() != null) {
+            filter = new RegexFileFilter(argument.getPattern(), filter);
+        }
+        if (target.isFile()) {
+            return format(List.of(target), filter, formater).iterator();
+        }
+        if (!listingCache.isEnabled() || argument.getPattern() != null || !(target.getPhysicalFile() instanceof File physical)) {
+            List<? extends FtpFile> files = target.listFiles();
+            return files == null ? List.<String>of().iterator() : format(files, filter, formater).iterator();
+        }
+        Path directory = physical.toPath().toAbsolutePath().normalize();
+        String variant = variant(session, argument);
+        String[] cached = listingCache.get(directory, variant);
+        if (cached == null) {
+            long generation = listingCache.beginBuild(directory);
+            List<? extends FtpFile> files = target.listFiles();
+            cached = files == null ? new String[0] : format(files, filter, formater).toArray(new String[0]);
+            listingCache.put(directory, variant, cached, generation);
+        }
+        return Arrays.asList(cached).iterator();
+    }
+
+    /**
+     * Định dạng như DirectoryLister của FtpServer: thư mục trước, file sau
+     */
+    private static List<String> format(List<? extends FtpFile> files, FileFilter filter, FileFormater formater) {
+        List<String> lines = new ArrayList<>(files.size());
+        for (boolean directories : new boolean[]{true, false}) {
+            for (FtpFile file : files) {
+                if (file != null && (filter == null || filter.accept(file)) && file.isDirectory() == directories) {
+                    lines.add(formater.format(file));
+                }
+            }
+        }
+        return lines;
+    }
+
+    private FileFormater formater(FtpIoSession session, ListArgument argument) {
+        return switch (kind) {
+            case MLSD -> new MLSTFileFormater((String[]) session.getAttribute("MLST.types"));
+            case NLST -> argument.hasOption('l') ? new LISTFileFormater() : new NLSTFileFormater();
+            default -> new LISTFileFormater();
+        };
+    }
+
+    /**
+     * Khóa biến thể: cùng thư mục nhưng khác lệnh, tùy chọn hay user (quyền rwx/perm hiển thị theo user) là listing khác nhau
+     */
+    private String variant(FtpIoSession session, ListArgument argument) {
+        StringBuilder sb = new StringBuilder(kind.name());
+        if (kind == Kind.NLST && argument.hasOption('l')) {
+            sb.append("-l");
+        }
+        if (argument.hasOption('a')) {
+            sb.append("-a");
+        }
+        if (kind == Kind.MLSD && session.getAttribute("MLST.types") instanceof String[] types) {
+            sb.append(':').append(String.join(";", types));
+        }
+        return sb.append('|').append(session.getUser().getName()).toString();
+    }
+}
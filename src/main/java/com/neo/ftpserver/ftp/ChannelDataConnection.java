@@ -0,0 +1,94 @@
+package com.neo.ftpserver.ftp;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ftpserver.ftplet.DataConnection;
+import org.apache.ftpserver.ftplet.DataType;
+import org.apache.ftpserver.ftplet.FtpSession;
+import org.apache.ftpserver.impl.DefaultFtpSession;
+import org.apache.ftpserver.impl.FtpIoSession;
+import org.apache.ftpserver.impl.IODataConnection;
+import org.apache.ftpserver.impl.ServerDataConnectionFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Data connection FTP thường trên SocketChannel: RETR binary gọi FileChannel.transferTo (sendfile),
+ * STOR/APPE binary gọi FileChannel.transferFrom. ASCII, MODE Z, listing và stream không phải file
+ * đi qua IODataConnection gốc trên cùng socket.
+ */
+@Slf4j
+final class ChannelDataConnection implements DataConnection {
+
+    // Mỗi chunk trả lại quyền cho throttle/metering và cập nhật last access time của session
+    private static final long CHUNK_SIZE = 512 * 1024;
+
+    private final SocketChannel channel;
+    private final FtpIoSession session;
+    private final ServerDataConnectionFactory factory;
+    private final DataConnection fallback;
+
+    ChannelDataConnection(SocketChannel channel, FtpIoSession session, ServerDataConnectionFactory factory) {
+        this.channel = channel;
+        this.session = session;
+        this.factory = factory;
+        this.fallback = new IODataConnection(channel.socket(), session, factory);
+    }
+
+    private boolean isBinaryStream(FtpSession ftpSession) {
+        return !factory.isZipMode() && ftpSession.getDataType() != DataType.ASCII;
+    }
+
+    @Override
+    public long transferFromClient(FtpSession ftpSession, OutputStream out) throws IOException {
+        if (!isBinaryStream(ftpSession) || !(out instanceof ChannelTransferSink sink) || !sink.canTransfer()) {
+            return fallback.transferFromClient(ftpSession, out);
+        }
+        long total = 0;
+        try {
+            long n;
+            while ((n = sink.transferFrom(channel, CHUNK_SIZE)) >= 0) {
+                total += n;
+                if (ftpSession instanceof DefaultFtpSession defaultSession) {
+                    defaultSession.increaseReadDataBytes((int) n);
+                }
+                session.updateLastAccessTime();
+            }
+            return total;
+        } catch (IOException | RuntimeException e) {
+            log.warn(">> Exception during data transfer, closing data connection socket", e);
+            factory.closeDataConnection();
+            throw e;
+        }
+    }
+
+    @Override
+    public long transferToClient(FtpSession ftpSession, InputStream in) throws IOException {
+        if (!isBinaryStream(ftpSession) || !(in instanceof ChannelTransferSource source) || !source.canTransfer()) {
+            return fallback.transferToClient(ftpSession, in);
+        }
+        long total = 0;
+        try {
+            long n;
+            while ((n = source.transferTo(channel, CHUNK_SIZE)) >= 0) {
+                total += n;
+                if (ftpSession instanceof DefaultFtpSession defaultSession) {
+                    defaultSession.increaseWrittenDataBytes((int) n);
+                }
+                session.updateLastAccessTime();
+            }
+            return total;
+        } catch (IOException | RuntimeException e) {
+            log.warn(">> Exception during data transfer, closing data connection socket", e);
+            factory.closeDataConnection();
+            throw e;
+        }
+    }
+
+    @Override
+    public void transferToClient(FtpSession ftpSession, String str) throws IOException {
+        fallback.transferToClient(ftpSession, str);
+    }
+}
@@ -0,0 +1,208 @@
+package com.neo.ftpserver.ftp;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ftpserver.DataConnectionConfiguration;
+import org.apache.ftpserver.DataConnectionException;
+import org.apache.ftpserver.ftplet.DataConnection;
+import org.apache.ftpserver.ftplet.FtpException;
+import org.apache.ftpserver.impl.FtpIoSession;
+import org.apache.ftpserver.impl.FtpServerContext;
+import org.apache.ftpserver.impl.IODataConnectionFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Thay IODataConnectionFactory của session: data connection không TLS được mở bằng ServerSocketChannel/SocketChannel
+ * (cùng cấp phát cổng passive, địa chỉ, idle timeout và passive IP check như bản gốc) để RETR/STOR dùng được
+ * FileChannel.transferTo/transferFrom. PASV/PORT khi session đang PROT P đi nguyên đường của lớp cha
+ * vì dữ liệu phải qua SSLSocket.
+ */
+@Slf4j
+public class ChannelDataConnectionFactory extends IODataConnectionFactory {
+
+    private final FtpIoSession session;
+    private InetAddress serverControlAddress;
+    // PASV/PORT cuối cùng do lớp cha dựng (session đang PROT P)
+    private boolean delegated;
+
+    private ServerSocketChannel serverChannel;
+    private SocketChannel dataChannel;
+    private InetAddress address;
+    private int port;
+    private boolean portReserved;
+    private boolean passive;
+    private long requestTime;
+
+    public ChannelDataConnectionFactory(FtpServerContext serverContext, FtpIoSession session) {
+        super(serverContext, session);
+        this.session = session;
+    }
+
+    private DataConnectionConfiguration config() {
+        return session.getListener().getDataConnectionConfiguration();
+    }
+
+    private static InetAddress resolveAddress(String host) throws IOException {
+        return host == null ? null : InetAddress.getByName(host);
+    }
+
+    @Override
+    public synchronized void setServerControlAddress(InetAddress serverControlAddress) {
+        super.setServerControlAddress(serverControlAddress);
+        this.serverControlAddress = serverControlAddress;
+    }
+
+    @Override
+    public synchronized void closeDataConnection() {
+        super.closeDataConnection();
+        if (dataChannel != null) {
+            try {
+                dataChannel.close();
+            } catch (IOException e) {
+                log.warn(">> Failed to close data channel", e);
+            }
+            dataChannel = null;
+        }
+        if (serverChannel != null) {
+            try {
+                serverChannel.close();
+            } catch (IOException e) {
+                log.warn(">> Failed to close passive data channel", e);
+            }
+            serverChannel = null;
+        }
+        if (portReserved) {
+            DataConnectionConfiguration config = session.getListener() != null ? config() : null;
+            if (config != null) {
+                config.releasePassivePort(port);
+            }
+            portReserved = false;
+        }
+        requestTime = 0;
+    }
+
+    @Override
+    public synchronized void initActiveDataConnection(InetSocketAddress address) {
+        closeDataConnection();
+        if (isSecure()) {
+            super.initActiveDataConnection(address);
+            delegated = true;
+            return;
+        }
+        delegated = false;
+        passive = false;
+        this.address = address.getAddress();
+        port = address.getPort();
+        requestTime = System.currentTimeMillis();
+    }
+
+    @Override
+    public synchronized InetSocketAddress initPassiveDataConnection() throws DataConnectionException {
+        closeDataConnection();
+        if (isSecure()) {
+            InetSocketAddress passiveAddress = super.initPassiveDataConnection();
+            delegated = true;
+            return passiveAddress;
+        }
+        delegated = false;
+        DataConnectionConfiguration config = config();
+        int requestedPort = config.requestPassivePort();
+        if (requestedPort == -1) {
+            throw new DataConnectionException("Cannot find an available passive port.");
+        }
+        port = requestedPort;
+        portReserved = true;
+        try {
+            address = config.getPassiveAddress() == null ? serverControlAddress : resolveAddress(config.getPassiveAddress());
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(address, requestedPort));
+            // accept() qua socket adaptor vẫn tôn trọng SO_TIMEOUT như ServerSocket gốc
+            serverChannel.socket().setSoTimeout(config.getIdleTime() * 1000);
+            port = serverChannel.socket().getLocalPort();
+            passive = true;
+            requestTime = System.currentTimeMillis();
+            log.debug(">> Passive data channel opened on {}:{}", address, port);
+            return new InetSocketAddress(address, port);
+        } catch (IOException e) {
+            closeDataConnection();
+            throw new DataConnectionException("Failed to initate passive data connection: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized DataConnection openConnection() throws Exception {
+        if (delegated) {
+            return super.openConnection();
+        }
+        if (isSecure()) {
+            // PROT P sau PASV/PORT: không gửi dữ liệu cleartext trên kênh đã thỏa thuận là mã hóa
+            throw new FtpException("Data connection was negotiated before PROT P, issue PASV/PORT again");
+        }
+        return new ChannelDataConnection(openDataChannel(), session, this);
+    }
+
+    private SocketChannel openDataChannel() throws IOException, FtpException {
+        if (requestTime == 0) {
+            throw new FtpException("PORT or PASV must be issued first");
+        }
+        DataConnectionConfiguration config = config();
+        if (passive) {
+            Socket socket = serverChannel.socket().accept();
+            dataChannel = socket.getChannel();
+            if (config.isPassiveIpCheck()) {
+                InetAddress remote = ((InetSocketAddress) session.getRemoteAddress()).getAddress();
+                if (!socket.getInetAddress().equals(remote)) {
+                    log.warn(">> Passive data connection from {} does not match control connection {}, closing",
+                            socket.getInetAddress(), remote);
+                    closeDataConnection();
+                    throw new FtpException("Data connection address does not match the control connection");
+                }
+            }
+        } else {
+            dataChannel = SocketChannel.open();
+            Socket socket = dataChannel.socket();
+            socket.setReuseAddress(true);
+            InetAddress localAddress = resolveAddress(config.getActiveLocalAddress());
+            if (localAddress == null) {
+                localAddress = ((InetSocketAddress) session.getLocalAddress()).getAddress();
+            }
+            socket.bind(new InetSocketAddress(localAddress, config.getActiveLocalPort()));
+            socket.connect(new InetSocketAddress(address, port));
+        }
+        // Chỉ áp dụng cho đường IODataConnection (stream của socket adaptor), giống bản gốc
+        dataChannel.socket().setSoTimeout(config.getIdleTime() * 1000);
+        return dataChannel;
+    }
+
+    @Override
+    public synchronized boolean isTimeout(long currTime) {
+        if (delegated) {
+            return super.isTimeout(currTime);
+        }
+        if (requestTime == 0 || dataChannel != null) {
+            return false;
+        }
+        int maxIdleTime = config().getIdleTime() * 1000;
+        return maxIdleTime != 0 && currTime - requestTime >= maxIdleTime;
+    }
+
+    @Override
+    public synchronized InetAddress getInetAddress() {
+        return delegated ? super.getInetAddress() : address;
+    }
+
+    @Override
+    public synchronized int getPort() {
+        return delegated ? super.getPort() : port;
+    }
+
+    @Override
+    public void dispose() {
+        closeDataConnection();
+    }
+}
@@ -0,0 +1,32 @@
+package com.neo.ftpserver.ftp;
+
+import org.apache.ftpserver.impl.FtpIoSession;
+import org.apache.ftpserver.impl.FtpServerContext;
+import org.apache.mina.core.filterchain.IoFilterAdapter;
+import org.apache.mina.core.session.IoSession;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Gắn ChannelDataConnectionFactory vào session trước khi FtpIoSession.getDataConnection() tự tạo
+ * IODataConnectionFactory mặc định (cùng attribute, cùng server control address)
+ */
+class ChannelDataConnectionFilter extends IoFilterAdapter {
+
+    // Attribute FtpIoSession dùng để giữ data connection factory của session
+    private static final String DATA_CONNECTION_ATTRIBUTE = "org.apache.ftpserver.data-connection";
+
+    private final FtpServerContext serverContext;
+
+    ChannelDataConnectionFilter(FtpServerContext serverContext) {
+        this.serverContext = serverContext;
+    }
+
+    @Override
+    public void sessionCreated(NextFilter nextFilter, IoSession session) throws Exception {
+        ChannelDataConnectionFactory factory = new ChannelDataConnectionFactory(serverContext, new FtpIoSession(session, serverContext));
+        factory.setServerControlAddress(((InetSocketAddress) session.getLocalAddress()).getAddress());
+        session.setAttribute(DATA_CONNECTION_ATTRIBUTE, factory);
+        nextFilter.sessionCreated(session);
+    }
+}
@@ -0,0 +1,21 @@
+package com.neo.ftpserver.ftp;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Stream ghi file có thể nhận dữ liệu thẳng từ socket bằng FileChannel.transferFrom.
+ * Các lớp bọc (throttle, metering) chuyển tiếp lời gọi xuống stream gốc.
+ */
+interface ChannelTransferSink {
+
+    /**
+     * false nếu stream gốc không phải FileChannel, khi đó phải ghi qua OutputStream như bình thường
+     */
+    boolean canTransfer();
+
+    /**
+     * Nhận tối đa maxBytes từ source ghi tiếp vào file, trả về số byte đã ghi hoặc -1 khi source hết dữ liệu
+     */
+    long transferFrom(ReadableByteChannel source, long maxBytes) throws IOException;
+}
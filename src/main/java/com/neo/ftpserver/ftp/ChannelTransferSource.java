@@ -0,0 +1,21 @@
+package com.neo.ftpserver.ftp;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Stream đọc file có thể đẩy dữ liệu thẳng sang socket bằng FileChannel.transferTo (sendfile),
+ * dữ liệu không đi qua heap. Các lớp bọc (throttle, metering) chuyển tiếp lời gọi xuống stream gốc.
+ */
+interface ChannelTransferSource {
+
+    /**
+     * false nếu stream gốc không phải FileChannel, khi đó phải đọc qua InputStream như bình thường
+     */
+    boolean canTransfer();
+
+    /**
+     * Gửi tối đa maxBytes từ vị trí hiện tại sang target, trả về số byte đã gửi hoặc -1 khi hết file
+     */
+    long transferTo(WritableByteChannel target, long maxBytes) throws IOException;
+}
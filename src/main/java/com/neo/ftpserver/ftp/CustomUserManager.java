@@ -1,24 +1,36 @@
 package com.neo.ftpserver.ftp;
 
 
+import com.neo.ftpserver.cache.AccountAuthorizationCache;
 import com.neo.ftpserver.cache.AccountFtpCache;
 import com.neo.ftpserver.dto.AccountFtpDto;
-import com.neo.ftpserver.util.EnCodeUtils;
+import com.neo.ftpserver.permission.AccountAuthorization;
+import com.neo.ftpserver.permission.CredentialVerifier;
+import com.neo.ftpserver.permission.LoginRateLimiter;
+import com.neo.ftpserver.util.HomeDirectoryUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.ftpserver.ftplet.*;
 import org.apache.ftpserver.usermanager.UsernamePasswordAuthentication;
 import org.apache.ftpserver.usermanager.impl.BaseUser;
 import org.apache.ftpserver.usermanager.impl.ConcurrentLoginPermission;
+import org.apache.ftpserver.usermanager.impl.TransferRatePermission;
+import org.apache.ftpserver.usermanager.impl.UserMetadata;
 import org.apache.ftpserver.usermanager.impl.WritePermission;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
 
 @Slf4j
 @Component
@@ -26,12 +38,102 @@ import java.util.List;
 public class CustomUserManager implements UserManager {
 
     private final AccountFtpCache accountFtpCache;
+    private final AccountAuthorizationCache authorizationCache;
+    private final CredentialVerifier credentialVerifier;
+    private final LoginRateLimiter loginRateLimiter;
+
+    // Cache User theo account; phiên bản chính là AccountAuthorization đã dùng để dựng User
+    private final ConcurrentHashMap<String, CachedUser> userCache = new ConcurrentHashMap<>();
+    private final LongAdder userCacheHits = new LongAdder();
+    private final LongAdder userCacheMisses = new LongAdder();
+
+    // Tạo home directory ngoài luồng xử lý lệnh FTP
+    private final ExecutorService homeDirectoryExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "ftp-home-dir");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private record CachedUser(AccountAuthorization source, User user) {
+    }
+
+    @PostConstruct
+    public void init() {
+        accountFtpCache.addRefreshListener(this::onAccountRefresh);
+        provisionHomeDirectories(accountFtpCache.getCache().keySet());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        homeDirectoryExecutor.shutdownNow();
+    }
+
+    private void onAccountRefresh(Collection<String> changedKeys) {
+        if (changedKeys == null) {
+            // Nạp lại toàn bộ: bỏ User của account không còn tồn tại
+            userCache.keySet().removeIf(account -> !accountFtpCache.containsKey(account));
+            provisionHomeDirectories(accountFtpCache.getCache().keySet());
+        } else {
+            changedKeys.forEach(userCache::remove);
+            provisionHomeDirectories(changedKeys);
+        }
+    }
+
+    private void provisionHomeDirectories(Collection<String> accounts) {
+        List<String> snapshot = new ArrayList<>(accounts);
+        homeDirectoryExecutor.execute(() -> {
+            for (String account : snapshot) {
+                AccountFtpDto dto = accountFtpCache.getObject(account);
+                if (dto != null) {
+                    try {
+                        buildHomeDirectory(dto);
+                    } catch (Exception e) {
+                        log.error("Provision home directory failed for account {}", account, e);
+                    }
+                }
+            }
+        });
+    }
 
     // --- User retrieval ---
     @Override
     public User getUserByName(String username) throws FtpException {
-        AccountFtpDto user = accountFtpCache.getObject(username);
-        return user != null ? convertToFtpUser(user) : null;
+        return getCachedUser(username);
+    }
+
+    private User getCachedUser(String username) {
+        AccountAuthorization authorization = authorizationCache.get(username);
+        if (authorization == null) {
+            return null;
+        }
+        CachedUser cached = userCache.get(username);
+        // Snapshot quyền được biên dịch lại mỗi khi account/role đổi → khác instance là User đã cũ
+        if (cached != null && cached.source() == authorization) {
+            userCacheHits.increment();
+            return cached.user();
+        }
+        userCacheMisses.increment();
+        AccountFtpDto accountFtpDto = accountFtpCache.getObject(username);
+        if (accountFtpDto == null) {
+            return null;
+        }
+        User user = convertToFtpUser(accountFtpDto, authorization);
+        userCache.put(username, new CachedUser(authorization, user));
+        return user;
+    }
+
+    public long getUserCacheHits() {
+        return userCacheHits.sum();
+    }
+
+    public long getUserCacheMisses() {
+        return userCacheMisses.sum();
+    }
+
+    public double getUserCacheHitRate() {
+        long hits = userCacheHits.sum();
+        long total = hits + userCacheMisses.sum();
+        return total == 0 ? 0d : (double) hits / total;
     }
 
     @Override
@@ -62,19 +164,35 @@ public class CustomUserManager implements UserManager {
         if (authentication instanceof UsernamePasswordAuthentication upAuth) {
             String username = upAuth.getUsername();
             String password = upAuth.getPassword();
-            AccountFtpDto user = accountFtpCache.getObject(username);
-            if (user == null) throw new AuthenticationFailedException("User not found");
-            String passwordEnCode = EnCodeUtils.getEncodeSHA256(password);
-            // 🔹 KIỂM TRA LOẠI KẾT NỐI (lấy từ FtpSession)
-            if (passwordEnCode.equals(user.getPassword()) && user.getStatus() == 1) {
+            String clientIp = clientIp(upAuth);
+            // Mật khẩu đã giải mã sẵn trong snapshot quyền, không băm/hex-encode lại chuỗi lưu trong DB
+            AccountAuthorization authorization = username != null ? authorizationCache.get(username) : null;
+            if (authorization == null) {
+                // Băm giả cùng chi phí với account thật, rồi tính là một lần sai của IP → chặn dò tên account
+                credentialVerifier.verifyDummy(authorizationCache.getDummyCredential(), password);
+                loginRateLimiter.recordFailure(clientIp, null);
+                throw new AuthenticationFailedException("User not found");
+            }
+            // Băm trước rồi mới xét enabled để account bị khóa cũng tốn cùng thời gian
+            if (credentialVerifier.verify(username, authorization.getCredential(), password) && authorization.isEnabled()) {
                 log.info("FTP login successful for user {}", username);
-                return convertToFtpUser(user);
+                User ftpUser = getCachedUser(username);
+                if (ftpUser != null) {
+                    loginRateLimiter.recordSuccess(username);
+                    return ftpUser;
+                }
             }
+            loginRateLimiter.recordFailure(clientIp, username);
         }
         log.warn("FTP login failed");
         throw new AuthenticationFailedException("Authentication failed");
     }
 
+    private static String clientIp(UsernamePasswordAuthentication authentication) {
+        UserMetadata metadata = authentication.getUserMetadata();
+        return metadata != null && metadata.getInetAddress() != null ? metadata.getInetAddress().getHostAddress() : null;
+    }
+
     @Override
     public String getAdminName() throws FtpException {
         return "admin";
@@ -86,17 +204,19 @@ public class CustomUserManager implements UserManager {
     }
 
     // --- Convert AccountFtp → BaseUser ---
-    private User convertToFtpUser(AccountFtpDto accountFtpDto) {
+    private User convertToFtpUser(AccountFtpDto accountFtpDto, AccountAuthorization authorization) {
         BaseUser user = new BaseUser();
         user.setName(accountFtpDto.getAccount());
         user.setPassword(accountFtpDto.getPassword());
-        String homeDir = buildHomeDirectory(accountFtpDto);
-        user.setHomeDirectory(homeDir);
-        user.setEnabled(accountFtpDto.getStatus() == 1);
+        // Home directory đã được resolve sẵn trong snapshot và tạo bất đồng bộ khi cache làm mới
+        user.setHomeDirectory(authorization.getHomeDirectory());
+        user.setEnabled(authorization.isEnabled());
         List<Authority> authorities = new ArrayList<>();
         // IP restriction
         authorities.add(new WritePermission());
-        authorities.add(new ConcurrentLoginPermission(0, 0));
+        authorities.add(new ConcurrentLoginPermission(authorization.getMaxLogins(), authorization.getMaxLoginsPerIp()));
+        // 0/0 = không giới hạn theo phiên: băng thông của account chỉ do các bucket dùng chung của TransferThrottle điều tiết
+        authorities.add(new TransferRatePermission(0, 0));
         user.setAuthorities(authorities);
         return user;
     }
@@ -114,30 +234,10 @@ public class CustomUserManager implements UserManager {
     }
 
     public String buildHomeDirectory(AccountFtpDto accountFtpDto) {
-        String folderAccess = accountFtpDto.getFolderAccess();
-        String folderFix = accountFtpDto.getFolderFix();
-        String account = accountFtpDto.getAccount();
-        Path rootFolder;
-        Path homePath;
-        // Logic xây dựng home directory
-        if (folderAccess != null && !folderAccess.trim().isEmpty()) {
-            // Trường hợp 1: Có folderAccess
-            homePath = Paths.get(folderAccess.trim());
-
-            // Nếu có folderFix, append vào sau folderAccess
-            if (folderFix != null && !folderFix.trim().isEmpty()) {
-                homePath = homePath.resolve(folderFix.trim());
-            }
-        } else {
-            // Trường hợp 2: Không có folderAccess → dùng folder mặc định
-            homePath = Paths.get(account);
-        }
-        rootFolder = Paths.get("ftp").resolve(homePath);
-        // Normalize và convert về absolute path
-        Path normalizedPath = rootFolder.normalize().toAbsolutePath();
+        Path normalizedPath = HomeDirectoryUtils.resolveHomeDirectory(accountFtpDto);
         // Tạo folder nếu chưa tồn tại
         createFolder(normalizedPath);
-        log.debug("Built home directory for account {}: {}", account, normalizedPath);
+        log.debug("Built home directory for account {}: {}", accountFtpDto.getAccount(), normalizedPath);
         return normalizedPath.toString();
     }
 }
@@ -0,0 +1,207 @@
+package com.neo.ftpserver.ftp;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache kết quả LIST/NLST/MLSD đã định dạng sẵn theo thư mục vật lý.
+ * <p>
+ * Mỗi thư mục đang có trong cache được đăng ký với WatchService; mọi thay đổi trong thư mục
+ * (kể cả từ tiến trình khác) làm mất hiệu lực toàn bộ listing của thư mục đó.
+ * Thao tác ghi qua FTP (STOR/DELE/RNFR-RNTO/MKD/RMD) cũng chủ động invalidate ngay trong NioFtpFile
+ * nên không phụ thuộc độ trễ của watcher. TTL là lưới an toàn cho filesystem không hỗ trợ watch (NFS).
+ */
+@Slf4j
+@Component
+public class DirectoryListingCache {
+
+    @Value("${ftp.listing-cache.enabled:true}")
+    private boolean enabled;
+
+    // Số thư mục tối đa được cache (và được watch), thư mục ít dùng nhất bị loại trước
+    @Value("${ftp.listing-cache.max-directories:256}")
+    private int maxDirectories;
+
+    @Value("${ftp.listing-cache.ttl-ms:60000}")
+    private long ttlMs;
+
+    private Map<Path, DirectoryEntry> directories;
+    private WatchService watchService;
+    private Thread watcher;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    private static final class DirectoryEntry {
+        private WatchKey watchKey;
+        // Tăng mỗi lần invalidate, listing dựng xong chỉ được lưu nếu thế hệ không đổi trong lúc dựng
+        private long generation;
+        private final Map<String, Listing> listings = new HashMap<>();
+    }
+
+    private record Listing(String[] lines, long builtAt) {
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        directories = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, DirectoryEntry> eldest) {
+                if (size() > maxDirectories) {
+                    cancelWatch(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            watcher = new Thread(this::watchLoop, "ftp-listing-watch");
+            watcher.setDaemon(true);
+            watcher.start();
+        } catch (IOException e) {
+            log.warn(">> WatchService unavailable, listing cache relies on TTL only: {}", e.getMessage());
+        }
+        log.info(">> Directory listing cache: maxDirectories={}, ttl={}ms, watch={}", maxDirectories, ttlMs, watchService != null);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.debug("Close WatchService failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Listing đã định dạng của thư mục theo biến thể (lệnh + tùy chọn + user), null nếu chưa có hoặc đã hết hạn
+     */
+    public synchronized String[] get(Path directory, String variant) {
+        DirectoryEntry entry = directories.get(directory);
+        Listing listing = entry != null ? entry.listings.get(variant) : null;
+        if (listing == null || System.currentTimeMillis() - listing.builtAt() > ttlMs) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return listing.lines();
+    }
+
+    /**
+     * Bắt đầu dựng listing: đảm bảo thư mục đang được watch trước khi đọc để không lỡ thay đổi xảy ra trong lúc dựng
+     *
+     * @return Thế hệ hiện tại của thư mục, truyền lại cho put
+     */
+    public synchronized long beginBuild(Path directory) {
+        DirectoryEntry entry = directories.computeIfAbsent(directory, key -> new DirectoryEntry());
+        if (entry.watchKey == null && watchService != null) {
+            try {
+                entry.watchKey = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            } catch (IOException | ClosedWatchServiceException e) {
+                log.debug("Watch directory {} failed: {}", directory, e.getMessage());
+            }
+        }
+        return entry.generation;
+    }
+
+    /**
+     * Lưu listing nếu thư mục không bị thay đổi kể từ beginBuild
+     */
+    public synchronized void put(Path directory, String variant, String[] lines, long generation) {
+        DirectoryEntry entry = directories.get(directory);
+        if (entry != null && entry.generation == generation) {
+            entry.listings.put(variant, new Listing(lines, System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * Bỏ mọi listing của thư mục (gọi khi nội dung thư mục thay đổi)
+     */
+    public void invalidate(Path directory) {
+        if (!enabled || directory == null) {
+            return;
+        }
+        synchronized (this) {
+            DirectoryEntry entry = directories.get(directory);
+            if (entry == null) {
+                return;
+            }
+            entry.generation++;
+            entry.listings.clear();
+        }
+        invalidations.increment();
+    }
+
+    private void watchLoop() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            // Gộp các sự kiện, chỉ cần biết thư mục đã đổi (kể cả OVERFLOW)
+            key.pollEvents();
+            Path directory = (Path) key.watchable();
+            invalidate(directory);
+            if (!key.reset()) {
+                // Thư mục bị xóa hoặc không còn truy cập được
+                synchronized (this) {
+                    DirectoryEntry entry = directories.get(directory);
+                    if (entry != null && entry.watchKey == key) {
+                        directories.remove(directory);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void cancelWatch(DirectoryEntry entry) {
+        if (entry.watchKey != null) {
+            entry.watchKey.cancel();
+        }
+    }
+
+    public synchronized int getCachedDirectoryCount() {
+        return directories == null ? 0 : directories.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+}
@@ -0,0 +1,39 @@
+package com.neo.ftpserver.ftp;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * InputStream trên FileChannel của NioFtpFile, RETR binary gửi qua transferTo thay vì đọc vào buffer
+ */
+final class FileChannelInputStream extends FilterInputStream implements ChannelTransferSource {
+
+    private final FileChannel channel;
+
+    FileChannelInputStream(FileChannel channel) {
+        super(Channels.newInputStream(channel));
+        this.channel = channel;
+    }
+
+    @Override
+    public boolean canTransfer() {
+        return true;
+    }
+
+    @Override
+    public long transferTo(WritableByteChannel target, long maxBytes) throws IOException {
+        long position = channel.position();
+        // Đọc lại kích thước mỗi lần: file bị STOR/REST cắt ngắn giữa chừng thì dừng như EOF.
+        // Sang socket JDK dùng sendfile (không mmap) nên phần bị cắt không gây SIGBUS
+        long remaining = channel.size() - position;
+        if (remaining <= 0) {
+            return -1;
+        }
+        long n = channel.transferTo(position, Math.min(maxBytes, remaining), target);
+        channel.position(position + n);
+        return n;
+    }
+}
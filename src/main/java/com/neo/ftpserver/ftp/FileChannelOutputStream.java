@@ -0,0 +1,43 @@
+package com.neo.ftpserver.ftp;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * OutputStream trên FileChannel của NioFtpFile, STOR/APPE binary nhận qua transferFrom thay vì ghi từ buffer heap
+ */
+class FileChannelOutputStream extends FilterOutputStream implements ChannelTransferSink {
+
+    private final FileChannel channel;
+
+    FileChannelOutputStream(FileChannel channel) {
+        super(Channels.newOutputStream(channel));
+        this.channel = channel;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        // FilterOutputStream mặc định ghi từng byte, chuyển thẳng cả mảng xuống channel
+        out.write(b, off, len);
+    }
+
+    @Override
+    public boolean canTransfer() {
+        return true;
+    }
+
+    @Override
+    public long transferFrom(ReadableByteChannel source, long maxBytes) throws IOException {
+        long position = channel.position();
+        // Socket blocking: transferFrom chỉ trả về 0 khi client đã đóng data connection
+        long n = channel.transferFrom(source, position, maxBytes);
+        if (n <= 0) {
+            return -1;
+        }
+        channel.position(position + n);
+        return n;
+    }
+}
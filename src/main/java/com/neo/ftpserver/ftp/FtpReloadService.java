@@ -0,0 +1,300 @@
+package com.neo.ftpserver.ftp;
+
+import com.neo.ftpserver.config.FtpServerConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ftpserver.impl.DefaultFtpServerContext;
+import org.apache.ftpserver.listener.Listener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.env.OriginTrackedMapPropertySource;
+import org.springframework.boot.env.PropertiesPropertySourceLoader;
+import org.springframework.boot.env.PropertySourceLoader;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reload keystore và listener không cần restart JVM.
+ * <p>
+ * - Keystore: dựng TunedSslConfiguration mới và swap vào ReloadableSslConfiguration, kết nối mới dùng chứng chỉ mới.
+ * Tự chạy khi file keystore thay đổi (WatchService trên thư mục chứa file).
+ * - Listener: đọc lại file cấu hình, listener nào đổi cổng/tham số thì bind listener mới, listener cũ ngừng nhận
+ * kết nối nhưng giữ session đang mở tới khi tự đóng hoặc hết drain-timeout.
+ * <p>
+ * Gọi tay qua JMX (com.neo.ftpserver:type=FtpReload).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ManagedResource(objectName = "com.neo.ftpserver:type=FtpReload", description = "Reload FTPS keystore and listeners")
+public class FtpReloadService {
+
+    @Value("${ftp.reload.watch-keystore:true}")
+    private boolean watchKeystore;
+
+    // Gom các sự kiện ghi file liên tiếp (copy/ghi đè keystore) thành một lần reload
+    @Value("${ftp.reload.debounce-ms:2000}")
+    private long debounceMs;
+
+    // Thời gian tối đa chờ session trên listener cũ tự đóng sau khi rebind
+    @Value("${ftp.reload.drain-timeout-ms:1800000}")
+    private long drainTimeoutMs;
+
+    private final FtpServerService ftpServerService;
+    private final FtpServerConfig serverConfig;
+    private final ReloadableSslConfiguration reloadableSsl;
+    private final ConfigurableEnvironment environment;
+
+    private WatchService watchService;
+    private Thread watcher;
+
+    private final LongAdder sslReloads = new LongAdder();
+    private final LongAdder listenerRebinds = new LongAdder();
+    private final LongAdder failedReloads = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        if (!watchKeystore) {
+            return;
+        }
+        Path keystore = keystorePath();
+        Path directory = keystore.getParent();
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            watcher = new Thread(this::watchLoop, "ftp-keystore-watch");
+            watcher.setDaemon(true);
+            watcher.start();
+            log.info(">> Watching keystore {} for changes", keystore);
+        } catch (IOException e) {
+            log.warn(">> Keystore watch unavailable, reload via JMX only: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.debug("Close WatchService failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private Path keystorePath() {
+        return Path.of(environment.getRequiredProperty("ftp.ssl.keystore.path")).toAbsolutePath().normalize();
+    }
+
+    private void watchLoop() {
+        long pendingSince = 0;
+        while (true) {
+            try {
+                WatchKey key = pendingSince == 0
+                        ? watchService.take()
+                        : watchService.poll(debounceMs, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    String fileName = keystorePath().getFileName().toString();
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.context() instanceof Path changed && changed.toString().equals(fileName)) {
+                            pendingSince = System.currentTimeMillis();
+                        }
+                    }
+                    key.reset();
+                }
+                if (pendingSince != 0 && System.currentTimeMillis() - pendingSince >= debounceMs) {
+                    pendingSince = 0;
+                    log.info(">> Keystore changed on disk, reloading");
+                    reloadSsl();
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            } catch (Exception e) {
+                log.error(">> Keystore watch failed", e);
+            }
+        }
+    }
+
+    /**
+     * Đọc lại file cấu hình, reload keystore rồi áp dụng thay đổi listener
+     */
+    @ManagedOperation(description = "Re-read configuration files, reload the keystore and rebind changed listeners")
+    public synchronized String reload() {
+        int refreshed = refreshConfigFiles();
+        return "config sources refreshed: " + refreshed + "; " + reloadSsl() + "; " + reloadListeners();
+    }
+
+    /**
+     * Dựng SSLContext từ keystore hiện tại cho kết nối mới; keystore lỗi thì giữ nguyên chứng chỉ đang dùng
+     */
+    @ManagedOperation(description = "Reload the FTPS keystore for new connections")
+    public synchronized String reloadSsl() {
+        TunedSslConfiguration next;
+        try {
+            next = serverConfig.createSslConfiguration();
+        } catch (RuntimeException e) {
+            failedReloads.increment();
+            log.error(">> Keystore reload failed, keeping current certificate", e);
+            return "ssl reload failed: " + e.getMessage();
+        }
+        reloadableSsl.swap(next);
+        for (Listener listener : ftpServerService.getListeners().values()) {
+            if (listener instanceof TunedNioListener tuned) {
+                tuned.refreshSslFilter();
+            }
+        }
+        sslReloads.increment();
+        log.info(">> Keystore reloaded, new connections use the new SSL context");
+        return "ssl reloaded";
+    }
+
+    /**
+     * So listener đang chạy với cấu hình hiện tại: thêm listener mới, rebind listener đổi tham số, gỡ listener bị bỏ
+     */
+    @ManagedOperation(description = "Start, rebind or remove listeners to match the current configuration")
+    public synchronized String reloadListeners() {
+        DefaultFtpServerContext context = ftpServerService.getServerContext();
+        if (context == null) {
+            return "ftp server is not running";
+        }
+        Map<String, Listener> desired;
+        try {
+            desired = serverConfig.createListeners();
+        } catch (RuntimeException e) {
+            failedReloads.increment();
+            log.error(">> Listener configuration invalid, keeping current listeners", e);
+            return "listener reload failed: " + e.getMessage();
+        }
+        Map<String, Listener> running = ftpServerService.getListeners();
+        List<String> changes = new ArrayList<>();
+        for (Map.Entry<String, Listener> entry : desired.entrySet()) {
+            String name = entry.getKey();
+            Listener current = running.get(name);
+            Listener next = entry.getValue();
+            if (current instanceof TunedNioListener tunedCurrent && next instanceof TunedNioListener tunedNext
+                    && tunedCurrent.hasSameBinding(tunedNext)) {
+                continue;
+            }
+            // Giải phóng cổng trước để listener mới bind được cùng cổng; session cũ vẫn chạy
+            if (current instanceof TunedNioListener tunedCurrent) {
+                tunedCurrent.unbindKeepingSessions();
+            }
+            try {
+                next.start(context);
+            } catch (RuntimeException e) {
+                failedReloads.increment();
+                log.error(">> Failed to start listener {}, keeping the old one", name, e);
+                if (current != null) {
+                    current.resume();
+                }
+                changes.add(name + " failed");
+                continue;
+            }
+            synchronized (context) {
+                context.setListener(name, next);
+            }
+            listenerRebinds.increment();
+            changes.add(name + (current == null ? " started on " : " rebound to ") + next.getPort());
+            if (current != null) {
+                ftpServerService.retire(name, current, drainTimeoutMs);
+            }
+        }
+        for (Map.Entry<String, Listener> entry : running.entrySet()) {
+            if (!desired.containsKey(entry.getKey())) {
+                if (entry.getValue() instanceof TunedNioListener tuned) {
+                    tuned.unbindKeepingSessions();
+                }
+                synchronized (context) {
+                    context.removeListener(entry.getKey());
+                }
+                changes.add(entry.getKey() + " removed");
+                ftpServerService.retire(entry.getKey(), entry.getValue(), drainTimeoutMs);
+            }
+        }
+        log.info(">> Listener reload: {}", changes.isEmpty() ? "no changes" : changes);
+        return changes.isEmpty() ? "listeners unchanged" : String.join(", ", changes);
+    }
+
+    /**
+     * Nạp lại các property source lấy từ file (application.yml/properties trên đĩa) vào Environment.
+     * File trong classpath (đóng gói trong jar) không đổi khi chạy nên bỏ qua.
+     */
+    private int refreshConfigFiles() {
+        int refreshed = 0;
+        for (PropertySource<?> source : environment.getPropertySources()) {
+            // Spring Boot đặt tên: Config resource 'file [config/application.yml]' via location '...' (document #n)
+            String name = source.getName();
+            int start = name.indexOf("'file [");
+            int end = start < 0 ? -1 : name.indexOf("]'", start);
+            if (end < 0) {
+                continue;
+            }
+            String file = name.substring(start + 7, end);
+            PropertySourceLoader loader = file.endsWith(".properties") ? new PropertiesPropertySourceLoader() : new YamlPropertySourceLoader();
+            try {
+                List<PropertySource<?>> documents = loader.load(name, new FileSystemResource(file));
+                int document = documentIndex(name);
+                if (document < documents.size() && documents.get(document).getSource() instanceof Map<?, ?> map) {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> properties = (Map<String, Object>) map;
+                    // Giá trị là OriginTrackedValue: phải bọc lại bằng OriginTrackedMapPropertySource để được unwrap khi convert,
+                    // đặt theo tên cũ vì loader đặt tên document khác (thêm "(document #n)")
+                    environment.getPropertySources().replace(name, new OriginTrackedMapPropertySource(name, properties, true));
+                    refreshed++;
+                }
+            } catch (IOException | RuntimeException e) {
+                failedReloads.increment();
+                log.error(">> Failed to re-read {}, keeping previous values", file, e);
+            }
+        }
+        return refreshed;
+    }
+
+    private static int documentIndex(String name) {
+        int marker = name.lastIndexOf("(document #");
+        if (marker < 0) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(name.substring(marker + 11, name.indexOf(')', marker)));
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+
+    public long getSslReloads() {
+        return sslReloads.sum();
+    }
+
+    public long getListenerRebinds() {
+        return listenerRebinds.sum();
+    }
+
+    public long getFailedReloads() {
+        return failedReloads.sum();
+    }
+
+    public int getDrainingListeners() {
+        return ftpServerService.getRetiredListenerCount();
+    }
+}
@@ -1,25 +1,48 @@
 package com.neo.ftpserver.ftp;
 
+import com.neo.ftpserver.service.FtpAuditService;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.ftpserver.FtpServer;
 import org.apache.ftpserver.FtpServerFactory;
+import org.apache.ftpserver.impl.DefaultFtpServer;
+import org.apache.ftpserver.impl.DefaultFtpServerContext;
+import org.apache.ftpserver.listener.Listener;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class FtpServerService {
     private FtpServer ftpServer;
     private final FtpServerFactory serverFactory;
+    private final InFlightTransfers inFlightTransfers;
+    // Tiêm vào để Spring hủy bean này trước, pipeline audit còn chạy trong lúc drain
+    private final FtpAuditService auditService;
     @Value("${ftp.server.ftp-port:2121}")
     private int ftpPort;
     @Value("${ftp.server.ftps-port:990}")
     private int ftpsPort;
 
+    // Thời gian tối đa chờ các lần truyền file đang chạy hoàn tất khi tắt server
+    @Value("${ftp.shutdown.drain-timeout-ms:120000}")
+    private long drainTimeoutMs;
+
+    @Value("${ftp.shutdown.audit-flush-timeout-ms:10000}")
+    private long auditFlushTimeoutMs;
+
+    // Listener đã bị thay khi reload, còn phục vụ session cũ
+    private final Set<TunedNioListener> retiredListeners = ConcurrentHashMap.newKeySet();
+
 
     @PostConstruct
     public void initFtpServer() {
@@ -33,15 +56,114 @@ public class FtpServerService {
         }
     }
 
+    /**
+     * Context của server đang chạy (listener hiện hành, thay được khi reload), null nếu server chưa start
+     */
+    public DefaultFtpServerContext getServerContext() {
+        if (ftpServer instanceof DefaultFtpServer server && server.getServerContext() instanceof DefaultFtpServerContext context) {
+            return context;
+        }
+        return null;
+    }
+
+    /**
+     * Bản sao listener đang chạy theo tên; FtpReloadService thay listener trong context dưới cùng khóa
+     */
+    public Map<String, Listener> getListeners() {
+        DefaultFtpServerContext context = getServerContext();
+        if (context == null) {
+            return Map.of();
+        }
+        synchronized (context) {
+            return new LinkedHashMap<>(context.getListeners());
+        }
+    }
+
+    /**
+     * Listener cũ (đã ngừng nhận kết nối) chờ session tự đóng trên luồng riêng rồi dừng hẳn
+     */
+    public void retire(String name, Listener listener, long timeoutMs) {
+        if (!(listener instanceof TunedNioListener tuned)) {
+            listener.stop();
+            return;
+        }
+        retiredListeners.add(tuned);
+        Thread drainer = new Thread(() -> {
+            try {
+                int cut = tuned.drainAndStop(timeoutMs);
+                if (cut > 0) {
+                    log.warn(">> Old listener {} stopped after {}ms, {} sessions closed", name, timeoutMs, cut);
+                } else {
+                    log.info(">> Old listener {} drained and stopped", name);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                tuned.stop();
+            } finally {
+                retiredListeners.remove(tuned);
+            }
+        }, "ftp-listener-drain-" + name);
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    public int getRetiredListenerCount() {
+        return retiredListeners.size();
+    }
+
+    /**
+     * Tắt có drain: ngừng nhận kết nối, chặn lệnh truyền file mới, chờ các lần truyền đang chạy xong
+     * (tối đa drain-timeout), dừng server rồi đẩy hết audit còn trong pipeline
+     */
     @PreDestroy
     public void stopFtpServer() {
         try {
             if (ftpServer != null && !ftpServer.isStopped()) {
+                drain();
                 ftpServer.stop();
+                for (TunedNioListener listener : retiredListeners) {
+                    listener.stop();
+                }
                 log.info("🛑 FTP/FTPS server stopped successfully");
             }
         } catch (Exception e) {
             log.error("⚠️ Error while stopping FTP/FTPS server", e);
         }
+        flushAudit();
+    }
+
+    private void drain() throws InterruptedException {
+        inFlightTransfers.beginDrain();
+        // Giữ session đang mở để lần truyền dở chạy tiếp; client mới chuyển sang node khác
+        for (Listener listener : getListeners().values()) {
+            if (listener instanceof TunedNioListener tuned) {
+                tuned.unbindKeepingSessions();
+            }
+        }
+        log.info(">> Draining FTP server: {} transfers in flight, waiting up to {}ms",
+                inFlightTransfers.getActiveCount(), drainTimeoutMs);
+        if (inFlightTransfers.awaitIdle(drainTimeoutMs)) {
+            log.info(">> All transfers completed, stopping");
+            return;
+        }
+        List<InFlightTransfers.Transfer> aborted = inFlightTransfers.takeAborted();
+        log.warn(">> Drain timeout, aborting {} transfers", aborted.size());
+        long now = System.currentTimeMillis();
+        for (InFlightTransfers.Transfer transfer : aborted) {
+            String action = transfer.isUpload() ? "ABORT_STOR" : "ABORT_RETR";
+            log.warn(">> Aborted {} {} {}: {} bytes after {}ms", action, transfer.getAccount(), transfer.getPath(),
+                    transfer.getBytes(), now - transfer.getStartedAt());
+            auditService.logTransfer(transfer.getAccount(), action, transfer.getPath(), transfer.getBytes(),
+                    now - transfer.getStartedAt(), transfer.getClientIp(), transfer.isSecure(), now);
+        }
+    }
+
+    /**
+     * Audit được publish thẳng trên luồng lệnh nên sau khi server dừng chỉ còn chờ pipeline ghi hết
+     */
+    private void flushAudit() {
+        if (!auditService.flush(auditFlushTimeoutMs)) {
+            log.warn(">> Audit pipeline not fully flushed on shutdown, {} events queued", auditService.getQueuedCount());
+        }
     }
 }
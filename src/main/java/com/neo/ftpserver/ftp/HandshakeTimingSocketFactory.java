@@ -0,0 +1,79 @@
+package com.neo.ftpserver.ftp;
+
+import com.neo.ftpserver.constans.TlsChannel;
+import com.neo.ftpserver.metrics.TlsHandshakeMetrics;
+
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+/**
+ * SSLSocketFactory cho kết nối dữ liệu FTPS: đo thời gian từ lúc bọc socket tới khi handshake xong
+ * và phân biệt handshake đầy đủ với resume (session có thời điểm tạo trước lần bọc này).
+ * <p>
+ * JDK gọi HandshakeCompletedListener trên một luồng riêng, không chặn luồng truyền file.
+ */
+class HandshakeTimingSocketFactory extends SSLSocketFactory {
+
+    private final SSLSocketFactory delegate;
+    private final TlsHandshakeMetrics metrics;
+
+    HandshakeTimingSocketFactory(SSLSocketFactory delegate, TlsHandshakeMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    private Socket observe(Socket socket) {
+        if (socket instanceof SSLSocket sslSocket) {
+            long startNanos = System.nanoTime();
+            long startMillis = System.currentTimeMillis();
+            sslSocket.addHandshakeCompletedListener(event -> metrics.handshakeCompleted(TlsChannel.DATA,
+                    event.getSession().getCreationTime() < startMillis, System.nanoTime() - startNanos));
+        }
+        return socket;
+    }
+
+    @Override
+    public String[] getDefaultCipherSuites() {
+        return delegate.getDefaultCipherSuites();
+    }
+
+    @Override
+    public String[] getSupportedCipherSuites() {
+        return delegate.getSupportedCipherSuites();
+    }
+
+    // Passive mode: bọc socket đã accept
+    @Override
+    public Socket createSocket(Socket socket, String host, int port, boolean autoClose) throws IOException {
+        return observe(delegate.createSocket(socket, host, port, autoClose));
+    }
+
+    // Active mode: socket chưa kết nối, thời gian đo gồm cả connect tới client
+    @Override
+    public Socket createSocket() throws IOException {
+        return observe(delegate.createSocket());
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        return observe(delegate.createSocket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+        return observe(delegate.createSocket(host, port, localHost, localPort));
+    }
+
+    @Override
+    public Socket createSocket(InetAddress host, int port) throws IOException {
+        return observe(delegate.createSocket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+        return observe(delegate.createSocket(address, port, localAddress, localPort));
+    }
+}
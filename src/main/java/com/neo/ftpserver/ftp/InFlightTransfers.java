@@ -0,0 +1,147 @@
+package com.neo.ftpserver.ftp;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Các lần truyền file đang chạy trên toàn server (stream dữ liệu đã mở, chưa đóng).
+ * Khi tắt server, FtpServerService bật chế độ drain và chờ tập này rỗng trước khi dừng hẳn.
+ */
+@Slf4j
+@Component
+public class InFlightTransfers {
+
+    /**
+     * Một lần truyền đang chạy; số byte đọc trực tiếp từ stream đếm byte
+     */
+    public static final class Transfer {
+        private final String account;
+        private final String clientIp;
+        private final boolean secure;
+        private final String path;
+        private final boolean upload;
+        private final long startedAt = System.currentTimeMillis();
+        private final LongSupplier bytes;
+        // Đã bị cắt khi dừng server và audit riêng → lúc stream đóng không ghi nhận lại
+        private volatile boolean aborted;
+
+        Transfer(String account, String clientIp, boolean secure, String path, boolean upload, LongSupplier bytes) {
+            this.account = account;
+            this.clientIp = clientIp;
+            this.secure = secure;
+            this.path = path;
+            this.upload = upload;
+            this.bytes = bytes;
+        }
+
+        public String getAccount() {
+            return account;
+        }
+
+        public String getClientIp() {
+            return clientIp;
+        }
+
+        public boolean isSecure() {
+            return secure;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public boolean isUpload() {
+            return upload;
+        }
+
+        public long getStartedAt() {
+            return startedAt;
+        }
+
+        public long getBytes() {
+            return bytes.getAsLong();
+        }
+
+        boolean isAborted() {
+            return aborted;
+        }
+    }
+
+    private final Set<Transfer> active = ConcurrentHashMap.newKeySet();
+    private volatile boolean draining;
+    private final LongAdder startedCount = new LongAdder();
+    private final LongAdder abortedCount = new LongAdder();
+
+    Transfer begin(String account, String clientIp, boolean secure, String path, boolean upload, LongSupplier bytes) {
+        Transfer transfer = new Transfer(account, clientIp, secure, path, upload, bytes);
+        active.add(transfer);
+        startedCount.increment();
+        return transfer;
+    }
+
+    void end(Transfer transfer) {
+        active.remove(transfer);
+    }
+
+    /**
+     * Bật chế độ drain: UnifiedFtplet từ chối lệnh truyền file mới
+     */
+    public void beginDrain() {
+        draining = true;
+    }
+
+    public boolean isDraining() {
+        return draining;
+    }
+
+    /**
+     * Chờ tới khi không còn lần truyền nào hoặc hết thời gian, trả về true nếu đã rỗng
+     */
+    public boolean awaitIdle(long timeoutMs) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        long deadline = start + timeoutMs;
+        long nextReport = start + TimeUnit.SECONDS.toMillis(5);
+        while (!active.isEmpty() && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(200);
+            if (System.currentTimeMillis() >= nextReport) {
+                log.info(">> Draining: {} transfers still in flight, {}ms left", active.size(), deadline - System.currentTimeMillis());
+                nextReport += TimeUnit.SECONDS.toMillis(5);
+            }
+        }
+        return active.isEmpty();
+    }
+
+    /**
+     * Lấy danh sách lần truyền còn lại (bị cắt khi dừng server), gỡ khỏi tập đang chạy và tính vào số bị hủy.
+     * Các lần truyền này được đánh dấu để khi stream đóng, afterCommand không audit lại lần nữa.
+     */
+    public List<Transfer> takeAborted() {
+        List<Transfer> aborted = new ArrayList<>(active);
+        for (Transfer transfer : aborted) {
+            transfer.aborted = true;
+            active.remove(transfer);
+        }
+        abortedCount.add(aborted.size());
+        return aborted;
+    }
+
+    public int getActiveCount() {
+        return active.size();
+    }
+
+    public long getStartedCount() {
+        return startedCount.sum();
+    }
+
+    public long getAbortedCount() {
+        return abortedCount.sum();
+    }
+}
@@ -0,0 +1,20 @@
+package com.neo.ftpserver.ftp;
+
+import com.neo.ftpserver.constans.ListenerExecutorType;
+
+/**
+ * Tham số MINA/socket của một listener, giá trị <= 0 nghĩa là giữ mặc định của MINA/hệ điều hành
+ *
+ * @param processorCount    Số NIO I/O processor (selector thread), 0 = số CPU
+ * @param executorType      Executor xử lý lệnh FTP
+ * @param executorThreads   Số worker tối đa của executor riêng (ORDERED/VIRTUAL)
+ * @param readBufferSize    Kích thước buffer đọc ban đầu của MINA
+ * @param receiveBufferSize SO_RCVBUF của control connection
+ * @param sendBufferSize    SO_SNDBUF của control connection
+ * @param tcpNoDelay        TCP_NODELAY, tắt Nagle để reply ngắn không bị trễ
+ * @param backlog           Hàng đợi accept của server socket
+ */
+public record ListenerTuning(int processorCount, ListenerExecutorType executorType, int executorThreads,
+                             int readBufferSize, int receiveBufferSize, int sendBufferSize,
+                             boolean tcpNoDelay, int backlog) {
+}
@@ -0,0 +1,51 @@
+package com.neo.ftpserver.ftp;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+/**
+ * Phát listing ra data connection theo từng dòng: chỉ mã hóa UTF-8 dòng đang gửi,
+ * không ghép cả listing thành một String lớn
+ */
+final class ListingInputStream extends InputStream {
+
+    private final Iterator<String> lines;
+    private byte[] current = new byte[0];
+    private int position;
+
+    ListingInputStream(Iterator<String> lines) {
+        this.lines = lines;
+    }
+
+    private boolean fill() {
+        while (position >= current.length) {
+            if (!lines.hasNext()) {
+                return false;
+            }
+            current = lines.next().getBytes(StandardCharsets.UTF_8);
+            position = 0;
+        }
+        return true;
+    }
+
+    @Override
+    public int read() {
+        return fill() ? current[position++] & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        int written = 0;
+        while (written < len && fill()) {
+            int n = Math.min(len - written, current.length - position);
+            System.arraycopy(current, position, b, off + written, n);
+            position += n;
+            written += n;
+        }
+        return written == 0 ? -1 : written;
+    }
+}
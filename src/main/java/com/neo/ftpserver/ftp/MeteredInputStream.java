@@ -0,0 +1,71 @@
+package com.neo.ftpserver.ftp;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Đếm số byte đọc (RETR) và báo TransferTracker khi đóng stream
+ */
+final class MeteredInputStream extends FilterInputStream implements ChannelTransferSource {
+
+    private final TransferTracker tracker;
+    private final String path;
+    private final long openedAt = System.nanoTime();
+    private final InFlightTransfers.Transfer transfer;
+    // Luồng drain đọc khi báo cáo lần truyền bị cắt
+    private volatile long bytes;
+    private boolean closed;
+
+    MeteredInputStream(InputStream in, TransferTracker tracker, String path) {
+        super(in);
+        this.tracker = tracker;
+        this.path = path;
+        this.transfer = tracker.opened(path, false, () -> bytes);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            bytes++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) {
+            bytes += n;
+        }
+        return n;
+    }
+
+    @Override
+    public boolean canTransfer() {
+        return in instanceof ChannelTransferSource source && source.canTransfer();
+    }
+
+    @Override
+    public long transferTo(WritableByteChannel target, long maxBytes) throws IOException {
+        long n = ((ChannelTransferSource) in).transferTo(target, maxBytes);
+        if (n > 0) {
+            bytes += n;
+        }
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            if (!closed) {
+                closed = true;
+                tracker.record(new TransferRecord(path, false, bytes, System.nanoTime() - openedAt), transfer);
+            }
+        }
+    }
+}
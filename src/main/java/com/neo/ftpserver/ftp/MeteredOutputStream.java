@@ -0,0 +1,66 @@
+package com.neo.ftpserver.ftp;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Đếm số byte ghi (STOR/APPE) và báo TransferTracker khi đóng stream
+ */
+final class MeteredOutputStream extends FilterOutputStream implements ChannelTransferSink {
+
+    private final TransferTracker tracker;
+    private final String path;
+    private final long openedAt = System.nanoTime();
+    private final InFlightTransfers.Transfer transfer;
+    // Luồng drain đọc khi báo cáo lần truyền bị cắt
+    private volatile long bytes;
+    private boolean closed;
+
+    MeteredOutputStream(OutputStream out, TransferTracker tracker, String path) {
+        super(out);
+        this.tracker = tracker;
+        this.path = path;
+        this.transfer = tracker.opened(path, true, () -> bytes);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        bytes++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        // FilterOutputStream mặc định ghi từng byte, chuyển thẳng cả mảng xuống stream gốc
+        out.write(b, off, len);
+        bytes += len;
+    }
+
+    @Override
+    public boolean canTransfer() {
+        return out instanceof ChannelTransferSink sink && sink.canTransfer();
+    }
+
+    @Override
+    public long transferFrom(ReadableByteChannel source, long maxBytes) throws IOException {
+        long n = ((ChannelTransferSink) out).transferFrom(source, maxBytes);
+        if (n > 0) {
+            bytes += n;
+        }
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            if (!closed) {
+                closed = true;
+                tracker.record(new TransferRecord(path, true, bytes, System.nanoTime() - openedAt), transfer);
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.neo.ftpserver.ftp;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ftpserver.ftplet.FileSystemFactory;
+import org.apache.ftpserver.ftplet.FileSystemView;
+import org.apache.ftpserver.ftplet.FtpException;
+import org.apache.ftpserver.ftplet.User;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * FileSystemFactory dựa trên java.nio.file thay cho NativeFileSystemFactory:
+ * đọc attribute một lần cho mỗi entry khi LIST, đọc/ghi file qua FileChannel.
+ */
+@Slf4j
+public class NioFileSystemFactory implements FileSystemFactory {
+
+    private final boolean createHome;
+    // Cache listing thư mục, được invalidate khi FTP ghi/xóa/đổi tên; null = không dùng
+    private final DirectoryListingCache listingCache;
+
+    public NioFileSystemFactory(boolean createHome, DirectoryListingCache listingCache) {
+        this.createHome = createHome;
+        this.listingCache = listingCache;
+    }
+
+    @Override
+    public FileSystemView createFileSystemView(User user) throws FtpException {
+        Path home = Paths.get(user.getHomeDirectory()).toAbsolutePath().normalize();
+        if (createHome && !Files.isDirectory(home)) {
+            try {
+                Files.createDirectories(home);
+                log.info("Created home directory for user {}: {}", user.getName(), home);
+            } catch (IOException e) {
+                throw new FtpException("Cannot create user home: " + home, e);
+            }
+        }
+        if (!Files.isDirectory(home)) {
+            throw new FtpException("User home is not a directory: " + home);
+        }
+        return new NioFileSystemView(home, user, listingCache);
+    }
+}
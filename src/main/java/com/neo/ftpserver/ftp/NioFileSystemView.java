@@ -0,0 +1,108 @@
+package com.neo.ftpserver.ftp;
+
+import org.apache.ftpserver.ftplet.FileSystemView;
+import org.apache.ftpserver.ftplet.FtpFile;
+import org.apache.ftpserver.ftplet.User;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * View theo đường dẫn ảo: "/" là home directory của user, không đi ra ngoài được qua ".."
+ */
+final class NioFileSystemView implements FileSystemView {
+
+    private final Path root;
+    private final User user;
+    private final DirectoryListingCache listingCache;
+    private String currentDir = "/";
+
+    NioFileSystemView(Path root, User user, DirectoryListingCache listingCache) {
+        this.root = root;
+        this.user = user;
+        this.listingCache = listingCache;
+    }
+
+    User getUser() {
+        return user;
+    }
+
+    /**
+     * Nội dung thư mục đã đổi do chính thao tác FTP → bỏ listing đã cache
+     */
+    void invalidateListing(Path directory) {
+        if (listingCache != null && directory != null) {
+            listingCache.invalidate(directory.toAbsolutePath().normalize());
+        }
+    }
+
+    @Override
+    public FtpFile getHomeDirectory() {
+        return file("/");
+    }
+
+    @Override
+    public FtpFile getWorkingDirectory() {
+        return file(currentDir);
+    }
+
+    @Override
+    public boolean changeWorkingDirectory(String dir) {
+        String virtualPath = resolveVirtual(dir);
+        if (!Files.isDirectory(toPhysical(virtualPath))) {
+            return false;
+        }
+        currentDir = virtualPath;
+        return true;
+    }
+
+    @Override
+    public FtpFile getFile(String file) {
+        return file(resolveVirtual(file));
+    }
+
+    @Override
+    public boolean isRandomAccessible() {
+        return true;
+    }
+
+    @Override
+    public void dispose() {
+        // Không giữ tài nguyên nào
+    }
+
+    private NioFtpFile file(String virtualPath) {
+        return new NioFtpFile(this, virtualPath, toPhysical(virtualPath), null);
+    }
+
+    Path toPhysical(String virtualPath) {
+        return virtualPath.length() == 1 ? root : root.resolve(virtualPath.substring(1));
+    }
+
+    /**
+     * Chuẩn hóa đường dẫn client gửi lên (tuyệt đối hoặc tương đối so với thư mục hiện tại) thành đường dẫn ảo,
+     * ".." ở gốc bị bỏ qua
+     */
+    private String resolveVirtual(String path) {
+        String normalized = path == null ? "" : path.trim().replace('\\', '/');
+        Deque<String> segments = new ArrayDeque<>();
+        if (normalized.startsWith("~")) {
+            normalized = normalized.substring(1);
+        } else if (!normalized.startsWith("/")) {
+            normalized = currentDir + "/" + normalized;
+        }
+        for (String segment : normalized.split("/")) {
+            if (segment.isEmpty() || segment.equals(".")) {
+                continue;
+            }
+            if (segment.equals("..")) {
+                segments.pollLast();
+            } else {
+                segments.addLast(segment);
+            }
+        }
+        return segments.isEmpty() ? "/" : "/" + String.join("/", segments);
+    }
+}
@@ -0,0 +1,282 @@
+package com.neo.ftpserver.ftp;
+
+import org.apache.ftpserver.ftplet.FtpFile;
+import org.apache.ftpserver.usermanager.impl.WriteRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * FtpFile trên java.nio.file. Entry sinh ra từ listFiles mang sẵn BasicFileAttributes đọc một lần,
+ * nên LIST không stat lại từng file cho mỗi thuộc tính; entry từ getFile luôn đọc attribute mới.
+ * Quyền ghi/xóa kiểm tra như NativeFtpFile (WriteRequest + quyền ghi của thư mục cha).
+ */
+final class NioFtpFile implements FtpFile {
+
+    private final NioFileSystemView view;
+    private final String virtualPath;
+    private final Path path;
+    // Attribute đọc sẵn khi liệt kê thư mục, null thì đọc khi cần
+    private final BasicFileAttributes listedAttributes;
+
+    NioFtpFile(NioFileSystemView view, String virtualPath, Path path, BasicFileAttributes listedAttributes) {
+        this.view = view;
+        this.virtualPath = virtualPath;
+        this.path = path;
+        this.listedAttributes = listedAttributes;
+    }
+
+    private BasicFileAttributes attributes() {
+        if (listedAttributes != null) {
+            return listedAttributes;
+        }
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    @Override
+    public String getAbsolutePath() {
+        return virtualPath;
+    }
+
+    @Override
+    public String getName() {
+        if (virtualPath.equals("/")) {
+            return "/";
+        }
+        return virtualPath.substring(virtualPath.lastIndexOf('/') + 1);
+    }
+
+    @Override
+    public boolean isHidden() {
+        return getName().startsWith(".") && !virtualPath.equals("/");
+    }
+
+    @Override
+    public boolean isDirectory() {
+        BasicFileAttributes attributes = attributes();
+        return attributes != null && attributes.isDirectory();
+    }
+
+    @Override
+    public boolean isFile() {
+        BasicFileAttributes attributes = attributes();
+        return attributes != null && attributes.isRegularFile();
+    }
+
+    @Override
+    public boolean doesExist() {
+        return attributes() != null;
+    }
+
+    @Override
+    public boolean isReadable() {
+        return Files.isReadable(path);
+    }
+
+    @Override
+    public boolean isWritable() {
+        if (view.getUser().authorize(new WriteRequest(virtualPath)) == null) {
+            return false;
+        }
+        return !Files.exists(path) || Files.isWritable(path);
+    }
+
+    @Override
+    public boolean isRemovable() {
+        if (virtualPath.equals("/") || view.getUser().authorize(new WriteRequest(virtualPath)) == null) {
+            return false;
+        }
+        int slash = virtualPath.lastIndexOf('/');
+        String parentVirtual = slash == 0 ? "/" : virtualPath.substring(0, slash);
+        return new NioFtpFile(view, parentVirtual, path.getParent(), null).isWritable();
+    }
+
+    @Override
+    public String getOwnerName() {
+        return "user";
+    }
+
+    @Override
+    public String getGroupName() {
+        return "group";
+    }
+
+    @Override
+    public int getLinkCount() {
+        return isDirectory() ? 3 : 1;
+    }
+
+    @Override
+    public long getLastModified() {
+        BasicFileAttributes attributes = attributes();
+        return attributes == null ? 0L : attributes.lastModifiedTime().toMillis();
+    }
+
+    @Override
+    public boolean setLastModified(long time) {
+        try {
+            Files.setLastModifiedTime(path, FileTime.fromMillis(time));
+            view.invalidateListing(path.getParent());
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public long getSize() {
+        BasicFileAttributes attributes = attributes();
+        return attributes == null ? 0L : attributes.size();
+    }
+
+    @Override
+    public Object getPhysicalFile() {
+        return path.toFile();
+    }
+
+    @Override
+    public boolean mkdir() {
+        if (!isWritable()) {
+            return false;
+        }
+        try {
+            Files.createDirectory(path);
+            view.invalidateListing(path.getParent());
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean delete() {
+        if (!isRemovable()) {
+            return false;
+        }
+        try {
+            Files.delete(path);
+            view.invalidateListing(path.getParent());
+            view.invalidateListing(path);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean move(FtpFile destination) {
+        if (!(destination instanceof NioFtpFile target) || !isRemovable() || !target.isWritable()) {
+            return false;
+        }
+        try {
+            Files.move(path, target.path);
+            view.invalidateListing(path.getParent());
+            view.invalidateListing(target.path.getParent());
+            view.invalidateListing(path);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public List<? extends FtpFile> listFiles() {
+        if (!isDirectory()) {
+            return null;
+        }
+        String prefix = virtualPath.equals("/") ? "/" : virtualPath + "/";
+        List<NioFtpFile> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+            for (Path child : stream) {
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(child, BasicFileAttributes.class);
+                } catch (IOException e) {
+                    // File bị xóa giữa lúc liệt kê
+                    continue;
+                }
+                String name = child.getFileName().toString();
+                files.add(new NioFtpFile(view, prefix + name, child, attributes));
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        files.sort(Comparator.comparing(NioFtpFile::getName));
+        return Collections.unmodifiableList(files);
+    }
+
+    @Override
+    public OutputStream createOutputStream(long offset) throws IOException {
+        if (!isWritable()) {
+            throw new IOException("No write permission : " + getName());
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            // Giống NativeFtpFile: cắt file tại offset (STOR = 0, REST + STOR = ghi tiếp)
+            channel.truncate(offset);
+            channel.position(offset);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        view.invalidateListing(path.getParent());
+        // Kích thước/mtime chỉ chốt khi đóng file → invalidate lần nữa lúc close
+        return new FileChannelOutputStream(channel) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    view.invalidateListing(path.getParent());
+                }
+            }
+        };
+    }
+
+    @Override
+    public InputStream createInputStream(long offset) throws IOException {
+        if (!isReadable()) {
+            throw new IOException("No read permission : " + getName());
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            // Không memory-map: STOR/REST cắt ngắn cùng file trong lúc RETR sẽ gây SIGBUS;
+            // FileChannel.read/transferTo chỉ trả về ít byte hơn/EOF
+            channel.position(offset);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new FileChannelInputStream(channel);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof NioFtpFile other && path.equals(other.path);
+    }
+
+    @Override
+    public int hashCode() {
+        return path.hashCode();
+    }
+}
@@ -0,0 +1,174 @@
+package com.neo.ftpserver.ftp;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cấp phát cổng passive dùng chung cho mọi listener.
+ * <p>
+ * Cổng rảnh nằm trong hàng đợi vòng FIFO theo thời điểm trả về, nên lấy/trả đều O(1) và cổng vừa trả
+ * luôn nằm cuối hàng: cổng đầu hàng chưa qua cooldown thì không cổng nào khác qua được.
+ * Hết cổng thì luồng yêu cầu chờ tối đa max-wait trước khi trả -1 (FtpServer trả 425 cho client).
+ */
+@Slf4j
+public class PassivePortAllocator {
+
+    private final int[] ring;
+    private final long[] releasedAt;
+    private final BitSet inUse = new BitSet(65536);
+    private final int capacity;
+    private final long cooldownNanos;
+    private final long maxWaitNanos;
+    private final String portRange;
+    private int head;
+    private int size;
+
+    private final LongAdder acquiredCount = new LongAdder();
+    private final LongAdder exhaustedCount = new LongAdder();
+    private final LongAdder waitCount = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private volatile long maxWaitObservedNanos;
+
+    public PassivePortAllocator(String portRange, long cooldownMs, long maxWaitMs) {
+        BitSet ports = parse(portRange);
+        this.portRange = portRange;
+        this.capacity = ports.cardinality();
+        if (capacity == 0) {
+            throw new IllegalArgumentException("Passive port range is empty: " + portRange);
+        }
+        this.ring = new int[capacity];
+        this.releasedAt = new long[capacity];
+        this.cooldownNanos = TimeUnit.MILLISECONDS.toNanos(cooldownMs);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        long initial = System.nanoTime() - cooldownNanos;
+        for (int port = ports.nextSetBit(0); port >= 0; port = ports.nextSetBit(port + 1)) {
+            ring[size] = port;
+            releasedAt[size] = initial;
+            size++;
+        }
+        log.info(">> Passive port allocator: {} ports ({}), cooldown={}ms, maxWait={}ms", capacity, portRange, cooldownMs, maxWaitMs);
+    }
+
+    /**
+     * Cú pháp giống FtpServer: "30000-30999", "2300,2301,2400-2499"
+     */
+    private static BitSet parse(String portRange) {
+        BitSet ports = new BitSet(65536);
+        for (String token : portRange.split(",")) {
+            String part = token.trim();
+            if (part.isEmpty()) {
+                continue;
+            }
+            int dash = part.indexOf('-');
+            int from = Integer.parseInt((dash < 0 ? part : part.substring(0, dash)).trim());
+            int to = dash < 0 ? from : Integer.parseInt(part.substring(dash + 1).trim());
+            if (from < 1 || to > 65535 || from > to) {
+                throw new IllegalArgumentException("Invalid passive port range: " + part);
+            }
+            ports.set(from, to + 1);
+        }
+        return ports;
+    }
+
+    /**
+     * Lấy một cổng rảnh đã qua cooldown, chờ nếu cần
+     *
+     * @return Số cổng, -1 nếu hết cổng sau thời gian chờ tối đa
+     */
+    public synchronized int acquire() {
+        long start = System.nanoTime();
+        long deadline = start + maxWaitNanos;
+        boolean waited = false;
+        while (true) {
+            long now = System.nanoTime();
+            if (size > 0) {
+                long readyAt = releasedAt[head] + cooldownNanos;
+                if (readyAt - now <= 0) {
+                    int port = ring[head];
+                    head = (head + 1) % capacity;
+                    size--;
+                    inUse.set(port);
+                    acquiredCount.increment();
+                    if (waited) {
+                        recordWait(now - start);
+                    }
+                    return port;
+                }
+            }
+            long remaining = deadline - now;
+            if (remaining <= 0) {
+                exhaustedCount.increment();
+                recordWait(now - start);
+                log.warn(">> Passive ports exhausted: {} in use of {}", capacity - size, capacity);
+                return -1;
+            }
+            waited = true;
+            // Chờ cổng được trả hoặc cổng đầu hàng hết cooldown
+            long sleepNanos = size > 0 ? Math.min(remaining, releasedAt[head] + cooldownNanos - now) : remaining;
+            try {
+                TimeUnit.NANOSECONDS.timedWait(this, Math.max(1, sleepNanos));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Trả cổng về cuối hàng đợi, bỏ qua cổng không thuộc dải hoặc không đang được dùng
+     */
+    public synchronized void release(int port) {
+        if (port < 0 || port >= 65536 || !inUse.get(port)) {
+            return;
+        }
+        inUse.clear(port);
+        int tail = (head + size) % capacity;
+        ring[tail] = port;
+        releasedAt[tail] = System.nanoTime();
+        size++;
+        notifyAll();
+    }
+
+    private void recordWait(long nanos) {
+        waitCount.increment();
+        waitNanos.add(nanos);
+        if (nanos > maxWaitObservedNanos) {
+            maxWaitObservedNanos = nanos;
+        }
+    }
+
+    public String getPortRange() {
+        return portRange;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized int getInUse() {
+        return capacity - size;
+    }
+
+    public long getAcquiredCount() {
+        return acquiredCount.sum();
+    }
+
+    public long getExhaustedCount() {
+        return exhaustedCount.sum();
+    }
+
+    public long getWaitCount() {
+        return waitCount.sum();
+    }
+
+    public long getTotalWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(waitNanos.sum());
+    }
+
+    public long getMaxWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitObservedNanos);
+    }
+}
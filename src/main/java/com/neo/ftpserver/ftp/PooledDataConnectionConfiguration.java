@@ -0,0 +1,84 @@
+package com.neo.ftpserver.ftp;
+
+import org.apache.ftpserver.DataConnectionConfiguration;
+import org.apache.ftpserver.ssl.SslConfiguration;
+
+/**
+ * Cấu hình data connection của một listener: mọi thiết lập lấy từ cấu hình chuẩn của FtpServer,
+ * riêng cổng passive được cấp từ PassivePortAllocator dùng chung giữa các listener
+ */
+public class PooledDataConnectionConfiguration implements DataConnectionConfiguration {
+
+    private final DataConnectionConfiguration delegate;
+    private final PassivePortAllocator portAllocator;
+
+    public PooledDataConnectionConfiguration(DataConnectionConfiguration delegate, PassivePortAllocator portAllocator) {
+        this.delegate = delegate;
+        this.portAllocator = portAllocator;
+    }
+
+    @Override
+    public int requestPassivePort() {
+        return portAllocator.acquire();
+    }
+
+    @Override
+    public void releasePassivePort(int port) {
+        portAllocator.release(port);
+    }
+
+    @Override
+    public String getPassivePorts() {
+        return portAllocator.getPortRange();
+    }
+
+    @Override
+    public int getIdleTime() {
+        return delegate.getIdleTime();
+    }
+
+    @Override
+    public boolean isActiveEnabled() {
+        return delegate.isActiveEnabled();
+    }
+
+    @Override
+    public boolean isActiveIpCheck() {
+        return delegate.isActiveIpCheck();
+    }
+
+    @Override
+    public String getActiveLocalAddress() {
+        return delegate.getActiveLocalAddress();
+    }
+
+    @Override
+    public int getActiveLocalPort() {
+        return delegate.getActiveLocalPort();
+    }
+
+    @Override
+    public String getPassiveAddress() {
+        return delegate.getPassiveAddress();
+    }
+
+    @Override
+    public String getPassiveExernalAddress() {
+        return delegate.getPassiveExernalAddress();
+    }
+
+    @Override
+    public boolean isPassiveIpCheck() {
+        return delegate.isPassiveIpCheck();
+    }
+
+    @Override
+    public SslConfiguration getSslConfiguration() {
+        return delegate.getSslConfiguration();
+    }
+
+    @Override
+    public boolean isImplicitSsl() {
+        return delegate.isImplicitSsl();
+    }
+}
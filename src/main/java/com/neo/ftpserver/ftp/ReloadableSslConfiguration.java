@@ -0,0 +1,75 @@
+package com.neo.ftpserver.ftp;
+
+import com.neo.ftpserver.metrics.TlsHandshakeMetrics;
+import org.apache.ftpserver.ssl.ClientAuth;
+import org.apache.ftpserver.ssl.SslConfiguration;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import java.security.GeneralSecurityException;
+
+/**
+ * SslConfiguration cố định gắn vào listener, trỏ tới TunedSslConfiguration hiện hành.
+ * Đổi keystore chỉ cần swap: AUTH TLS, kết nối implicit và kênh data mới dùng SSLContext mới,
+ * kết nối đã handshake giữ nguyên session cũ.
+ */
+public class ReloadableSslConfiguration implements SslConfiguration {
+
+    private volatile TunedSslConfiguration current;
+
+    public ReloadableSslConfiguration(TunedSslConfiguration initial) {
+        this.current = initial;
+    }
+
+    /**
+     * Thay cấu hình cho kết nối mới, trả về cấu hình cũ
+     */
+    public TunedSslConfiguration swap(TunedSslConfiguration next) {
+        TunedSslConfiguration previous = current;
+        current = next;
+        return previous;
+    }
+
+    public TunedSslConfiguration getCurrent() {
+        return current;
+    }
+
+    public TlsHandshakeMetrics getHandshakeMetrics() {
+        return current.getHandshakeMetrics();
+    }
+
+    @Override
+    public SSLSocketFactory getSocketFactory() throws GeneralSecurityException {
+        return current.getSocketFactory();
+    }
+
+    @Override
+    public SSLContext getSSLContext() throws GeneralSecurityException {
+        return current.getSSLContext();
+    }
+
+    @Override
+    public SSLContext getSSLContext(String protocol) throws GeneralSecurityException {
+        return current.getSSLContext(protocol);
+    }
+
+    @Override
+    public String[] getEnabledCipherSuites() {
+        return current.getEnabledCipherSuites();
+    }
+
+    @Override
+    public String getEnabledProtocol() {
+        return current.getEnabledProtocol();
+    }
+
+    @Override
+    public String[] getEnabledProtocols() {
+        return current.getEnabledProtocols();
+    }
+
+    @Override
+    public ClientAuth getClientAuth() {
+        return current.getClientAuth();
+    }
+}
@@ -0,0 +1,28 @@
+package com.neo.ftpserver.ftp;
+
+import org.apache.ftpserver.ftplet.FileSystemFactory;
+import org.apache.ftpserver.ftplet.FileSystemView;
+import org.apache.ftpserver.ftplet.FtpException;
+import org.apache.ftpserver.ftplet.User;
+
+/**
+ * Bọc FileSystemFactory gốc để stream đọc/ghi file đi qua TransferThrottle của account đăng nhập
+ * và được đăng ký vào InFlightTransfers trong lúc truyền
+ */
+public class ThrottledFileSystemFactory implements FileSystemFactory {
+
+    private final FileSystemFactory delegate;
+    private final TransferThrottle throttle;
+    private final InFlightTransfers inFlight;
+
+    public ThrottledFileSystemFactory(FileSystemFactory delegate, TransferThrottle throttle, InFlightTransfers inFlight) {
+        this.delegate = delegate;
+        this.throttle = throttle;
+        this.inFlight = inFlight;
+    }
+
+    @Override
+    public FileSystemView createFileSystemView(User user) throws FtpException {
+        return new ThrottledFileSystemView(delegate.createFileSystemView(user), user.getName(), throttle, inFlight);
+    }
+}
@@ -0,0 +1,61 @@
+package com.neo.ftpserver.ftp;
+
+import org.apache.ftpserver.ftplet.FileSystemView;
+import org.apache.ftpserver.ftplet.FtpException;
+import org.apache.ftpserver.ftplet.FtpFile;
+
+/**
+ * FileSystemView trả về FtpFile đã bọc throttle, mọi thao tác khác chuyển thẳng cho view gốc
+ */
+final class ThrottledFileSystemView implements FileSystemView {
+
+    private final FileSystemView delegate;
+    private final String account;
+    private final TransferThrottle throttle;
+    private final TransferTracker transferTracker;
+
+    ThrottledFileSystemView(FileSystemView delegate, String account, TransferThrottle throttle, InFlightTransfers inFlight) {
+        this.delegate = delegate;
+        this.account = account;
+        this.throttle = throttle;
+        this.transferTracker = new TransferTracker(account, inFlight);
+    }
+
+    private FtpFile wrap(FtpFile file) {
+        return file == null ? null : new ThrottledFtpFile(file, account, throttle, transferTracker);
+    }
+
+    TransferTracker getTransferTracker() {
+        return transferTracker;
+    }
+
+    @Override
+    public FtpFile getHomeDirectory() throws FtpException {
+        return wrap(delegate.getHomeDirectory());
+    }
+
+    @Override
+    public FtpFile getWorkingDirectory() throws FtpException {
+        return wrap(delegate.getWorkingDirectory());
+    }
+
+    @Override
+    public boolean changeWorkingDirectory(String dir) throws FtpException {
+        return delegate.changeWorkingDirectory(dir);
+    }
+
+    @Override
+    public FtpFile getFile(String file) throws FtpException {
+        return wrap(delegate.getFile(file));
+    }
+
+    @Override
+    public boolean isRandomAccessible() throws FtpException {
+        return delegate.isRandomAccessible();
+    }
+
+    @Override
+    public void dispose() {
+        delegate.dispose();
+    }
+}
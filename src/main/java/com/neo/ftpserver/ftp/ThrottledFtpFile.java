@@ -0,0 +1,151 @@
+package com.neo.ftpserver.ftp;
+
+import org.apache.ftpserver.ftplet.FtpFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * FtpFile bọc stream đọc/ghi bằng TransferThrottle và đo số byte/thời gian truyền; metadata và thao tác file chuyển thẳng cho file gốc
+ */
+final class ThrottledFtpFile implements FtpFile {
+
+    private final FtpFile delegate;
+    private final String account;
+    private final TransferThrottle throttle;
+    private final TransferTracker tracker;
+
+    ThrottledFtpFile(FtpFile delegate, String account, TransferThrottle throttle, TransferTracker tracker) {
+        this.delegate = delegate;
+        this.account = account;
+        this.throttle = throttle;
+        this.tracker = tracker;
+    }
+
+    @Override
+    public String getAbsolutePath() {
+        return delegate.getAbsolutePath();
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public boolean isHidden() {
+        return delegate.isHidden();
+    }
+
+    @Override
+    public boolean isDirectory() {
+        return delegate.isDirectory();
+    }
+
+    @Override
+    public boolean isFile() {
+        return delegate.isFile();
+    }
+
+    @Override
+    public boolean doesExist() {
+        return delegate.doesExist();
+    }
+
+    @Override
+    public boolean isReadable() {
+        return delegate.isReadable();
+    }
+
+    @Override
+    public boolean isWritable() {
+        return delegate.isWritable();
+    }
+
+    @Override
+    public boolean isRemovable() {
+        return delegate.isRemovable();
+    }
+
+    @Override
+    public String getOwnerName() {
+        return delegate.getOwnerName();
+    }
+
+    @Override
+    public String getGroupName() {
+        return delegate.getGroupName();
+    }
+
+    @Override
+    public int getLinkCount() {
+        return delegate.getLinkCount();
+    }
+
+    @Override
+    public long getLastModified() {
+        return delegate.getLastModified();
+    }
+
+    @Override
+    public boolean setLastModified(long time) {
+        return delegate.setLastModified(time);
+    }
+
+    @Override
+    public long getSize() {
+        return delegate.getSize();
+    }
+
+    @Override
+    public Object getPhysicalFile() {
+        return delegate.getPhysicalFile();
+    }
+
+    @Override
+    public boolean mkdir() {
+        return delegate.mkdir();
+    }
+
+    @Override
+    public boolean delete() {
+        return delegate.delete();
+    }
+
+    @Override
+    public boolean move(FtpFile destination) {
+        // File gốc (NioFtpFile) cần đích cùng kiểu với nó
+        FtpFile target = destination instanceof ThrottledFtpFile throttled ? throttled.delegate : destination;
+        return delegate.move(target);
+    }
+
+    @Override
+    public List<? extends FtpFile> listFiles() {
+        // LIST chỉ đọc metadata, không cần bọc
+        return delegate.listFiles();
+    }
+
+    @Override
+    public OutputStream createOutputStream(long offset) throws IOException {
+        OutputStream out = throttle.throttleUpload(account, delegate.createOutputStream(offset));
+        return new MeteredOutputStream(out, tracker, delegate.getAbsolutePath());
+    }
+
+    @Override
+    public InputStream createInputStream(long offset) throws IOException {
+        InputStream in = throttle.throttleDownload(account, delegate.createInputStream(offset));
+        return new MeteredInputStream(in, tracker, delegate.getAbsolutePath());
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof ThrottledFtpFile other && delegate.equals(other.delegate);
+    }
+
+    @Override
+    public int hashCode() {
+        return delegate.hashCode();
+    }
+}
@@ -0,0 +1,53 @@
+package com.neo.ftpserver.ftp;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * InputStream trừ token sau mỗi lần đọc
+ */
+final class ThrottledInputStream extends FilterInputStream implements ChannelTransferSource {
+
+    private final TokenBucket[] buckets;
+    private final TransferThrottle throttle;
+
+    ThrottledInputStream(InputStream in, TokenBucket[] buckets, TransferThrottle throttle) {
+        super(in);
+        this.buckets = buckets;
+        this.throttle = throttle;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            throttle.acquire(buckets, 1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) {
+            throttle.acquire(buckets, n);
+        }
+        return n;
+    }
+
+    @Override
+    public boolean canTransfer() {
+        return in instanceof ChannelTransferSource source && source.canTransfer();
+    }
+
+    @Override
+    public long transferTo(WritableByteChannel target, long maxBytes) throws IOException {
+        long n = ((ChannelTransferSource) in).transferTo(target, maxBytes);
+        if (n > 0) {
+            throttle.acquire(buckets, n);
+        }
+        return n;
+    }
+}
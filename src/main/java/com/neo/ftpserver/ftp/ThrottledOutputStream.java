@@ -0,0 +1,48 @@
+package com.neo.ftpserver.ftp;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * OutputStream trừ token trước mỗi lần ghi
+ */
+final class ThrottledOutputStream extends FilterOutputStream implements ChannelTransferSink {
+
+    private final TokenBucket[] buckets;
+    private final TransferThrottle throttle;
+
+    ThrottledOutputStream(OutputStream out, TokenBucket[] buckets, TransferThrottle throttle) {
+        super(out);
+        this.buckets = buckets;
+        this.throttle = throttle;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        throttle.acquire(buckets, 1);
+        out.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        throttle.acquire(buckets, len);
+        out.write(b, off, len);
+    }
+
+    @Override
+    public boolean canTransfer() {
+        return out instanceof ChannelTransferSink sink && sink.canTransfer();
+    }
+
+    @Override
+    public long transferFrom(ReadableByteChannel source, long maxBytes) throws IOException {
+        // Không biết trước số byte sẽ nhận → trừ token sau mỗi chunk
+        long n = ((ChannelTransferSink) out).transferFrom(source, maxBytes);
+        if (n > 0) {
+            throttle.acquire(buckets, n);
+        }
+        return n;
+    }
+}
@@ -0,0 +1,87 @@
+package com.neo.ftpserver.ftp;
+
+import com.neo.ftpserver.constans.TlsChannel;
+import com.neo.ftpserver.metrics.TlsHandshakeMetrics;
+import org.apache.ftpserver.ftplet.FtpReply;
+import org.apache.mina.core.filterchain.IoFilterAdapter;
+import org.apache.mina.core.session.AttributeKey;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.core.write.WriteRequest;
+import org.apache.mina.filter.FilterEvent;
+import org.apache.mina.filter.ssl.SslEvent;
+import org.apache.mina.filter.ssl.SslFilter;
+
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSession;
+
+/**
+ * Đo handshake TLS của kết nối lệnh: bắt đầu từ khi tạo session (implicit FTPS) hoặc khi gửi reply 234
+ * của AUTH (explicit), kết thúc ở sự kiện SECURED của SslFilter. Session đóng/lỗi SSL trước khi SECURED
+ * được tính là handshake lỗi.
+ */
+class TlsHandshakeFilter extends IoFilterAdapter {
+
+    // long[]{nanoTime, currentTimeMillis} lúc bắt đầu handshake
+    private static final AttributeKey HANDSHAKE_START = new AttributeKey(TlsHandshakeFilter.class, "handshakeStart");
+    private static final int AUTH_OK = 234;
+
+    private final TlsHandshakeMetrics metrics;
+    private final boolean implicitSsl;
+
+    TlsHandshakeFilter(TlsHandshakeMetrics metrics, boolean implicitSsl) {
+        this.metrics = metrics;
+        this.implicitSsl = implicitSsl;
+    }
+
+    private static void markStart(IoSession session) {
+        session.setAttribute(HANDSHAKE_START, new long[]{System.nanoTime(), System.currentTimeMillis()});
+    }
+
+    @Override
+    public void sessionCreated(NextFilter nextFilter, IoSession session) throws Exception {
+        if (implicitSsl) {
+            markStart(session);
+        }
+        nextFilter.sessionCreated(session);
+    }
+
+    @Override
+    public void filterWrite(NextFilter nextFilter, IoSession session, WriteRequest writeRequest) throws Exception {
+        // SslFilter được AUTH thêm vào chain ngay sau reply 234
+        if (!implicitSsl && writeRequest.getMessage() instanceof FtpReply reply && reply.getCode() == AUTH_OK) {
+            markStart(session);
+        }
+        nextFilter.filterWrite(session, writeRequest);
+    }
+
+    @Override
+    public void event(NextFilter nextFilter, IoSession session, FilterEvent event) throws Exception {
+        if (event == SslEvent.SECURED && session.getAttribute(HANDSHAKE_START) instanceof long[] start) {
+            session.removeAttribute(HANDSHAKE_START);
+            SSLSession sslSession = (SSLSession) session.getAttribute(SslFilter.SSL_SESSION);
+            boolean resumed = sslSession != null && sslSession.getCreationTime() < start[1];
+            metrics.handshakeCompleted(TlsChannel.CONTROL, resumed, System.nanoTime() - start[0]);
+        }
+        nextFilter.event(session, event);
+    }
+
+    @Override
+    public void exceptionCaught(NextFilter nextFilter, IoSession session, Throwable cause) throws Exception {
+        if (cause instanceof SSLException || cause.getCause() instanceof SSLException) {
+            handshakeAborted(session);
+        }
+        nextFilter.exceptionCaught(session, cause);
+    }
+
+    @Override
+    public void sessionClosed(NextFilter nextFilter, IoSession session) throws Exception {
+        handshakeAborted(session);
+        nextFilter.sessionClosed(session);
+    }
+
+    private void handshakeAborted(IoSession session) {
+        if (session.removeAttribute(HANDSHAKE_START) != null) {
+            metrics.handshakeFailed(TlsChannel.CONTROL);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.neo.ftpserver.ftp;
+
+/**
+ * Token bucket theo byte/s, burst tối đa bằng lượng token của một giây.
+ * Cho phép "nợ" token: luồng gọi nhận về thời gian phải chờ rồi tự ngủ ngoài khóa.
+ */
+final class TokenBucket {
+
+    private volatile long rate;
+    private double available;
+    private long lastRefillNanos = System.nanoTime();
+
+    TokenBucket(long rate) {
+        this.rate = rate;
+        this.available = rate;
+    }
+
+    /**
+     * Cập nhật tốc độ khi cấu hình account/role thay đổi
+     */
+    void setRate(long rate) {
+        this.rate = rate;
+    }
+
+    long getRate() {
+        return rate;
+    }
+
+    boolean isUnlimited() {
+        return rate <= 0;
+    }
+
+    /**
+     * Lấy trước permits token
+     *
+     * @return Số nano giây cần chờ trước khi được dùng số token này, 0 nếu đủ ngay
+     */
+    synchronized long reserve(long permits) {
+        long currentRate = rate;
+        if (currentRate <= 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        available = Math.min(currentRate, available + (now - lastRefillNanos) * currentRate / 1_000_000_000d);
+        lastRefillNanos = now;
+        available -= permits;
+        if (available >= 0) {
+            return 0;
+        }
+        return (long) (-available * 1_000_000_000d / currentRate);
+    }
+}
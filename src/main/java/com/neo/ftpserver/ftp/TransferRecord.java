@@ -0,0 +1,34 @@
+package com.neo.ftpserver.ftp;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kết quả một lần truyền file đo trên stream dữ liệu (mở → đóng)
+ *
+ * @param path          Đường dẫn ảo của file
+ * @param upload        true = STOR/APPE/STOU, false = RETR
+ * @param bytes         Số byte thực tế đã truyền
+ * @param durationNanos Thời gian từ lúc mở tới lúc đóng stream
+ * @param aborted       true nếu lần truyền bị cắt khi dừng server và đã audit là ABORT_STOR/ABORT_RETR
+ */
+public record TransferRecord(String path, boolean upload, long bytes, long durationNanos, boolean aborted) {
+
+    public TransferRecord(String path, boolean upload, long bytes, long durationNanos) {
+        this(path, upload, bytes, durationNanos, false);
+    }
+
+    TransferRecord markAborted() {
+        return new TransferRecord(path, upload, bytes, durationNanos, true);
+    }
+
+    public long durationMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(durationNanos);
+    }
+
+    /**
+     * Tốc độ trung bình (byte/s)
+     */
+    public long bytesPerSecond() {
+        return durationNanos <= 0 ? bytes : (long) (bytes * 1_000_000_000.0 / durationNanos);
+    }
+}
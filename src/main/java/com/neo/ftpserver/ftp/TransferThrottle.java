@@ -0,0 +1,130 @@
+package com.neo.ftpserver.ftp;
+
+import com.neo.ftpserver.cache.AccountAuthorizationCache;
+import com.neo.ftpserver.permission.AccountAuthorization;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Định hình băng thông truyền file: token bucket theo account dùng chung cho mọi phiên của account đó
+ * (giới hạn lấy từ AccountAuthorization, account ưu tiên hơn role) cộng thêm bucket tổng toàn server.
+ * Giới hạn theo từng phiên vẫn do TransferRatePermission của FtpServer đảm nhiệm.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TransferThrottle {
+
+    // Tổng băng thông toàn server (byte/s), 0 = không giới hạn
+    @Value("${ftp.throttle.global-upload-rate:0}")
+    private long globalUploadRate;
+
+    @Value("${ftp.throttle.global-download-rate:0}")
+    private long globalDownloadRate;
+
+    private final AccountAuthorizationCache authorizationCache;
+
+    private final ConcurrentHashMap<String, AccountBuckets> accountBuckets = new ConcurrentHashMap<>();
+    private TokenBucket globalUpload;
+    private TokenBucket globalDownload;
+
+    private final LongAdder throttledNanos = new LongAdder();
+    private final LongAdder throttleEvents = new LongAdder();
+
+    private record AccountBuckets(TokenBucket upload, TokenBucket download) {
+    }
+
+    @PostConstruct
+    public void init() {
+        globalUpload = new TokenBucket(globalUploadRate);
+        globalDownload = new TokenBucket(globalDownloadRate);
+        log.info(">> Transfer throttle: globalUpload={} B/s, globalDownload={} B/s (0 = unlimited)", globalUploadRate, globalDownloadRate);
+    }
+
+    /**
+     * Bọc stream đọc file (RETR) nếu account hoặc server có giới hạn download
+     */
+    public InputStream throttleDownload(String account, InputStream in) {
+        TokenBucket[] buckets = bucketsFor(account, false);
+        return buckets.length == 0 ? in : new ThrottledInputStream(in, buckets, this);
+    }
+
+    /**
+     * Bọc stream ghi file (STOR/APPE) nếu account hoặc server có giới hạn upload
+     */
+    public OutputStream throttleUpload(String account, OutputStream out) {
+        TokenBucket[] buckets = bucketsFor(account, true);
+        return buckets.length == 0 ? out : new ThrottledOutputStream(out, buckets, this);
+    }
+
+    private TokenBucket[] bucketsFor(String account, boolean upload) {
+        List<TokenBucket> buckets = new ArrayList<>(2);
+        AccountAuthorization authorization = account != null ? authorizationCache.get(account) : null;
+        if (authorization == null) {
+            if (account != null) {
+                accountBuckets.remove(account);
+            }
+        } else {
+            long rate = upload ? authorization.getMaxUploadRate() : authorization.getMaxDownloadRate();
+            if (rate > 0) {
+                AccountBuckets pair = accountBuckets.computeIfAbsent(account, key -> new AccountBuckets(
+                        new TokenBucket(authorization.getMaxUploadRate()), new TokenBucket(authorization.getMaxDownloadRate())));
+                TokenBucket bucket = upload ? pair.upload() : pair.download();
+                // Giới hạn có thể đã đổi sau lần làm mới cache gần nhất
+                if (bucket.getRate() != rate) {
+                    bucket.setRate(rate);
+                }
+                buckets.add(bucket);
+            }
+        }
+        TokenBucket global = upload ? globalUpload : globalDownload;
+        if (!global.isUnlimited()) {
+            buckets.add(global);
+        }
+        return buckets.toArray(new TokenBucket[0]);
+    }
+
+    /**
+     * Trừ token ở mọi bucket rồi chờ theo bucket chậm nhất
+     */
+    void acquire(TokenBucket[] buckets, long bytes) throws InterruptedIOException {
+        long waitNanos = 0;
+        for (TokenBucket bucket : buckets) {
+            waitNanos = Math.max(waitNanos, bucket.reserve(bytes));
+        }
+        if (waitNanos <= 0) {
+            return;
+        }
+        throttleEvents.increment();
+        throttledNanos.add(waitNanos);
+        long deadline = System.nanoTime() + waitNanos;
+        long remaining = waitNanos;
+        while (remaining > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.interrupted()) {
+                throw new InterruptedIOException("Transfer interrupted while throttled");
+            }
+            remaining = deadline - System.nanoTime();
+        }
+    }
+
+    public long getThrottleEvents() {
+        return throttleEvents.sum();
+    }
+
+    public long getThrottledMillis() {
+        return throttledNanos.sum() / 1_000_000;
+    }
+}
@@ -0,0 +1,68 @@
+package com.neo.ftpserver.ftp;
+
+import org.apache.ftpserver.ftplet.FileSystemView;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Ghi nhận lần truyền file gần nhất của một phiên FTP (mỗi FileSystemView một tracker)
+ * và báo InFlightTransfers khi stream dữ liệu mở/đóng.
+ * Stream dữ liệu báo kết quả khi đóng, tức là trước khi lệnh trả reply và afterCommand chạy.
+ */
+public final class TransferTracker {
+
+    private final String account;
+    private final InFlightTransfers inFlight;
+    private volatile TransferRecord last;
+    // Thông tin phiên (FileSystemView chỉ biết User), gắn từ ftplet trước mỗi lệnh truyền file
+    private volatile String clientIp;
+    private volatile boolean secure;
+
+    TransferTracker(String account, InFlightTransfers inFlight) {
+        this.account = account;
+        this.inFlight = inFlight;
+    }
+
+    /**
+     * Stream dữ liệu vừa mở: đăng ký vào danh sách truyền đang chạy của server
+     */
+    InFlightTransfers.Transfer opened(String path, boolean upload, LongSupplier bytes) {
+        return inFlight != null ? inFlight.begin(account, clientIp, secure, path, upload, bytes) : null;
+    }
+
+    void record(TransferRecord record, InFlightTransfers.Transfer transfer) {
+        if (transfer != null) {
+            inFlight.end(transfer);
+            if (transfer.isAborted()) {
+                // Đã audit là ABORT_* lúc dừng server: vẫn báo cho afterCommand để nó không ghi thêm STOR/RETR
+                last = record.markAborted();
+                return;
+            }
+        }
+        last = record;
+    }
+
+    TransferRecord takeLast() {
+        TransferRecord record = last;
+        last = null;
+        return record;
+    }
+
+    /**
+     * Gắn IP client và trạng thái TLS của phiên để lần truyền bị hủy khi dừng server vẫn audit đủ thông tin
+     */
+    public static void bindSession(FileSystemView view, String clientIp, boolean secure) {
+        if (view instanceof ThrottledFileSystemView throttled) {
+            TransferTracker tracker = throttled.getTransferTracker();
+            tracker.clientIp = clientIp;
+            tracker.secure = secure;
+        }
+    }
+
+    /**
+     * Lấy và xóa kết quả truyền gần nhất của phiên, null nếu lệnh vừa rồi không mở stream dữ liệu
+     */
+    public static TransferRecord takeLast(FileSystemView view) {
+        return view instanceof ThrottledFileSystemView throttled ? throttled.getTransferTracker().takeLast() : null;
+    }
+}
@@ -0,0 +1,304 @@
+package com.neo.ftpserver.ftp;
+
+import com.neo.ftpserver.constans.ListenerExecutorType;
+import com.neo.ftpserver.metrics.TlsHandshakeMetrics;
+import com.neo.ftpserver.util.ThreadUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ftpserver.FtpServerConfigurationException;
+import org.apache.ftpserver.impl.DefaultFtpHandler;
+import org.apache.ftpserver.impl.FtpHandler;
+import org.apache.ftpserver.impl.FtpIoSession;
+import org.apache.ftpserver.impl.FtpServerContext;
+import org.apache.ftpserver.ipfilter.MinaSessionFilter;
+import org.apache.ftpserver.ipfilter.SessionFilter;
+import org.apache.ftpserver.listener.ListenerFactory;
+import org.apache.ftpserver.listener.nio.AbstractListener;
+import org.apache.ftpserver.listener.nio.FtpHandlerAdapter;
+import org.apache.ftpserver.listener.nio.FtpLoggingFilter;
+import org.apache.ftpserver.listener.nio.FtpServerProtocolCodecFactory;
+import org.apache.ftpserver.ssl.ClientAuth;
+import org.apache.ftpserver.ssl.SslConfiguration;
+import org.apache.mina.core.session.IdleStatus;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.filter.codec.ProtocolCodecFilter;
+import org.apache.mina.filter.executor.ExecutorFilter;
+import org.apache.mina.filter.executor.OrderedThreadPoolExecutor;
+import org.apache.mina.filter.logging.MdcInjectionFilter;
+import org.apache.mina.filter.ssl.SslFilter;
+import org.apache.mina.transport.socket.SocketSessionConfig;
+import org.apache.mina.transport.socket.nio.NioSocketAcceptor;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listener NIO tương đương NioListener của FtpServer (cùng filter chain, cùng handler) nhưng số I/O processor,
+ * executor lệnh và tham số socket lấy từ ListenerTuning thay vì hard-code
+ */
+@Slf4j
+public class TunedNioListener extends AbstractListener {
+
+    private final String name;
+    private final ListenerTuning tuning;
+    // Cổng trong cấu hình (getPort() bị ghi đè bằng cổng thực tế khi cấu hình 0)
+    private final int configuredPort;
+
+    private volatile NioSocketAcceptor acceptor;
+    private InetSocketAddress address;
+    private ExecutorService ownExecutor;
+    private volatile boolean suspended;
+    private final FtpHandler handler = new DefaultFtpHandler();
+    private FtpServerContext context;
+
+    /**
+     * Lấy địa chỉ, cổng, SSL, data connection, idle timeout và session filter từ ListenerFactory đã cấu hình
+     */
+    public TunedNioListener(String name, ListenerFactory factory, ListenerTuning tuning) {
+        super(factory.getServerAddress(), factory.getPort(), factory.isImplicitSsl(), factory.getSslConfiguration(),
+                factory.getDataConnectionConfiguration(), factory.getIdleTimeout(), factory.getSessionFilter());
+        this.name = name;
+        this.tuning = tuning;
+        this.configuredPort = factory.getPort();
+    }
+
+    @Override
+    public synchronized void start(FtpServerContext serverContext) {
+        if (!isStopped()) {
+            throw new IllegalStateException("Listener already started");
+        }
+        try {
+            context = serverContext;
+            int processors = tuning.processorCount() > 0 ? tuning.processorCount() : Runtime.getRuntime().availableProcessors();
+            acceptor = new NioSocketAcceptor(processors);
+            address = getServerAddress() != null
+                    ? new InetSocketAddress(getServerAddress(), getPort())
+                    : new InetSocketAddress(getPort());
+            acceptor.setReuseAddress(true);
+            if (tuning.backlog() > 0) {
+                acceptor.setBacklog(tuning.backlog());
+            }
+            configureSession(acceptor.getSessionConfig());
+
+            MdcInjectionFilter mdcFilter = new MdcInjectionFilter();
+            acceptor.getFilterChain().addLast("mdcFilter", mdcFilter);
+            SessionFilter sessionFilter = getSessionFilter();
+            if (sessionFilter != null) {
+                acceptor.getFilterChain().addLast("sessionFilter", new MinaSessionFilter(sessionFilter));
+            }
+            // Data connection không TLS chạy trên SocketChannel để RETR/STOR dùng transferTo/transferFrom
+            acceptor.getFilterChain().addLast("dataConnection", new ChannelDataConnectionFilter(serverContext));
+            acceptor.getFilterChain().addLast("threadPool", new ExecutorFilter(createExecutor(serverContext)));
+            acceptor.getFilterChain().addLast("codec", new ProtocolCodecFilter(new FtpServerProtocolCodecFactory()));
+            acceptor.getFilterChain().addLast("mdcFilter2", mdcFilter);
+            acceptor.getFilterChain().addLast("logger", new FtpLoggingFilter());
+            TlsHandshakeMetrics handshakeMetrics = handshakeMetrics(getSslConfiguration());
+            if (handshakeMetrics != null) {
+                acceptor.getFilterChain().addLast("tlsMetrics", new TlsHandshakeFilter(handshakeMetrics, isImplicitSsl()));
+            }
+            if (isImplicitSsl()) {
+                acceptor.getFilterChain().addFirst("sslFilter", createSslFilter());
+            }
+
+            handler.init(serverContext, this);
+            acceptor.setHandler(new FtpHandlerAdapter(serverContext, handler));
+            acceptor.bind(address);
+            // Cổng 0 = hệ điều hành tự chọn, cập nhật lại cổng thực tế
+            setPort(acceptor.getLocalAddress().getPort());
+            log.info(">> Listener {} started on port {}: processors={}, executor={}, backlog={}, tcpNoDelay={}",
+                    name, getPort(), processors, tuning.executorType(), acceptor.getBacklog(), tuning.tcpNoDelay());
+        } catch (RuntimeException | IOException e) {
+            // Giải phóng acceptor/executor đã tạo để listener có thể start lại
+            stop();
+            throw new FtpServerConfigurationException("Failed to bind to address " + address + ", check configuration", e);
+        }
+    }
+
+    private void configureSession(SocketSessionConfig config) {
+        // Giá trị mặc định giống NioListener gốc (read buffer 2048, SO_RCVBUF 512)
+        config.setReadBufferSize(tuning.readBufferSize() > 0 ? tuning.readBufferSize() : 2048);
+        config.setReceiveBufferSize(tuning.receiveBufferSize() > 0 ? tuning.receiveBufferSize() : 512);
+        if (tuning.sendBufferSize() > 0) {
+            config.setSendBufferSize(tuning.sendBufferSize());
+        }
+        config.setTcpNoDelay(tuning.tcpNoDelay());
+        config.setIdleTime(IdleStatus.BOTH_IDLE, getIdleTimeout());
+    }
+
+    private Executor createExecutor(FtpServerContext serverContext) {
+        ListenerExecutorType type = tuning.executorType() == null ? ListenerExecutorType.SHARED : tuning.executorType();
+        if (type == ListenerExecutorType.SHARED) {
+            return serverContext.getThreadPoolExecutor();
+        }
+        int threads = tuning.executorThreads() > 0 ? tuning.executorThreads() : Math.max(16, serverContext.getConnectionConfig().getMaxLogins());
+        boolean virtual = type == ListenerExecutorType.VIRTUAL;
+        if (virtual && !ThreadUtils.isVirtualThreadSupported()) {
+            log.warn(">> Listener {}: virtual threads need JDK 21+, falling back to platform threads", name);
+        }
+        // OrderedThreadPoolExecutor giữ thứ tự sự kiện trong một session, worker nhàn rỗi tự thu hồi sau 60s
+        ownExecutor = new OrderedThreadPoolExecutor(0, threads, 60, TimeUnit.SECONDS,
+                ThreadUtils.newThreadFactory("ftp-" + name + "-cmd-", virtual));
+        return ownExecutor;
+    }
+
+    private static TlsHandshakeMetrics handshakeMetrics(SslConfiguration ssl) {
+        if (ssl instanceof ReloadableSslConfiguration reloadable) {
+            return reloadable.getHandshakeMetrics();
+        }
+        return ssl instanceof TunedSslConfiguration tuned ? tuned.getHandshakeMetrics() : null;
+    }
+
+    private SslFilter createSslFilter() {
+        SslConfiguration ssl = getSslConfiguration();
+        try {
+            SslFilter sslFilter = new SslFilter(ssl.getSSLContext());
+            if (ssl.getClientAuth() == ClientAuth.NEED) {
+                sslFilter.setNeedClientAuth(true);
+            } else if (ssl.getClientAuth() == ClientAuth.WANT) {
+                sslFilter.setWantClientAuth(true);
+            }
+            if (ssl.getEnabledProtocols() != null) {
+                sslFilter.setEnabledProtocols(ssl.getEnabledProtocols());
+            }
+            if (ssl.getEnabledCipherSuites() != null) {
+                sslFilter.setEnabledCipherSuites(ssl.getEnabledCipherSuites());
+            }
+            return sslFilter;
+        } catch (Exception e) {
+            throw new FtpServerConfigurationException("SSL could not be initialized, check configuration", e);
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (acceptor != null) {
+            acceptor.unbind();
+            acceptor.dispose();
+            acceptor = null;
+        }
+        if (ownExecutor != null) {
+            ownExecutor.shutdown();
+            ownExecutor = null;
+        }
+        context = null;
+    }
+
+    @Override
+    public boolean isStopped() {
+        return acceptor == null;
+    }
+
+    @Override
+    public boolean isSuspended() {
+        return suspended;
+    }
+
+    @Override
+    public synchronized void resume() {
+        if (acceptor != null && suspended) {
+            try {
+                acceptor.bind(address);
+                suspended = false;
+                log.debug(">> Listener {} resumed", name);
+            } catch (IOException e) {
+                log.error(">> Failed to resume listener {}", name, e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void suspend() {
+        if (acceptor != null && !suspended) {
+            acceptor.unbind();
+            suspended = true;
+            log.debug(">> Listener {} suspended", name);
+        }
+    }
+
+    @Override
+    public synchronized Set<FtpIoSession> getActiveSessions() {
+        Set<FtpIoSession> sessions = new HashSet<>();
+        if (acceptor == null) {
+            return sessions;
+        }
+        for (IoSession session : acceptor.getManagedSessions().values()) {
+            sessions.add(new FtpIoSession(session, context));
+        }
+        return sessions;
+    }
+
+    /**
+     * Implicit FTPS: thay SslFilter trong filter chain builder của acceptor bằng filter dựng từ SSLContext hiện hành.
+     * Chain của session được copy từ builder lúc tạo nên chỉ kết nối mới dùng filter mới.
+     */
+    public synchronized void refreshSslFilter() {
+        if (acceptor != null && isImplicitSsl() && acceptor.getFilterChain().contains("sslFilter")) {
+            acceptor.getFilterChain().replace("sslFilter", createSslFilter());
+            log.info(">> Listener {}: SSL filter refreshed for new connections", name);
+        }
+    }
+
+    /**
+     * true nếu listener kia bind cùng địa chỉ/cổng với cùng tham số, khi reload không cần dựng lại
+     */
+    public boolean hasSameBinding(TunedNioListener other) {
+        return configuredPort == other.configuredPort
+                && Objects.equals(getServerAddress(), other.getServerAddress())
+                && isImplicitSsl() == other.isImplicitSsl()
+                && (getSslConfiguration() == null) == (other.getSslConfiguration() == null)
+                && getIdleTimeout() == other.getIdleTimeout()
+                && Objects.equals(tuning, other.tuning);
+    }
+
+    /**
+     * Ngừng nhận kết nối mới nhưng giữ các session đang mở (dùng khi rebind listener lúc reload)
+     */
+    public synchronized void unbindKeepingSessions() {
+        if (acceptor != null && !suspended) {
+            acceptor.setCloseOnDeactivation(false);
+            acceptor.unbind();
+            suspended = true;
+            log.info(">> Listener {} unbound from port {}, {} sessions kept", name, getPort(), getActiveSessionCount());
+        }
+    }
+
+    /**
+     * Chờ các session còn lại tự đóng tới hết thời hạn rồi dừng hẳn listener, trả về số session bị cắt
+     */
+    public int drainAndStop(long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (getActiveSessionCount() > 0 && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(500);
+        }
+        int remaining = getActiveSessionCount();
+        NioSocketAcceptor current = acceptor;
+        if (current != null) {
+            for (IoSession session : current.getManagedSessions().values()) {
+                session.closeNow();
+            }
+        }
+        stop();
+        return remaining;
+    }
+
+    /**
+     * Số control connection đang mở trên listener (không dựng FtpIoSession như getActiveSessions)
+     */
+    public int getActiveSessionCount() {
+        NioSocketAcceptor current = acceptor;
+        return current == null ? 0 : current.getManagedSessionCount();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public ListenerTuning getTuning() {
+        return tuning;
+    }
+}
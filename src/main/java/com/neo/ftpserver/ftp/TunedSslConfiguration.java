@@ -0,0 +1,137 @@
+package com.neo.ftpserver.ftp;
+
+import com.neo.ftpserver.metrics.TlsHandshakeMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ftpserver.ssl.ClientAuth;
+import org.apache.ftpserver.ssl.SslConfiguration;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocketFactory;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Bọc SslConfiguration của FtpServer: cấu hình session cache phía server (kênh control và data dùng chung
+ * một SSLContext nên kênh data resume được session của kênh control), lọc cipher suite theo danh sách ưu tiên
+ * và đo handshake của kênh data.
+ * <p>
+ * SSLContext được tạo ngay khi khởi tạo để keystore sai báo lỗi lúc start thay vì ở lệnh AUTH đầu tiên.
+ */
+@Slf4j
+public class TunedSslConfiguration implements SslConfiguration {
+
+    // AEAD + ECDHE, ưu tiên AES-GCM (có AES-NI) rồi ChaCha20 cho client không có tăng tốc phần cứng
+    public static final List<String> DEFAULT_CIPHER_SUITES = List.of(
+            "TLS_AES_128_GCM_SHA256",
+            "TLS_AES_256_GCM_SHA384",
+            "TLS_CHACHA20_POLY1305_SHA256",
+            "TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256",
+            "TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256",
+            "TLS_ECDHE_ECDSA_WITH_AES_256_GCM_SHA384",
+            "TLS_ECDHE_RSA_WITH_AES_256_GCM_SHA384",
+            "TLS_ECDHE_ECDSA_WITH_CHACHA20_POLY1305_SHA256",
+            "TLS_ECDHE_RSA_WITH_CHACHA20_POLY1305_SHA256");
+
+    private final SslConfiguration delegate;
+    private final String[] enabledCipherSuites;
+    private final int sessionCacheSize;
+    private final int sessionTimeoutSeconds;
+    private final TlsHandshakeMetrics metrics;
+    private final SSLSocketFactory socketFactory;
+
+    public TunedSslConfiguration(SslConfiguration delegate, List<String> cipherSuites, int sessionCacheSize,
+                                 int sessionTimeoutSeconds, TlsHandshakeMetrics metrics) throws GeneralSecurityException {
+        this.delegate = delegate;
+        this.sessionCacheSize = sessionCacheSize;
+        this.sessionTimeoutSeconds = sessionTimeoutSeconds;
+        this.metrics = metrics;
+        SSLContext context = getSSLContext();
+        this.enabledCipherSuites = selectCipherSuites(context, cipherSuites);
+        this.socketFactory = new HandshakeTimingSocketFactory(context.getSocketFactory(), metrics);
+        log.info(">> TLS configured: protocols={}, cipherSuites={}, sessionCacheSize={}, sessionTimeout={}s",
+                Arrays.toString(getEnabledProtocols()),
+                enabledCipherSuites != null ? Arrays.toString(enabledCipherSuites) : "JDK default",
+                sessionCacheSize, sessionTimeoutSeconds);
+    }
+
+    /**
+     * Giữ thứ tự ưu tiên đã cấu hình, bỏ suite JDK không hỗ trợ (SSLEngine sẽ ném lỗi lúc handshake nếu giữ lại)
+     */
+    private static String[] selectCipherSuites(SSLContext context, List<String> requested) {
+        if (requested == null || requested.isEmpty()) {
+            return null;
+        }
+        Set<String> supported = Set.of(context.getSupportedSSLParameters().getCipherSuites());
+        Set<String> selected = new LinkedHashSet<>();
+        for (String suite : requested) {
+            String trimmed = suite.trim();
+            if (supported.contains(trimmed)) {
+                selected.add(trimmed);
+            } else if (!trimmed.isEmpty()) {
+                log.warn(">> Cipher suite {} is not supported by this JDK, skipped", trimmed);
+            }
+        }
+        if (selected.isEmpty()) {
+            log.warn(">> None of the configured cipher suites is supported, using JDK defaults");
+            return null;
+        }
+        return selected.toArray(new String[0]);
+    }
+
+    private SSLContext tune(SSLContext context) {
+        SSLSessionContext sessions = context.getServerSessionContext();
+        if (sessions != null) {
+            // Setter chỉ gán giá trị, gọi lại cho context đã cấu hình không tốn gì
+            if (sessionCacheSize >= 0) {
+                sessions.setSessionCacheSize(sessionCacheSize);
+            }
+            if (sessionTimeoutSeconds >= 0) {
+                sessions.setSessionTimeout(sessionTimeoutSeconds);
+            }
+        }
+        return context;
+    }
+
+    @Override
+    public SSLSocketFactory getSocketFactory() {
+        return socketFactory;
+    }
+
+    @Override
+    public SSLContext getSSLContext() throws GeneralSecurityException {
+        return tune(delegate.getSSLContext());
+    }
+
+    @Override
+    public SSLContext getSSLContext(String protocol) throws GeneralSecurityException {
+        return tune(delegate.getSSLContext(protocol));
+    }
+
+    @Override
+    public String[] getEnabledCipherSuites() {
+        return enabledCipherSuites != null ? enabledCipherSuites.clone() : null;
+    }
+
+    @Override
+    public String getEnabledProtocol() {
+        return delegate.getEnabledProtocol();
+    }
+
+    @Override
+    public String[] getEnabledProtocols() {
+        return delegate.getEnabledProtocols();
+    }
+
+    @Override
+    public ClientAuth getClientAuth() {
+        return delegate.getClientAuth();
+    }
+
+    public TlsHandshakeMetrics getHandshakeMetrics() {
+        return metrics;
+    }
+}
@@ -0,0 +1,12 @@
+package com.neo.ftpserver.intf;
+
+import java.util.Collection;
+
+public interface CacheRefreshListener {
+    /**
+     * Được gọi sau khi cache thay đổi
+     *
+     * @param changedKeys Các khóa vừa thay đổi, null nếu toàn bộ cache đã được nạp lại
+     */
+    void onRefresh(Collection<String> changedKeys);
+}
@@ -1,11 +1,13 @@
 package com.neo.ftpserver.logger;
 
+import com.neo.ftpserver.constans.BulkWriterType;
+import com.neo.ftpserver.constans.LogReaderMode;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
@@ -15,22 +17,32 @@ import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.TransactionCallback;
 import org.springframework.transaction.support.TransactionTemplate;
 
-import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.sql.PreparedStatement;
-import java.sql.SQLException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
 import java.time.Duration;
 import java.time.Instant;
+import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Stream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 @Component
 public abstract class AbstractJobProcessLog {
@@ -38,6 +50,9 @@ public abstract class AbstractJobProcessLog {
     private final Logger logger = LoggerFactory.getLogger(AbstractJobProcessLog.class);
     private static final Logger logOfDay = LoggerFactory.getLogger("logs-of-day");
 
+    // Hậu tố đánh dấu file đã được một worker/node nhận xử lý
+    private static final String CLAIM_SUFFIX = ".claimed-";
+
     @Value("${logging.job.path.wait}")
     private String pathWait;
 
@@ -47,25 +62,84 @@ public abstract class AbstractJobProcessLog {
     @Value("${logging.job.path.failed}")
     private String pathFailed;
 
+    @Value("${logging.job.path.checkpoint:logs/work/checkpoint}")
+    private String pathCheckpoint;
+
+    @Value("${logging.job.path.archive:logs/archive}")
+    private String pathArchive;
+
     @Value("${logging.job.path.file-pattern}")
     private String filePattern;
 
+    // Batch size khởi đầu, được điều chỉnh theo độ trễ commit nếu bật adaptive
     @Value("${logging.job.batch-size}")
     private int batchSize;
 
+    @Value("${logging.job.adaptive.enabled:true}")
+    private boolean adaptiveEnabled;
+
+    @Value("${logging.job.adaptive.min-batch-size:500}")
+    private int minBatchSize;
+
+    @Value("${logging.job.adaptive.max-batch-size:20000}")
+    private int maxBatchSize;
+
+    // Độ trễ commit mục tiêu cho một batch
+    @Value("${logging.job.adaptive.target-commit-ms:2000}")
+    private long targetCommitMs;
+
+    // JDBC | ORACLE | POSTGRES_COPY
+    @Value("${logging.job.bulk-writer:JDBC}")
+    private BulkWriterType bulkWriterType;
+
+    @Value("${logging.job.oracle.append-values:false}")
+    private boolean oracleAppendValues;
+
+    // Số id lấy trước từ sequence trong một round-trip
+    @Value("${logging.job.oracle.id-block-size:1000}")
+    private int oracleIdBlockSize;
+
+    // Commit batch trước trên luồng riêng trong khi worker parse batch tiếp theo
+    @Value("${logging.job.pipelined:true}")
+    private boolean pipelined;
+
     @Value("${logging.job.max-retry}")
     private int maxRetry;
 
-    protected int count = 0;
+    // STREAM: đọc từng dòng; MMAP: memory-map file và archive nguyên file bằng transferTo
+    @Value("${logging.job.reader:STREAM}")
+    private LogReaderMode readerMode;
+
+    // Số worker đọc file song song
+    @Value("${logging.job.workers:1}")
+    private int workers;
+
+    // File đã claim quá thời gian này mà không có tiến triển thì coi như node xử lý đã chết
+    @Value("${logging.job.claim-timeout-ms:1800000}")
+    private long claimTimeoutMs;
+
+    // Định danh node đưa vào event_key; để trống thì dùng hostname (ổn định qua các lần restart)
+    @Value("${logging.job.node-key:}")
+    private String nodeKey;
 
     // Lưu trữ tên file và số lần retry
-    private final Map<String, Integer> storeFileFail = new HashMap<>();
+    private final Map<String, Integer> storeFileFail = new ConcurrentHashMap<>();
 
     private final JdbcTemplate jdbcTemplate;
     private final TransactionTemplate transactionTemplate;
+    private final String nodeId;
+    private ExecutorService workerPool;
+    private ExecutorService commitPool;
+    private AdaptiveBatchSizer batchSizer;
+    private BulkWriter bulkWriter;
+    private CheckpointStore checkpointStore;
 
-    // Lưu trữ tạm thời các params cho batch (mỗi Object[] là một row)
-    private final List<Object[]> batchParams = new ArrayList<>();
+    // Thống kê throughput
+    private final LongAdder totalRows = new LongAdder();
+    private final LongAdder totalFiles = new LongAdder();
+    private volatile int backlogSize;
+    private volatile double lastRowsPerSecond;
+    private volatile double lastFilesPerSecond;
 
     @Autowired
     public AbstractJobProcessLog(JdbcTemplate jdbcTemplate,
@@ -73,6 +147,55 @@ public abstract class AbstractJobProcessLog {
         this.jdbcTemplate = jdbcTemplate;
         this.transactionTemplate = new TransactionTemplate(transactionManager);
         this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRED);
+        // pid@hostname, đủ để phân biệt các node cùng đọc một thư mục dùng chung
+        this.nodeId = ManagementFactory.getRuntimeMXBean().getName().replaceAll("[^A-Za-z0-9@._-]", "_");
+    }
+
+    @PostConstruct
+    public void initWorkers() {
+        if (nodeKey == null || nodeKey.isBlank()) {
+            // Bỏ pid: restart giữa chừng vẫn phải sinh lại đúng khóa của các dòng đã ghi
+            nodeKey = nodeId.substring(nodeId.indexOf('@') + 1);
+        }
+        checkpointStore = new CheckpointStore(pathCheckpoint);
+        bulkWriter = createBulkWriter();
+        batchSizer = new AdaptiveBatchSizer(adaptiveEnabled, batchSize, minBatchSize, maxBatchSize, targetCommitMs);
+        workerPool = newPool("log-ingest-");
+        // Mỗi worker có tối đa một commit đang chạy nên pool commit cùng kích thước là đủ
+        commitPool = pipelined ? newPool("log-commit-") : null;
+    }
+
+    private BulkWriter createBulkWriter() {
+        BulkTable table = getBulkTable();
+        if (bulkWriterType != BulkWriterType.JDBC && table == null) {
+            this.logger.warn("Bulk writer {} needs a bulk table definition, falling back to JDBC", bulkWriterType);
+            bulkWriterType = BulkWriterType.JDBC;
+        }
+        this.logger.info("Audit loader bulk writer: {}", bulkWriterType);
+        return switch (bulkWriterType) {
+            case ORACLE -> new OracleBulkWriter(table, oracleAppendValues, oracleIdBlockSize);
+            case POSTGRES_COPY -> new PostgresCopyWriter(table);
+            default -> new JdbcBatchWriter(getSql(), table == null ? null : table.types());
+        };
+    }
+
+    private ExecutorService newPool(String prefix) {
+        AtomicInteger index = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(1, workers), r -> {
+            Thread thread = new Thread(r, prefix + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdownWorkers() {
+        if (workerPool != null) {
+            workerPool.shutdown();
+        }
+        if (commitPool != null) {
+            commitPool.shutdown();
+        }
     }
 
     /**
@@ -80,84 +203,293 @@ public abstract class AbstractJobProcessLog {
      */
     @Scheduled(fixedDelayString = "${logging.job.path.time-read}")
     public void execute() {
-        this.readFileLog(pathWait, false); // Đọc file mới
-        this.readFileLog(pathRetry, true); // Đọc file cần retry
+        Instant start = Instant.now();
+        long rowsBefore = totalRows.sum();
+        long filesBefore = totalFiles.sum();
+        releaseStaleClaims(pathWait);
+        releaseStaleClaims(pathRetry);
+        List<Future<?>> tasks = new ArrayList<>();
+        tasks.addAll(this.readFileLog(pathWait, false)); // Đọc file mới
+        tasks.addAll(this.readFileLog(pathRetry, true)); // Đọc file cần retry
+        backlogSize = tasks.size();
+        for (Future<?> task : tasks) {
+            try {
+                task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                this.logger.error("Ingest task Exception: {}", e.getMessage());
+            }
+        }
+        if (!tasks.isEmpty()) {
+            double seconds = Math.max(1, Duration.between(start, Instant.now()).toMillis()) / 1000d;
+            long rows = totalRows.sum() - rowsBefore;
+            long files = totalFiles.sum() - filesBefore;
+            lastRowsPerSecond = rows / seconds;
+            lastFilesPerSecond = files / seconds;
+            this.logger.info("Ingest cycle: backlog {} files, processed {} files / {} rows in {}s ({} rows/s, {} files/s)",
+                    tasks.size(), files, rows, seconds, Math.round(lastRowsPerSecond), String.format("%.2f", lastFilesPerSecond));
+        }
     }
 
     /**
-     * Đọc tất cả file log trong thư mục
+     * Liệt kê file log trong thư mục và giao cho worker pool
      *
      * @param path     Đường dẫn đến thư mục chứa file log
      * @param isReload Xác định đây là lần đọc đầu tiên hay là lần retry
+     * @return Danh sách task đã submit
      */
-    public void readFileLog(String path, boolean isReload) {
+    public List<Future<?>> readFileLog(String path, boolean isReload) {
+        List<Future<?>> tasks = new ArrayList<>();
         try {
             Files.createDirectories(Paths.get(path)); // Tạo thư mục nếu chưa tồn tại
-            // Không cần initConnect() nữa, JdbcTemplate handle connection tự động
             try (DirectoryStream<Path> stream = Files.newDirectoryStream(Paths.get(path), filePattern)) {
                 for (Path filePath : stream) {
-                    readFileJava8(filePath, isReload); // Xử lý từng file
+                    tasks.add(workerPool.submit(() -> claimAndRead(filePath, isReload)));
                 }
             }
-            // Không cần disconnect() nữa
         } catch (Exception e) {
             this.logger.error("readFileLog Exception: {}", e.getMessage());
         }
+        return tasks;
     }
 
     /**
-     * Đọc nội dung của một file log
-     *
-     * @param filePath Đường dẫn đến file log
-     * @param isReload Xác định đây là lần đọc đầu tiên hay là lần retry
+     * Nhận file bằng rename nguyên tử; worker hoặc node khác đã nhận trước thì bỏ qua
      */
-    public void readFileJava8(Path filePath, boolean isReload) {
-        Instant start = Instant.now();
-        try (Stream<String> lines = Files.lines(filePath, StandardCharsets.UTF_8)) {
-            lines.forEach(line -> {
-                if (!isReload) {
-                    logOfDay.info(line); // Ghi log ra file
+    private void claimAndRead(Path filePath, boolean isReload) {
+        Path claimed = filePath.resolveSibling(filePath.getFileName() + CLAIM_SUFFIX + nodeId);
+        try {
+            Files.move(filePath, claimed, StandardCopyOption.ATOMIC_MOVE);
+            Files.setLastModifiedTime(claimed, FileTime.from(Instant.now()));
+        } catch (NoSuchFileException e) {
+            this.logger.debug("File already claimed by another worker: {}", filePath);
+            return;
+        } catch (AtomicMoveNotSupportedException e) {
+            this.logger.error("Filesystem does not support atomic rename, cannot claim {}", filePath);
+            return;
+        } catch (IOException e) {
+            this.logger.error("Claim file {} Exception: {}", filePath, e.getMessage());
+            return;
+        }
+        readFile(claimed, filePath.getFileName().toString(), isReload);
+        totalFiles.increment();
+    }
+
+    /**
+     * Trả lại các file bị claim quá lâu (node xử lý đã dừng giữa chừng) về tên gốc
+     */
+    private void releaseStaleClaims(String path) {
+        Path dir = Paths.get(path);
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + CLAIM_SUFFIX + "*")) {
+            for (Path claimed : stream) {
+                if (now - Files.getLastModifiedTime(claimed).toMillis() < claimTimeoutMs) {
+                    continue;
                 }
-                processLog(line, start); // Xử lý từng dòng log
-            });
+                String name = claimed.getFileName().toString();
+                Path original = claimed.resolveSibling(name.substring(0, name.indexOf(CLAIM_SUFFIX)));
+                try {
+                    Files.move(claimed, original, StandardCopyOption.ATOMIC_MOVE);
+                    this.logger.warn(">>>>>>>>>>>>>>>> release stale claim: {}", claimed);
+                } catch (IOException e) {
+                    this.logger.debug("Release stale claim {} failed: {}", claimed, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            this.logger.error("releaseStaleClaims Exception: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Đọc nội dung của một file log, tiếp tục từ offset đã commit nếu file từng xử lý dở
+     *
+     * @param filePath     Đường dẫn đến file log (đã claim)
+     * @param originalName Tên file gốc trước khi claim
+     * @param isReload     Xác định đây là lần đọc đầu tiên hay là lần retry
+     */
+    public void readFile(Path filePath, String originalName, boolean isReload) {
+        long resumeOffset = checkpointStore.load(originalName);
+        if (resumeOffset > 0) {
+            this.logger.info("Resume file {} from offset {}", originalName, resumeOffset);
+        }
+        BatchContext context = new BatchContext(filePath, nodeKey, originalName, resumeOffset, getColumnCount(), batchSize);
+        boolean completed = false;
+        try {
+            completed = readerMode == LogReaderMode.MMAP
+                    ? readMapped(context, resumeOffset, isReload)
+                    : readStream(context, resumeOffset, isReload);
         } catch (Exception e) {
             e.printStackTrace();
-            this.logger.error("readFileJava8 Exception: {}", e.getMessage());
+            this.logger.error("readFile Exception: {}", e.getMessage());
         } finally {
-            handleFileAfterRead(filePath.toFile(), isReload); // Xử lý file sau khi đọc
-            commitFinal(start); // Commit cuối cùng nếu còn batch pending
+            awaitPendingCommit(context); // Không di chuyển file khi commit nền còn đang chạy
+            handleFileAfterRead(context, completed, isReload); // Xử lý file sau khi đọc
         }
     }
 
     /**
-     * Xử lý từng dòng log, chèn dữ liệu vào batch
+     * Đọc tuần tự từng dòng, decode sang String và ghi lại từng dòng ra logs-of-day
      *
-     * @param content   Nội dung của dòng log
-     * @param startTime Thời điểm bắt đầu xử lý file
+     * @return true nếu toàn bộ file đã được commit
+     */
+    private boolean readStream(BatchContext context, long resumeOffset, boolean isReload) throws IOException {
+        try (OffsetLineReader reader = new OffsetLineReader(context.file, resumeOffset)) {
+            String line;
+            while ((line = reader.nextLine()) != null) {
+                context.lineStartOffset = reader.lineStartOffset();
+                if (!isReload) {
+                    logOfDay.info(line); // Ghi log ra file
+                }
+                // Batch đầy: commit phần trước dòng hiện tại, lỗi thì dừng để retry từ checkpoint
+                if (!processLog(context)) {
+                    if (!isReload) {
+                        writeRemainingToLogOfDay(reader);
+                    }
+                    return false;
+                }
+                processData(context, line); // Xử lý dữ liệu của dòng log (sẽ gọi addBatchInsert)
+            }
+            // Commit cuối cùng cho phần còn lại của file
+            return commitRemaining(context, reader.offset());
+        }
+    }
+
+    /**
+     * Lần retry không ghi logs-of-day, nên khi lần đọc đầu dừng giữa chừng phải ghi nốt
+     * phần còn lại của file để logs-of-day vẫn đủ mọi dòng (checkpoint DB không bị ảnh hưởng).
      */
-    private void processLog(String content, Instant startTime) {
-        if (count >= this.batchSize) {
-            logger.info("count {}", count);
-            this.commit(startTime); // Commit batch hiện tại
-            count = 0;
-            logger.info("reset batch size {}", count);
+    private void writeRemainingToLogOfDay(OffsetLineReader reader) {
+        try {
+            String line;
+            while ((line = reader.nextLine()) != null) {
+                logOfDay.info(line);
+            }
+        } catch (IOException e) {
+            this.logger.warn("Write remaining lines to logs-of-day failed: {}", e.getMessage());
         }
-        processData(content); // Xử lý dữ liệu của dòng log (sẽ gọi addBatchInsert và incrementCount)
     }
 
     /**
-     * Xử lý file sau khi đọc: xóa file nếu commit thành công, di chuyển file nếu commit thất bại
+     * Memory-map file, quét newline trên buffer và giao lát byte của từng dòng cho parser.
+     * File gốc được copy nguyên khối sang thư mục archive thay vì ghi lại từng dòng.
      *
-     * @param f        File log
-     * @param isReload Xác định đây là lần đọc đầu tiên hay là lần retry
+     * @return true nếu toàn bộ file đã được commit
+     */
+    private boolean readMapped(BatchContext context, long resumeOffset, boolean isReload) throws IOException {
+        if (!isReload && resumeOffset == 0) {
+            archiveFile(context);
+        }
+        try (MappedLineScanner scanner = new MappedLineScanner(context.file, resumeOffset)) {
+            while (scanner.next()) {
+                context.lineStartOffset = scanner.lineStartOffset();
+                if (!processLog(context)) {
+                    return false;
+                }
+                processData(context, scanner.line());
+            }
+            return commitRemaining(context, scanner.offset());
+        }
+    }
+
+    /**
+     * Copy nguyên file spool sang archive/yyyy-MM-dd bằng FileChannel.transferTo (zero-copy trong kernel).
+     * Chỉ chạy ở lần đọc đầu tiên từ offset 0 nên đọc lại sau lỗi không tạo bản sao trùng.
+     */
+    private void archiveFile(BatchContext context) {
+        Path dir = Paths.get(pathArchive).resolve(LocalDate.now().toString());
+        try {
+            Files.createDirectories(dir);
+            try (FileChannel source = FileChannel.open(context.file, StandardOpenOption.READ);
+                 FileChannel target = FileChannel.open(dir.resolve(context.originalName),
+                         StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                long size = source.size();
+                long position = 0;
+                while (position < size) {
+                    position += source.transferTo(position, size - position, target);
+                }
+            }
+        } catch (IOException e) {
+            // Archive chỉ phục vụ tra cứu, không chặn việc insert DB
+            this.logger.warn("Archive file {} failed: {}", context.originalName, e.getMessage());
+        }
+    }
+
+    /**
+     * Commit batch khi đã đủ batch size hiện tại (trước khi thêm dòng hiện tại).
+     * Ở chế độ pipelined, batch đầy được commit nền và worker parse tiếp vào buffer còn lại.
+     *
+     * @param context Batch của file đang đọc
+     * @return false nếu commit (hiện tại hoặc commit nền trước đó) thất bại
+     */
+    private boolean processLog(BatchContext context) {
+        if (context.size() < batchSizer.currentSize()) {
+            return true;
+        }
+        logger.debug("count {}", context.size());
+        // Chờ commit nền trước đó xong thì buffer của nó mới được dùng lại, checkpoint cũng giữ đúng thứ tự
+        if (!awaitPendingCommit(context)) {
+            return false;
+        }
+        long coveredOffset = context.lineStartOffset;
+        BatchBuffer full = context.swap();
+        if (commitPool == null) {
+            return this.commit(context, full, coveredOffset); // Commit batch hiện tại
+        }
+        context.pendingCommit = commitPool.submit(() -> this.commit(context, full, coveredOffset));
+        return true;
+    }
+
+    /**
+     * Chờ commit nền của file (nếu có) hoàn tất
+     *
+     * @return false nếu commit nền thất bại
+     */
+    private boolean awaitPendingCommit(BatchContext context) {
+        Future<Boolean> pending = context.pendingCommit;
+        if (pending == null) {
+            return true;
+        }
+        context.pendingCommit = null;
+        try {
+            return Boolean.TRUE.equals(pending.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            logger.error("Pending commit Exception: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Commit phần còn lại của file sau khi commit nền trước đó đã thành công
+     */
+    private boolean commitRemaining(BatchContext context, long coveredOffset) {
+        return awaitPendingCommit(context) && this.commit(context, context.swap(), coveredOffset);
+    }
+
+    /**
+     * Xử lý file sau khi đọc: xóa file nếu đã commit hết, di chuyển file nếu commit thất bại
+     *
+     * @param context   Batch của file vừa đọc
+     * @param completed Toàn bộ file đã được commit
+     * @param isReload  Xác định đây là lần đọc đầu tiên hay là lần retry
      */
-    private void handleFileAfterRead(File f, boolean isReload) {
+    private void handleFileAfterRead(BatchContext context, boolean completed, boolean isReload) {
+        Path f = context.file;
+        String originalName = context.originalName;
         try {
-            Instant start = Instant.now();
-            if (this.commit(start)) {
-                this.logger.info(">>>>>>>>>>>>>>>> delete file: {} status: {}", f.getAbsolutePath(), Files.deleteIfExists(f.toPath()));
+            if (completed) {
+                this.logger.info(">>>>>>>>>>>>>>>> delete file: {} status: {}", f.toAbsolutePath(), Files.deleteIfExists(f));
+                this.storeFileFail.remove(originalName);
+                this.checkpointStore.delete(originalName);
             } else {
-                handleFileRenameAndRetry(f, isReload); // Xử lý file cần retry
+                handleFileRenameAndRetry(f, originalName, isReload); // Xử lý file cần retry
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -168,61 +500,50 @@ public abstract class AbstractJobProcessLog {
     /**
      * Xử lý file cần retry: di chuyển file vào thư mục retry hoặc failed
      *
-     * @param f        File log
-     * @param isReload Xác định đây là lần đọc đầu tiên hay là lần retry
+     * @param f            File log (đã claim)
+     * @param originalName Tên file gốc
+     * @param isReload     Xác định đây là lần đọc đầu tiên hay là lần retry
      * @throws IOException
      */
-    private void handleFileRenameAndRetry(File f, boolean isReload) throws IOException {
+    private void handleFileRenameAndRetry(Path f, String originalName, boolean isReload) throws IOException {
         if (this.maxRetry == -1) {
-            if (!isReload) {
-                moveFile(this.pathRetry, f); // Di chuyển file vào thư mục retry
-            }
+            // Trả file về tên gốc trong thư mục retry để lượt sau đọc lại
+            moveFile(this.pathRetry, f, originalName);
         } else if (isReload) {
-            handleReloadRetry(f); // Xử lý file retry
+            handleReloadRetry(f, originalName); // Xử lý file retry
         } else {
-            storeFileFailAndRetry(f); // Lưu trữ file và di chuyển vào thư mục retry
+            storeFileFailAndRetry(f, originalName); // Lưu trữ file và di chuyển vào thư mục retry
         }
     }
 
     /**
      * Xử lý file retry: tăng số lần retry, di chuyển file vào thư mục failed nếu vượt quá số lần retry
      *
-     * @param f File log
+     * @param f            File log (đã claim)
+     * @param originalName Tên file gốc
      * @throws IOException
      */
-    private void handleReloadRetry(File f) throws IOException {
-        Integer current = this.storeFileFail.get(f.getName());
-        if (current != null) {
-            if (current < this.maxRetry) {
-                current = current + 1;
-                this.storeFileFail.put(f.getName(), current);
-            } else {
-                moveFile(this.pathFailed, f); // Di chuyển file vào thư mục failed
-                this.storeFileFail.remove(f.getName());
-            }
+    private void handleReloadRetry(Path f, String originalName) throws IOException {
+        int current = this.storeFileFail.getOrDefault(originalName, 0);
+        if (current < this.maxRetry) {
+            this.storeFileFail.put(originalName, current + 1);
+            moveFile(this.pathRetry, f, originalName); // Trả file về thư mục retry
+        } else {
+            moveFile(this.pathFailed, f, originalName); // Di chuyển file vào thư mục failed
+            this.storeFileFail.remove(originalName);
         }
     }
 
     /**
      * Lưu trữ file và di chuyển vào thư mục retry
      *
-     * @param f File log
+     * @param f            File log (đã claim)
+     * @param originalName Tên file gốc
      * @throws IOException
      */
-    private void storeFileFailAndRetry(File f) throws IOException {
-        this.storeFileFail.put(f.getName(), 0);
-        moveFile(this.pathRetry, f); // Di chuyển file vào thư mục retry
-    }
-
-    /**
-     * Commit cuối cùng nếu còn batch pending
-     *
-     * @param startTime Thời điểm bắt đầu xử lý
-     */
-    private void commitFinal(Instant startTime) {
-        if (count > 0) {
-            commit(startTime);
-        }
+    private void storeFileFailAndRetry(Path f, String originalName) throws IOException {
+        this.storeFileFail.put(originalName, 0);
+        moveFile(this.pathRetry, f, originalName); // Di chuyển file vào thư mục retry
     }
 
     /**
@@ -230,59 +551,56 @@ public abstract class AbstractJobProcessLog {
      *
      * @param targetPath Đường dẫn đến thư mục đích
      * @param sourceFile File cần di chuyển
+     * @param targetName Tên file tại thư mục đích
      * @throws IOException
      */
-    private void moveFile(String targetPath, File sourceFile) throws IOException {
+    private void moveFile(String targetPath, Path sourceFile, String targetName) throws IOException {
         Files.createDirectories(Paths.get(targetPath)); // Tạo thư mục nếu chưa tồn tại
-        Path target = Paths.get(targetPath + "/" + sourceFile.getName());
-        Files.move(sourceFile.toPath(), target);
-        this.logger.error(">>>>>>>>>>>>>>>> move file, rename to: {} to {}", targetPath, sourceFile.toPath());
+        Path target = Paths.get(targetPath).resolve(targetName);
+        Files.move(sourceFile, target, StandardCopyOption.REPLACE_EXISTING);
+        this.logger.error(">>>>>>>>>>>>>>>> move file, rename to: {} to {}", targetPath, sourceFile);
     }
 
     /**
-     * Thêm dữ liệu vào batch (gọi từ processData trong subclass)
+     * Thêm dữ liệu vào batch (gọi từ processData trong subclass).
+     * Subclass cần tránh cấp phát có thể ghi thẳng qua context.beginRow()/set()/endRow().
      *
-     * @param args Các parameters cho row hiện tại (từ parse string hoặc JSON)
+     * @param context Batch của file đang đọc
+     * @param args    Các parameters cho row hiện tại (từ parse string hoặc JSON)
      */
-    protected void addBatchInsert(Object... args) {
-        if (args != null) {
-            batchParams.add(args.clone()); // Clone để tránh mutate
+    protected void addBatchInsert(BatchContext context, Object... args) {
+        if (args == null) {
+            return;
+        }
+        context.beginRow();
+        for (int i = 0; i < args.length && i < context.columnCount; i++) {
+            context.set(i, args[i]);
         }
-        incrementCount();
+        context.endRow();
     }
 
     /**
-     * Commit batch hiện tại vào database (sử dụng TransactionTemplate cho transaction)
+     * Commit một buffer vào database (sử dụng TransactionTemplate cho transaction)
+     * và lưu checkpoint sau khi commit thành công
      *
-     * @param startTime Thời điểm bắt đầu xử lý batch
+     * @param context       Batch của file đang đọc
+     * @param batch         Buffer cần commit (được clear sau khi commit thành công)
+     * @param coveredOffset Offset byte mà batch này bao phủ tới (không gồm)
      * @return true nếu commit thành công, false nếu commit thất bại
      */
-    private boolean commit(Instant startTime) {
+    private boolean commit(BatchContext context, BatchBuffer batch, long coveredOffset) {
+        long start = System.currentTimeMillis();
         try {
-            String currentSql = getSql(); // Lấy SQL từ subclass
             Boolean success = this.transactionTemplate.execute(new TransactionCallback<Boolean>() {
                 @Override
                 public Boolean doInTransaction(TransactionStatus status) {
                     try {
-                        if (!batchParams.isEmpty()) {
-                            int[] results = jdbcTemplate.batchUpdate(currentSql, new BatchPreparedStatementSetter() {
-                                @Override
-                                public void setValues(PreparedStatement ps, int i) throws SQLException {
-                                    Object[] params = batchParams.get(i);
-                                    for (int j = 0; j < params.length; j++) {
-                                        ps.setObject(j + 1, params[j]);
-                                    }
-                                }
-
-                                @Override
-                                public int getBatchSize() {
-                                    return batchParams.size();
-                                }
-                            });
-                            Instant end = Instant.now();
-                            long durationInMilliseconds = Duration.between(startTime, end).toMillis();
-                            logger.info("Commit successful num: {} rows; execute time: {} milliseconds", results.length, durationInMilliseconds);
-                            batchParams.clear(); // Clear sau success
+                        if (batch.size() > 0) {
+                            int rows = bulkWriter.write(jdbcTemplate, batch);
+                            long durationInMilliseconds = System.currentTimeMillis() - start;
+                            logger.info("Commit successful num: {} rows; execute time: {} milliseconds", rows, durationInMilliseconds);
+                            context.committedRows += rows;
+                            totalRows.add(rows);
                             return true;
                         }
                         return true;
@@ -294,25 +612,111 @@ public abstract class AbstractJobProcessLog {
                     }
                 }
             });
-            count = 0; // Reset count sau commit
-            return success != null && success;
+            if (success == null || !success) {
+                batchSizer.onFailure(System.currentTimeMillis() - start);
+                return false;
+            }
+            if (batch.size() > 0) {
+                batchSizer.onSuccess(System.currentTimeMillis() - start);
+            }
+            batch.clear(); // Clear sau success
+            context.committedOffset = coveredOffset;
+            saveCheckpoint(context);
+            touchClaim(context.file);
+            return true;
         } catch (Exception e) {
+            batchSizer.onFailure(System.currentTimeMillis() - start);
             logger.error("Commit Exception: {}", e.getMessage());
             return false;
         }
     }
 
+    private void saveCheckpoint(BatchContext context) {
+        try {
+            checkpointStore.save(context.originalName, context.committedOffset);
+        } catch (IOException e) {
+            // Mất checkpoint chỉ khiến lần retry đọc lại nhiều hơn, khóa idempotent chặn bản ghi trùng
+            logger.warn("Save checkpoint {} failed: {}", context.originalName, e.getMessage());
+        }
+    }
+
+    /**
+     * Cập nhật mtime của file đã claim để không bị coi là claim chết khi file lớn xử lý lâu
+     */
+    private void touchClaim(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+        } catch (IOException e) {
+            logger.debug("touchClaim {} failed: {}", file, e.getMessage());
+        }
+    }
+
     /**
      * Xử lý dữ liệu của dòng log, chuyển đổi string (hoặc JSON) sang params và chèn vào batch
-     * (Implement ở subclass: parse và gọi addBatchInsert(args...))
+     * (Implement ở subclass: parse và gọi addBatchInsert(context, args...))
+     *
+     * @param context Batch của file đang đọc
+     * @param data    Dữ liệu của dòng log
+     */
+    public abstract void processData(BatchContext context, String data);
+
+    /**
+     * Xử lý một dòng dưới dạng lát ByteBuffer (UTF-8) của file memory-map ở chế độ MMAP.
+     * Mặc định decode sang String; subclass có thể override để parse thẳng trên mapping.
      *
-     * @param data Dữ liệu của dòng log
+     * @param context Batch của file đang đọc
+     * @param line    Dòng tại position..limit (đã bỏ \r\n), chỉ hợp lệ trong lần gọi này
      */
-    public abstract void processData(String data);
+    public void processData(BatchContext context, ByteBuffer line) {
+        processData(context, StandardCharsets.UTF_8.decode(line).toString());
+    }
 
     public abstract String getSql();
 
-    protected void incrementCount() {
-        count++;
+    /**
+     * Mô tả bảng đích cho bulk writer ORACLE/POSTGRES_COPY và kiểu cột để bind;
+     * null thì chỉ dùng được JDBC với setObject
+     */
+    protected BulkTable getBulkTable() {
+        return null;
+    }
+
+    /**
+     * Số tham số (dấu ?) của câu SQL insert, cũng là số cột của batch
+     */
+    public abstract int getColumnCount();
+
+    public long getTotalRows() {
+        return totalRows.sum();
+    }
+
+    public long getTotalFiles() {
+        return totalFiles.sum();
+    }
+
+    public int getBacklogSize() {
+        return backlogSize;
+    }
+
+    public double getLastRowsPerSecond() {
+        return lastRowsPerSecond;
+    }
+
+    public double getLastFilesPerSecond() {
+        return lastFilesPerSecond;
+    }
+
+    /**
+     * Batch size hiện tại do bộ điều chỉnh adaptive chọn
+     */
+    public int getCurrentBatchSize() {
+        return batchSizer.currentSize();
+    }
+
+    /**
+     * p99 độ trễ commit (ms) trên các commit gần nhất
+     */
+    public long getCommitLatencyP99Ms() {
+        return batchSizer.commitP99();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,74 @@
+package com.neo.ftpserver.logger;
+
+import java.util.Arrays;
+
+/**
+ * Điều chỉnh batch size theo độ trễ commit quan sát được (AIMD):
+ * commit nhanh hơn nửa mục tiêu thì tăng 25%, chậm hơn mục tiêu hoặc lỗi thì giảm một nửa.
+ * Giữ độ trễ của các commit gần nhất để tính p99.
+ */
+final class AdaptiveBatchSizer {
+
+    private static final int SAMPLE_SIZE = 1024;
+
+    private final boolean enabled;
+    private final int minSize;
+    private final int maxSize;
+    private final long targetCommitMs;
+    private volatile int currentSize;
+
+    private final long[] latencies = new long[SAMPLE_SIZE];
+    private int sampleCount;
+    private int sampleIndex;
+
+    AdaptiveBatchSizer(boolean enabled, int initialSize, int minSize, int maxSize, long targetCommitMs) {
+        this.enabled = enabled;
+        this.minSize = Math.max(1, Math.min(minSize, initialSize));
+        this.maxSize = Math.max(initialSize, maxSize);
+        this.targetCommitMs = Math.max(1, targetCommitMs);
+        this.currentSize = initialSize;
+    }
+
+    int currentSize() {
+        return currentSize;
+    }
+
+    synchronized void onSuccess(long durationMs) {
+        record(durationMs);
+        if (!enabled) {
+            return;
+        }
+        if (durationMs > targetCommitMs) {
+            currentSize = Math.max(minSize, currentSize / 2);
+        } else if (durationMs < targetCommitMs / 2) {
+            currentSize = Math.min(maxSize, currentSize + Math.max(1, currentSize / 4));
+        }
+    }
+
+    synchronized void onFailure(long durationMs) {
+        record(durationMs);
+        if (enabled) {
+            currentSize = Math.max(minSize, currentSize / 2);
+        }
+    }
+
+    private void record(long durationMs) {
+        latencies[sampleIndex] = durationMs;
+        sampleIndex = (sampleIndex + 1) % SAMPLE_SIZE;
+        if (sampleCount < SAMPLE_SIZE) {
+            sampleCount++;
+        }
+    }
+
+    /**
+     * p99 độ trễ commit (ms) trên tối đa 1024 commit gần nhất, 0 nếu chưa có mẫu
+     */
+    synchronized long commitP99() {
+        if (sampleCount == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(latencies, sampleCount);
+        Arrays.sort(sorted);
+        return sorted[Math.min(sampleCount - 1, (int) Math.ceil(sampleCount * 0.99) - 1)];
+    }
+}
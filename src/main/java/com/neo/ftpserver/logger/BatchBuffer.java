@@ -0,0 +1,67 @@
+package com.neo.ftpserver.logger;
+
+import java.util.Arrays;
+
+/**
+ * Mảng params phẳng của một batch (ô [row * columnCount + column]), dùng lại giữa các lần commit.
+ * Mỗi file có hai buffer luân phiên: một buffer nhận dòng mới trong khi buffer kia đang commit.
+ */
+final class BatchBuffer {
+
+    private final int columnCount;
+    private Object[] cells;
+    // Số dòng đã hoàn chỉnh trong batch
+    private int rows;
+    // Dòng đang được ghi dở (chưa endRow)
+    private boolean rowOpen;
+
+    BatchBuffer(int columnCount, int expectedRows) {
+        this.columnCount = columnCount;
+        this.cells = new Object[Math.max(1, expectedRows) * columnCount];
+    }
+
+    void beginRow() {
+        int end = (rows + 1) * columnCount;
+        if (end > cells.length) {
+            cells = Arrays.copyOf(cells, Math.max(end, cells.length * 2));
+        }
+        Arrays.fill(cells, rows * columnCount, end, null);
+        rowOpen = true;
+    }
+
+    void set(int column, Object value) {
+        cells[rows * columnCount + column] = value;
+    }
+
+    void endRow() {
+        if (rowOpen) {
+            rows++;
+            rowOpen = false;
+        }
+    }
+
+    void discardRow() {
+        rowOpen = false;
+    }
+
+    int size() {
+        return rows;
+    }
+
+    int columnCount() {
+        return columnCount;
+    }
+
+    Object get(int row, int column) {
+        return cells[row * columnCount + column];
+    }
+
+    /**
+     * Xóa batch sau khi commit, nhả tham chiếu để GC thu hồi các String của batch cũ
+     */
+    void clear() {
+        Arrays.fill(cells, 0, rows * columnCount, null);
+        rows = 0;
+        rowOpen = false;
+    }
+}
@@ -0,0 +1,99 @@
+package com.neo.ftpserver.logger;
+
+import java.nio.file.Path;
+import java.util.concurrent.Future;
+
+/**
+ * Trạng thái batch của một file đang được xử lý. Mỗi file có context riêng
+ * nên nhiều worker có thể đọc song song mà không chia sẻ state.
+ * <p>
+ * Params được ghi vào buffer active; khi batch đầy, buffer active được giao đi commit
+ * và buffer dự phòng thay chỗ để parse tiếp (double-buffer), không cấp phát Object[] cho từng dòng.
+ */
+public final class BatchContext {
+
+    final Path file;
+    // Tiền tố khóa idempotent: node + tên file gốc
+    private final String keyPrefix;
+    final String originalName;
+    final int columnCount;
+    private BatchBuffer active;
+    private BatchBuffer spare;
+    // Commit bất đồng bộ của buffer trước đó (null nếu không có)
+    Future<Boolean> pendingCommit;
+    long committedRows;
+    // Offset byte bắt đầu của dòng đang xử lý
+    long lineStartOffset;
+    // Offset đã commit thành công (được lưu checkpoint)
+    long committedOffset;
+
+    BatchContext(Path file, String nodeKey, String originalName, long committedOffset, int columnCount, int expectedRows) {
+        this.file = file;
+        this.keyPrefix = nodeKey + ":" + originalName + ":";
+        this.originalName = originalName;
+        this.committedOffset = committedOffset;
+        this.columnCount = columnCount;
+        this.active = new BatchBuffer(columnCount, expectedRows);
+        this.spare = new BatchBuffer(columnCount, expectedRows);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Khóa idempotent của dòng đang xử lý: node + tên file gốc + offset byte của dòng.
+     * Tên spool là timestamp nên có thể trùng giữa các node; thêm node để không bỏ nhầm dòng của node khác.
+     * Đọc lại cùng file trên cùng node luôn sinh cùng khóa nên DB có thể bỏ qua bản ghi trùng.
+     */
+    public String getRowKey() {
+        return keyPrefix + lineStartOffset;
+    }
+
+    /**
+     * Mở một dòng mới trong batch, các cột mặc định null
+     */
+    public void beginRow() {
+        active.beginRow();
+    }
+
+    /**
+     * Gán giá trị cho cột (0-based) của dòng đang mở
+     */
+    public void set(int column, Object value) {
+        active.set(column, value);
+    }
+
+    /**
+     * Xác nhận dòng đang mở vào batch
+     */
+    public void endRow() {
+        active.endRow();
+    }
+
+    /**
+     * Bỏ dòng đang mở (parse lỗi giữa chừng)
+     */
+    public void discardRow() {
+        active.discardRow();
+    }
+
+    int size() {
+        return active.size();
+    }
+
+    BatchBuffer active() {
+        return active;
+    }
+
+    /**
+     * Đổi vai hai buffer: trả về buffer đầy để commit, buffer dự phòng (đã clear) nhận dòng tiếp theo.
+     * Chỉ gọi khi commit trước đó đã xong.
+     */
+    BatchBuffer swap() {
+        BatchBuffer full = active;
+        active = spare;
+        spare = full;
+        return full;
+    }
+}
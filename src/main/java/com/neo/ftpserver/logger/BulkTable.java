@@ -0,0 +1,17 @@
+package com.neo.ftpserver.logger;
+
+import java.util.List;
+
+/**
+ * Mô tả bảng đích cho bulk writer: cột thứ i ứng với cột thứ i của batch
+ *
+ * @param table     Tên bảng
+ * @param idColumn  Cột khóa chính sinh từ sequence
+ * @param sequence  Tên sequence cấp id
+ * @param keyColumn Cột khóa idempotent (unique), trùng thì bỏ qua
+ * @param columns   Tên các cột theo thứ tự cột của batch
+ * @param types     Kiểu java.sql.Types của từng cột
+ */
+public record BulkTable(String table, String idColumn, String sequence, String keyColumn,
+                        List<String> columns, int[] types) {
+}
@@ -0,0 +1,36 @@
+package com.neo.ftpserver.logger;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+
+/**
+ * Ghi một batch vào database, được gọi bên trong transaction của commit
+ */
+interface BulkWriter {
+
+    /**
+     * @return Số dòng đã gửi xuống database
+     */
+    int write(JdbcTemplate jdbcTemplate, BatchBuffer batch) throws SQLException;
+
+    /**
+     * Bind giá trị theo kiểu khai báo của cột, tránh setObject phải đoán kiểu cho từng ô
+     */
+    static void bind(PreparedStatement ps, int index, Object value, int type) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, type);
+            return;
+        }
+        switch (type) {
+            case Types.VARCHAR -> ps.setString(index, value.toString());
+            case Types.BIGINT, Types.NUMERIC -> ps.setLong(index, ((Number) value).longValue());
+            case Types.BOOLEAN -> ps.setBoolean(index, (Boolean) value);
+            case Types.TIMESTAMP -> ps.setTimestamp(index, (Timestamp) value);
+            default -> ps.setObject(index, value);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.neo.ftpserver.logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Lưu offset byte đã commit của từng file log (theo tên gốc) để retry đọc tiếp thay vì đọc lại từ đầu
+ */
+final class CheckpointStore {
+
+    private static final String SUFFIX = ".ckpt";
+
+    private final Path dir;
+
+    CheckpointStore(String dir) {
+        this.dir = Paths.get(dir);
+    }
+
+    long load(String fileName) {
+        try {
+            String value = Files.readString(dir.resolve(fileName + SUFFIX), StandardCharsets.US_ASCII).trim();
+            return value.isEmpty() ? 0L : Long.parseLong(value);
+        } catch (NoSuchFileException e) {
+            return 0L;
+        } catch (IOException | NumberFormatException e) {
+            // Checkpoint hỏng → đọc lại từ đầu, khóa idempotent sẽ chặn bản ghi trùng
+            return 0L;
+        }
+    }
+
+    /**
+     * Ghi ra file tạm rồi rename nguyên tử để không bao giờ để lại checkpoint dở dang
+     */
+    void save(String fileName, long offset) throws IOException {
+        Files.createDirectories(dir);
+        Path target = dir.resolve(fileName + SUFFIX);
+        Path temp = dir.resolve(fileName + SUFFIX + ".tmp");
+        Files.writeString(temp, Long.toString(offset), StandardCharsets.US_ASCII);
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    void delete(String fileName) {
+        try {
+            Files.deleteIfExists(dir.resolve(fileName + SUFFIX));
+        } catch (IOException ignored) {
+            // Checkpoint thừa không ảnh hưởng, file log đã xử lý xong
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.neo.ftpserver.logger;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * batchUpdate với câu insert cấu hình sẵn; có kiểu cột thì bind theo kiểu, không thì setObject
+ */
+final class JdbcBatchWriter implements BulkWriter {
+
+    private final String sql;
+    private final int[] types;
+
+    JdbcBatchWriter(String sql, int[] types) {
+        this.sql = sql;
+        this.types = types;
+    }
+
+    @Override
+    public int write(JdbcTemplate jdbcTemplate, BatchBuffer batch) {
+        int columns = batch.columnCount();
+        int[] results = jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                for (int j = 0; j < columns; j++) {
+                    if (types == null) {
+                        ps.setObject(j + 1, batch.get(i, j));
+                    } else {
+                        BulkWriter.bind(ps, j + 1, batch.get(i, j), types[j]);
+                    }
+                }
+            }
+
+            @Override
+            public int getBatchSize() {
+                return batch.size();
+            }
+        });
+        return results.length;
+    }
+}
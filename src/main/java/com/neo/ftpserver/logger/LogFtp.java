@@ -1,26 +1,69 @@
 package com.neo.ftpserver.logger;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.neo.ftpserver.dto.FtpAuditLog;
 import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.PlatformTransactionManager;
 
-import java.util.Arrays;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
 
 @Slf4j
 @Component
 public class LogFtp extends AbstractJobProcessLog {
 
-    private final ObjectMapper objectMapper;
+    // Thứ tự cột = thứ tự dấu ? trong logging.job.sql-insert
+    private static final int COL_EVENT_KEY = 0;
+    private static final int COL_USERNAME = 1;
+    private static final int COL_ACTION = 2;
+    private static final int COL_FILE_PATH = 3;
+    private static final int COL_FILE_SIZE = 4;
+    private static final int COL_CLIENT_IP = 5;
+    private static final int COL_SECURE = 6;
+    private static final int COL_TIMESTAMP = 7;
+    private static final int COL_DURATION = 8;
+    private static final int COL_THROUGHPUT = 9;
+    private static final int COLUMN_COUNT = 10;
+
+    // Bảng đích cho bulk writer, cột theo đúng thứ tự COL_*
+    private static final BulkTable BULK_TABLE = new BulkTable("ftp_audit_log", "id", "ftp_audit_log_seq", "event_key",
+            List.of("event_key", "username", "action", "file_path", "file_size", "client_ip", "is_secure", "timestamp",
+                    "duration_ms", "throughput"),
+            new int[]{Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.BIGINT, Types.VARCHAR, Types.BOOLEAN, Types.TIMESTAMP,
+                    Types.BIGINT, Types.BIGINT});
+
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
+
+    // Các dòng liên tiếp thường cùng giây → nhớ kết quả parse gần nhất cho từng worker
+    private static final ThreadLocal<Object[]> LAST_TIMESTAMP = ThreadLocal.withInitial(() -> new Object[2]);
+
+    private final JsonFactory jsonFactory;
     private final JdbcTemplate jdbcTemplate;
     @Value("${logging.job.sql-insert}")
     private String sql;
+    // Câu insert dùng khi DB log là PostgreSQL (JDBC writer và ghi trực tiếp của AuditDbWriter)
+    @Value("${logging.job.sql-insert-postgres}")
+    private String sqlPostgres;
+    // Dialect của DB log (Oracle mặc định, PostgreSQL): chọn DDL và câu insert; null = chưa dò
+    private volatile Boolean postgres;
 
     @Autowired
     public LogFtp(
@@ -29,38 +72,128 @@ public class LogFtp extends AbstractJobProcessLog {
             ObjectMapper objectMapper
     ) {
         super(logJdbcTemplate, transactionManager);
-        this.objectMapper = objectMapper;
+        this.jsonFactory = objectMapper.getFactory();
         this.jdbcTemplate = logJdbcTemplate;
     }
 
     @Override
-    public void processData(String data) {
-        try {
-            if (data == null || data.trim().isEmpty()) {
-                log.warn("Empty data line, skipping");
-                return;
-            }
-            data = data.trim();
-            FtpAuditLog ftpAuditLog = objectMapper.readValue(data, FtpAuditLog.class);
-            Object[] paramsArray = {
-                    ftpAuditLog.getUsername(),
-                    ftpAuditLog.getAction(),
-                    ftpAuditLog.getFilePath(),
-                    ftpAuditLog.getFileSize(),
-                    ftpAuditLog.getClientIp(),
-                    ftpAuditLog.isSecure(),
-                    ftpAuditLog.getTimestamp()};
-            log.info("#paramsArray: {}", Arrays.toString(paramsArray));
-            addBatchInsert(paramsArray);
+    public void processData(BatchContext context, String data) {
+        if (data == null || data.isBlank()) {
+            log.warn("Empty data line, skipping");
+            return;
+        }
+        context.beginRow();
+        context.set(COL_EVENT_KEY, context.getRowKey());
+        // Field secure luôn có giá trị boolean (mặc định false như FtpAuditLog)
+        context.set(COL_SECURE, Boolean.FALSE);
+        try (JsonParser parser = jsonFactory.createParser(data)) {
+            readRow(parser, context);
+            context.endRow();
         } catch (Exception e) {
-            e.printStackTrace();
+            context.discardRow();
             log.error("Error while processing data: {}", e.getMessage());
         }
     }
 
+    /**
+     * Chế độ MMAP: parser non-blocking đọc thẳng trên lát ByteBuffer của mapping, không chép dòng sang heap
+     */
+    @Override
+    public void processData(BatchContext context, ByteBuffer line) {
+        if (isBlank(line)) {
+            log.warn("Empty data line, skipping");
+            return;
+        }
+        context.beginRow();
+        context.set(COL_EVENT_KEY, context.getRowKey());
+        context.set(COL_SECURE, Boolean.FALSE);
+        try (JsonParser parser = jsonFactory.createNonBlockingByteBufferParser()) {
+            ByteBufferFeeder feeder = (ByteBufferFeeder) parser.getNonBlockingInputFeeder();
+            feeder.feedInput(line);
+            // Cả dòng đã có sẵn → parser không bao giờ trả NOT_AVAILABLE
+            feeder.endOfInput();
+            readRow(parser, context);
+            context.endRow();
+        } catch (Exception e) {
+            context.discardRow();
+            log.error("Error while processing data: {}", e.getMessage());
+        }
+    }
+
+    private static boolean isBlank(ByteBuffer line) {
+        for (int i = line.position(); i < line.limit(); i++) {
+            if (line.get(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Đọc token stream của một dòng JSON và ghi thẳng từng field vào cột của batch,
+     * không dựng FtpAuditLog hay Object[] trung gian
+     */
+    private void readRow(JsonParser parser, BatchContext context) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Expected JSON object");
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "username" -> context.set(COL_USERNAME, textOrNull(parser, value));
+                case "action" -> context.set(COL_ACTION, textOrNull(parser, value));
+                case "filePath" -> context.set(COL_FILE_PATH, textOrNull(parser, value));
+                case "fileSize" -> context.set(COL_FILE_SIZE, value == JsonToken.VALUE_NUMBER_INT ? parser.getLongValue() : null);
+                case "clientIp" -> context.set(COL_CLIENT_IP, textOrNull(parser, value));
+                case "secure", "isSecure" -> context.set(COL_SECURE, value == JsonToken.VALUE_TRUE ? Boolean.TRUE : Boolean.FALSE);
+                case "timestamp" -> context.set(COL_TIMESTAMP, parseTimestamp(textOrNull(parser, value)));
+                // Dòng log cũ không có hai field này → cột để null
+                case "durationMs" -> context.set(COL_DURATION, value == JsonToken.VALUE_NUMBER_INT ? parser.getLongValue() : null);
+                case "throughput" -> context.set(COL_THROUGHPUT, value == JsonToken.VALUE_NUMBER_INT ? parser.getLongValue() : null);
+                default -> parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Parse timestamp dd/MM/yyyy HH:mm:ss ở phía Java để bind kiểu TIMESTAMP, không cần to_timestamp trong SQL
+     */
+    private static Timestamp parseTimestamp(String text) throws IOException {
+        if (text == null) {
+            return null;
+        }
+        Object[] last = LAST_TIMESTAMP.get();
+        if (text.equals(last[0])) {
+            return (Timestamp) last[1];
+        }
+        try {
+            Timestamp value = Timestamp.valueOf(LocalDateTime.parse(text, TIMESTAMP_FORMAT));
+            last[0] = text;
+            last[1] = value;
+            return value;
+        } catch (DateTimeParseException e) {
+            throw new IOException("Invalid timestamp: " + text);
+        }
+    }
+
+    private static String textOrNull(JsonParser parser, JsonToken value) throws IOException {
+        return value == JsonToken.VALUE_NULL ? null : parser.getText();
+    }
+
     @Override
     public String getSql() {
-        return sql;
+        return isPostgres() ? sqlPostgres : sql;
+    }
+
+    @Override
+    protected BulkTable getBulkTable() {
+        return BULK_TABLE;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_COUNT;
     }
 
     @PostConstruct
@@ -68,6 +201,30 @@ public class LogFtp extends AbstractJobProcessLog {
         if (!tableExists()) {
             createTable();
         }
+        ensureEventKey();
+        ensureTransferColumns();
+    }
+
+    /**
+     * Dò một lần qua metadata JDBC; getSql() có thể được gọi (khi dựng bulk writer) trước init()
+     */
+    public boolean isPostgres() {
+        Boolean detected = postgres;
+        if (detected == null) {
+            detected = detectPostgres();
+            postgres = detected;
+        }
+        return detected;
+    }
+
+    private boolean detectPostgres() {
+        try {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+            return "PostgreSQL".equalsIgnoreCase(product);
+        } catch (Exception e) {
+            log.warn("Cannot detect log database dialect, assuming Oracle: {}", e.getMessage());
+            return false;
+        }
     }
 
     private boolean tableExists() {
@@ -81,10 +238,84 @@ public class LogFtp extends AbstractJobProcessLog {
 
     private void createTable() {
         try {
-            jdbcTemplate.execute("CREATE TABLE ftp_audit_log (id NUMBER PRIMARY KEY, username VARCHAR2(255), action VARCHAR2(50), file_path VARCHAR2(500), file_size NUMBER, client_ip VARCHAR2(50), is_secure NUMBER(1), timestamp TIMESTAMP)");
+            if (isPostgres()) {
+                jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS ftp_audit_log_seq");
+                jdbcTemplate.execute("CREATE TABLE ftp_audit_log (id BIGINT PRIMARY KEY, event_key VARCHAR(300), username VARCHAR(255), action VARCHAR(50), file_path VARCHAR(500), file_size BIGINT, client_ip VARCHAR(50), is_secure BOOLEAN, timestamp TIMESTAMP, duration_ms BIGINT, throughput BIGINT)");
+            } else {
+                jdbcTemplate.execute("CREATE TABLE ftp_audit_log (id NUMBER PRIMARY KEY, event_key VARCHAR2(300), username VARCHAR2(255), action VARCHAR2(50), file_path VARCHAR2(500), file_size NUMBER, client_ip VARCHAR2(50), is_secure NUMBER(1), timestamp TIMESTAMP, duration_ms NUMBER, throughput NUMBER)");
+            }
             log.info("✅ Created table ftp_audit_log in schema");
         } catch (Exception e) {
             e.getMessage();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Cột event_key + unique index giúp insert idempotent khi đọc lại file (bảng cũ chưa có thì bổ sung)
+     */
+    private void ensureEventKey() {
+        try {
+            jdbcTemplate.queryForObject("SELECT COUNT(event_key) FROM ftp_audit_log WHERE 1 = 0", Integer.class);
+        } catch (Exception e) {
+            try {
+                jdbcTemplate.execute(isPostgres()
+                        ? "ALTER TABLE ftp_audit_log ADD COLUMN event_key VARCHAR(300)"
+                        : "ALTER TABLE ftp_audit_log ADD event_key VARCHAR2(300)");
+                log.info("✅ Added column event_key to ftp_audit_log");
+            } catch (Exception ex) {
+                log.warn("Cannot add column event_key to ftp_audit_log: {}", ex.getMessage());
+            }
+        }
+        if (hasEventKeyIndex()) {
+            return;
+        }
+        try {
+            jdbcTemplate.execute("CREATE UNIQUE INDEX ftp_audit_log_event_key_uk ON ftp_audit_log (event_key)");
+            log.info("✅ Created unique index ftp_audit_log_event_key_uk");
+        } catch (Exception e) {
+            log.error("Cannot create unique index on ftp_audit_log(event_key): {}", e.getMessage());
+        }
+        // Thiếu index thì mọi insert có hint IGNORE_ROW_ON_DUPKEY_INDEX (ORA-38913) / ON CONFLICT đều lỗi → dừng khởi động
+        if (!hasEventKeyIndex()) {
+            throw new IllegalStateException("Unique index on ftp_audit_log(event_key) is missing");
+        }
+    }
+
+    /**
+     * Kiểm tra unique index trên event_key qua metadata JDBC (bất kể tên index).
+     * approximate = true để driver Oracle không chạy ANALYZE TABLE.
+     */
+    private boolean hasEventKeyIndex() {
+        Boolean found = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            String table = metaData.storesUpperCaseIdentifiers() ? "FTP_AUDIT_LOG" : "ftp_audit_log";
+            try (ResultSet rs = metaData.getIndexInfo(connection.getCatalog(), null, table, true, true)) {
+                while (rs.next()) {
+                    if ("event_key".equalsIgnoreCase(rs.getString("COLUMN_NAME"))) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        });
+        return Boolean.TRUE.equals(found);
+    }
+
+    /**
+     * Cột duration_ms (ms) và throughput (byte/s) của sự kiện truyền file, bảng cũ chưa có thì bổ sung
+     */
+    private void ensureTransferColumns() {
+        try {
+            jdbcTemplate.queryForObject("SELECT COUNT(duration_ms) + COUNT(throughput) FROM ftp_audit_log WHERE 1 = 0", Integer.class);
+        } catch (Exception e) {
+            try {
+                jdbcTemplate.execute(isPostgres()
+                        ? "ALTER TABLE ftp_audit_log ADD COLUMN duration_ms BIGINT, ADD COLUMN throughput BIGINT"
+                        : "ALTER TABLE ftp_audit_log ADD (duration_ms NUMBER, throughput NUMBER)");
+                log.info("✅ Added columns duration_ms, throughput to ftp_audit_log");
+            } catch (Exception ex) {
+                log.warn("Cannot add transfer columns to ftp_audit_log: {}", ex.getMessage());
+            }
+        }
+    }
+}
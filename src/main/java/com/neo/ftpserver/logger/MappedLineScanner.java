@@ -0,0 +1,125 @@
+package com.neo.ftpserver.logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Quét dòng trên file đã memory-map: '\n' được tìm thẳng trên cửa sổ map (map.get(i)) và mỗi dòng
+ * trả về dưới dạng lát ByteBuffer của chính mapping, không chép sang heap và không decode sang String.
+ * Cửa sổ cũ không unmap tường minh mà để GC thu hồi (trên Windows file còn bị khóa tới lúc đó).
+ */
+final class MappedLineScanner implements Closeable {
+
+    private static final long WINDOW = 64L * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private MappedByteBuffer map;
+    // View dùng lại để trả lát của dòng hiện tại, không tạo buffer mới cho mỗi dòng
+    private ByteBuffer line;
+    // Offset trong file của byte đầu tiên của map
+    private long mapBase;
+    // Dòng chưa tiêu thụ bắt đầu tại lineStart (vị trí trong map), đã quét không có '\n' tới scanFrom
+    private int lineStart;
+    private int scanFrom;
+    private long lineStartOffset;
+
+    MappedLineScanner(Path file, long startOffset) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.mapBase = Math.min(startOffset, fileSize);
+    }
+
+    /**
+     * Chuyển sang dòng tiếp theo, false khi hết file
+     */
+    boolean next() throws IOException {
+        while (true) {
+            if (map != null) {
+                int limit = map.limit();
+                for (int i = scanFrom; i < limit; i++) {
+                    if (map.get(i) == '\n') {
+                        takeLine(i, i + 1);
+                        return true;
+                    }
+                }
+                scanFrom = limit;
+            }
+            if (!remap()) {
+                // Dòng cuối không có '\n'
+                if (map != null && lineStart < map.limit()) {
+                    takeLine(map.limit(), map.limit());
+                    return true;
+                }
+                return false;
+            }
+        }
+    }
+
+    private void takeLine(int end, int nextStart) {
+        int length = end - lineStart;
+        if (length > 0 && map.get(end - 1) == '\r') {
+            length--;
+        }
+        line.clear().position(lineStart).limit(lineStart + length);
+        lineStartOffset = mapBase + lineStart;
+        lineStart = nextStart;
+        scanFrom = nextStart;
+    }
+
+    /**
+     * Map cửa sổ kế tiếp bắt đầu từ đầu dòng chưa tiêu thụ, false khi đã map tới cuối file
+     */
+    private boolean remap() throws IOException {
+        long mapEnd = map == null ? mapBase : mapBase + map.limit();
+        if (mapEnd >= fileSize) {
+            return false;
+        }
+        long base = mapBase + lineStart;
+        long size = WINDOW;
+        if (map != null && lineStart == 0) {
+            // Một dòng dài hơn cả cửa sổ → nới cửa sổ
+            size = (long) map.limit() * 2;
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Line longer than " + map.limit() + " bytes at offset " + base);
+            }
+        }
+        // Cửa sổ cũ chỉ còn được tham chiếu tới đây, GC giải phóng mapping
+        map = channel.map(FileChannel.MapMode.READ_ONLY, base, Math.min(size, fileSize - base));
+        line = map.duplicate();
+        scanFrom -= lineStart;
+        lineStart = 0;
+        mapBase = base;
+        return true;
+    }
+
+    /**
+     * Lát của dòng hiện tại trên mapping (position..limit, đã bỏ \r\n), hợp lệ tới lần gọi next() kế tiếp
+     */
+    ByteBuffer line() {
+        return line;
+    }
+
+    long lineStartOffset() {
+        return lineStartOffset;
+    }
+
+    /**
+     * Offset byte ngay sau dòng vừa đọc
+     */
+    long offset() {
+        return mapBase + lineStart;
+    }
+
+    @Override
+    public void close() throws IOException {
+        map = null;
+        line = null;
+        channel.close();
+    }
+}
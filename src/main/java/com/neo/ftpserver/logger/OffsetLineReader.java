@@ -0,0 +1,85 @@
+package com.neo.ftpserver.logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Đọc file theo dòng (UTF-8) và cho biết vị trí byte của từng dòng,
+ * dùng để checkpoint và tiếp tục đọc từ offset đã commit.
+ */
+final class OffsetLineReader implements Closeable {
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    private byte[] line = new byte[1024];
+    private long position;
+    private long lineStart;
+    private boolean eof;
+
+    OffsetLineReader(Path file, long startOffset) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.position = Math.min(startOffset, channel.size());
+        this.channel.position(position);
+        this.buffer.flip();
+    }
+
+    /**
+     * Dòng tiếp theo (không gồm \r\n), null khi hết file
+     */
+    String nextLine() throws IOException {
+        lineStart = position;
+        int length = 0;
+        while (true) {
+            if (!buffer.hasRemaining()) {
+                buffer.clear();
+                int read = eof ? -1 : channel.read(buffer);
+                buffer.flip();
+                if (read <= 0) {
+                    eof = true;
+                    return length > 0 ? decode(length) : null;
+                }
+            }
+            byte b = buffer.get();
+            position++;
+            if (b == '\n') {
+                return decode(length);
+            }
+            if (length == line.length) {
+                line = Arrays.copyOf(line, length * 2);
+            }
+            line[length++] = b;
+        }
+    }
+
+    /**
+     * Offset byte bắt đầu của dòng vừa đọc
+     */
+    long lineStartOffset() {
+        return lineStart;
+    }
+
+    /**
+     * Offset byte ngay sau dòng vừa đọc
+     */
+    long offset() {
+        return position;
+    }
+
+    private String decode(int length) {
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+        return new String(line, 0, length, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,54 @@
+package com.neo.ftpserver.logger;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Insert Oracle dạng array-bind: cả batch gửi trong một lần execute với bind theo kiểu,
+ * id lấy trước theo block từ sequence.
+ * <p>
+ * APPEND_VALUES (direct-path) nhanh hơn nhưng khóa cả bảng tới khi commit và thay chỗ hint
+ * IGNORE_ROW_ON_DUPKEY_INDEX (khóa trùng khi đọc lại file sẽ làm lỗi cả batch), nên chỉ nên bật khi một worker ghi.
+ */
+final class OracleBulkWriter implements BulkWriter {
+
+    private final String sql;
+    private final int[] types;
+    private final SequenceBlockAllocator idAllocator;
+
+    OracleBulkWriter(BulkTable table, boolean appendValues, int idBlockSize) {
+        this.types = table.types();
+        this.idAllocator = new SequenceBlockAllocator(table.sequence(), idBlockSize);
+        String hint = appendValues
+                ? "/*+ APPEND_VALUES */ "
+                : "/*+ IGNORE_ROW_ON_DUPKEY_INDEX(" + table.table() + "(" + table.keyColumn() + ")) */ ";
+        this.sql = "insert " + hint + "into " + table.table()
+                + " (" + table.idColumn() + ", " + String.join(", ", table.columns()) + ") values (?"
+                + ", ?".repeat(table.columns().size()) + ")";
+    }
+
+    @Override
+    public int write(JdbcTemplate jdbcTemplate, BatchBuffer batch) {
+        int columns = batch.columnCount();
+        long[] ids = idAllocator.allocate(jdbcTemplate, batch.size());
+        int[] results = jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                BulkWriter.bind(ps, 1, ids[i], Types.BIGINT);
+                for (int j = 0; j < columns; j++) {
+                    BulkWriter.bind(ps, j + 2, batch.get(i, j), types[j]);
+                }
+            }
+
+            @Override
+            public int getBatchSize() {
+                return batch.size();
+            }
+        });
+        return results.length;
+    }
+}
@@ -0,0 +1,127 @@
+package com.neo.ftpserver.logger;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+
+/**
+ * PostgreSQL COPY: stream cả batch dạng CSV vào bảng tạm (ON COMMIT DELETE ROWS) rồi chuyển sang bảng đích
+ * bằng một câu INSERT ... ON CONFLICT DO NOTHING để giữ insert idempotent theo cột khóa.
+ * <p>
+ * Driver PostgreSQL chỉ có ở scope runtime nên CopyManager được gọi qua reflection.
+ * Bảng đích, sequence và unique index do LogFtp tạo theo DDL PostgreSQL khi DB log là PostgreSQL.
+ */
+final class PostgresCopyWriter implements BulkWriter {
+
+    private final String createStage;
+    private final String copySql;
+    private final String mergeSql;
+
+    PostgresCopyWriter(BulkTable table) {
+        String stage = table.table() + "_stage";
+        String columns = String.join(", ", table.columns());
+        // Khai báo cột tường minh (không có id): LIKE sẽ chép cả NOT NULL của khóa chính id mà COPY không điền
+        StringBuilder definition = new StringBuilder();
+        for (int i = 0; i < table.columns().size(); i++) {
+            if (i > 0) {
+                definition.append(", ");
+            }
+            definition.append(table.columns().get(i)).append(' ').append(pgType(table.types()[i]));
+        }
+        this.createStage = "CREATE TEMP TABLE IF NOT EXISTS " + stage
+                + " (" + definition + ") ON COMMIT DELETE ROWS";
+        this.copySql = "COPY " + stage + " (" + columns + ") FROM STDIN WITH (FORMAT csv)";
+        this.mergeSql = "INSERT INTO " + table.table() + " (" + table.idColumn() + ", " + columns + ")"
+                + " SELECT nextval('" + table.sequence() + "'), " + columns + " FROM " + stage
+                + " ON CONFLICT (" + table.keyColumn() + ") DO NOTHING";
+    }
+
+    private static String pgType(int sqlType) {
+        return switch (sqlType) {
+            case Types.BIGINT -> "BIGINT";
+            case Types.INTEGER -> "INTEGER";
+            case Types.BOOLEAN -> "BOOLEAN";
+            case Types.TIMESTAMP -> "TIMESTAMP";
+            default -> "TEXT";
+        };
+    }
+
+    @Override
+    public int write(JdbcTemplate jdbcTemplate, BatchBuffer batch) {
+        String csv = toCsv(batch);
+        return jdbcTemplate.execute((ConnectionCallback<Integer>) connection -> copy(connection, csv));
+    }
+
+    private int copy(Connection connection, String csv) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(createStage);
+            copyIn(connection, new StringReader(csv));
+            // Số dòng thực sự vào bảng đích, dòng trùng khóa bị ON CONFLICT bỏ qua không tính
+            return statement.executeUpdate(mergeSql);
+        }
+    }
+
+    private void copyIn(Connection connection, Reader data) throws SQLException {
+        try {
+            Class<?> pgConnectionClass = Class.forName("org.postgresql.PGConnection");
+            Object pgConnection = connection.unwrap(pgConnectionClass);
+            Object copyManager = pgConnectionClass.getMethod("getCopyAPI").invoke(pgConnection);
+            Method copyIn = copyManager.getClass().getMethod("copyIn", String.class, Reader.class);
+            copyIn.invoke(copyManager, copySql, data);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            throw new SQLException("COPY failed: " + cause.getMessage(), cause);
+        } catch (ReflectiveOperationException e) {
+            throw new SQLException("PostgreSQL driver does not support COPY: " + e.getMessage(), e);
+        }
+    }
+
+    private static String toCsv(BatchBuffer batch) {
+        int columns = batch.columnCount();
+        StringBuilder sb = new StringBuilder(batch.size() * columns * 16);
+        for (int i = 0; i < batch.size(); i++) {
+            for (int j = 0; j < columns; j++) {
+                if (j > 0) {
+                    sb.append(',');
+                }
+                appendCsv(sb, batch.get(i, j));
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * null → ô rỗng không quote (NULL trong CSV của COPY), chuỗi luôn quote để giữ chuỗi rỗng
+     */
+    private static void appendCsv(StringBuilder sb, Object value) {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            sb.append(value);
+            return;
+        }
+        String text = value.toString();
+        sb.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                sb.append('"');
+            }
+            sb.append(c);
+        }
+        sb.append('"');
+    }
+}
@@ -0,0 +1,45 @@
+package com.neo.ftpserver.logger;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+/**
+ * Lấy trước một block id từ sequence Oracle trong một round-trip và cấp dần cho các batch,
+ * thay cho gọi sequence.nextval trên từng dòng insert
+ */
+final class SequenceBlockAllocator {
+
+    private final String query;
+    private final int blockSize;
+    private long[] block = new long[0];
+    private int next;
+
+    SequenceBlockAllocator(String sequence, int blockSize) {
+        this.blockSize = Math.max(1, blockSize);
+        this.query = "SELECT " + sequence + ".nextval FROM dual CONNECT BY LEVEL <= " + this.blockSize;
+    }
+
+    /**
+     * Cấp count id liên tiếp theo thứ tự cấp (không nhất thiết liền số)
+     */
+    synchronized long[] allocate(JdbcTemplate jdbcTemplate, int count) {
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            if (next == block.length) {
+                refill(jdbcTemplate);
+            }
+            ids[i] = block[next++];
+        }
+        return ids;
+    }
+
+    private void refill(JdbcTemplate jdbcTemplate) {
+        List<Long> values = jdbcTemplate.queryForList(query, Long.class);
+        block = new long[values.size()];
+        for (int i = 0; i < block.length; i++) {
+            block[i] = values.get(i);
+        }
+        next = 0;
+    }
+}
@@ -0,0 +1,186 @@
+package com.neo.ftpserver.metrics;
+
+import com.neo.ftpserver.constans.AuthFailureReason;
+import com.neo.ftpserver.constans.FtpCommand;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metric của chuỗi ftplet: độ trễ theo lệnh, reply code, login/logout, lỗi xác thực, lưu lượng theo account.
+ * Mọi hàm ghi nhận trên luồng lệnh không cấp phát (trừ lần đầu gặp một account mới).
+ */
+@Component
+public class FtpMetrics {
+
+    // Lệnh không nằm trong FtpCommand dồn vào ô cuối
+    private static final int OTHER_COMMAND = FtpCommand.values().length;
+    private static final FtpCommand[] COMMANDS = FtpCommand.values();
+
+    // beforeCommand và afterCommand của cùng một lệnh chạy trên cùng một luồng
+    private static final ThreadLocal<long[]> COMMAND_START = ThreadLocal.withInitial(() -> new long[1]);
+
+    private final LatencyHistogram[] commandLatency = new LatencyHistogram[OTHER_COMMAND + 1];
+    private final LongAdder[] replyCodes = new LongAdder[600];
+    private final LongAdder[] authFailures = new LongAdder[AuthFailureReason.values().length];
+    private final LongAdder loginCount = new LongAdder();
+    private final LongAdder logoutCount = new LongAdder();
+    private final LongAdder disconnectCount = new LongAdder();
+    private final LatencyHistogram uploadDuration = new LatencyHistogram();
+    private final LatencyHistogram downloadDuration = new LatencyHistogram();
+    private final Map<String, AccountTraffic> accountTraffic = new ConcurrentHashMap<>();
+
+    /**
+     * Số byte upload/download của một account
+     */
+    public static final class AccountTraffic {
+        private final LongAdder bytesIn = new LongAdder();
+        private final LongAdder bytesOut = new LongAdder();
+        private final LongAdder uploads = new LongAdder();
+        private final LongAdder downloads = new LongAdder();
+
+        public long getBytesIn() {
+            return bytesIn.sum();
+        }
+
+        public long getBytesOut() {
+            return bytesOut.sum();
+        }
+
+        public long getUploads() {
+            return uploads.sum();
+        }
+
+        public long getDownloads() {
+            return downloads.sum();
+        }
+    }
+
+    public FtpMetrics() {
+        for (int i = 0; i < commandLatency.length; i++) {
+            commandLatency[i] = new LatencyHistogram();
+        }
+        for (int i = 0; i < replyCodes.length; i++) {
+            replyCodes[i] = new LongAdder();
+        }
+        for (int i = 0; i < authFailures.length; i++) {
+            authFailures[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Gọi ở đầu beforeCommand của ftplet đầu tiên
+     */
+    public void commandStarted() {
+        COMMAND_START.get()[0] = System.nanoTime();
+    }
+
+    /**
+     * Gọi ở afterCommand của ftplet cuối cùng: độ trễ từ beforeCommand tới khi lệnh trả reply
+     */
+    public void commandCompleted(String rawCommand, int replyCode) {
+        long[] start = COMMAND_START.get();
+        if (start[0] != 0) {
+            commandLatency[indexOf(rawCommand)].record(System.nanoTime() - start[0]);
+            start[0] = 0;
+        }
+        recordReply(replyCode);
+    }
+
+    /**
+     * Lệnh bị ftplet chặn (SKIP) với reply tự ghi, afterCommand sẽ không chạy
+     */
+    public void commandRejected(int replyCode) {
+        COMMAND_START.get()[0] = 0;
+        recordReply(replyCode);
+    }
+
+    private void recordReply(int replyCode) {
+        if (replyCode > 0 && replyCode < replyCodes.length) {
+            replyCodes[replyCode].increment();
+        }
+    }
+
+    private static int indexOf(String rawCommand) {
+        FtpCommand command = FtpCommand.of(rawCommand);
+        return command != null ? command.ordinal() : OTHER_COMMAND;
+    }
+
+    public void loginSucceeded() {
+        loginCount.increment();
+    }
+
+    public void sessionClosed(boolean loggedIn) {
+        disconnectCount.increment();
+        if (loggedIn) {
+            logoutCount.increment();
+        }
+    }
+
+    public void authFailed(AuthFailureReason reason) {
+        authFailures[reason.ordinal()].increment();
+    }
+
+    public void transferCompleted(String account, boolean upload, long bytes, long durationNanos) {
+        AccountTraffic traffic = accountTraffic.get(account);
+        if (traffic == null) {
+            traffic = accountTraffic.computeIfAbsent(account, k -> new AccountTraffic());
+        }
+        if (upload) {
+            traffic.bytesIn.add(bytes);
+            traffic.uploads.increment();
+            uploadDuration.record(durationNanos);
+        } else {
+            traffic.bytesOut.add(bytes);
+            traffic.downloads.increment();
+            downloadDuration.record(durationNanos);
+        }
+    }
+
+    /**
+     * Ghi các metric của ftplet theo Prometheus text format
+     */
+    public void writeTo(PrometheusWriter writer) {
+        writer.header("ftp_command_duration_seconds", "histogram", "FTP command latency from beforeCommand to reply");
+        for (int i = 0; i < commandLatency.length; i++) {
+            if (commandLatency[i].getCount() > 0) {
+                writer.histogram("ftp_command_duration_seconds", "command",
+                        i == OTHER_COMMAND ? "OTHER" : COMMANDS[i].name(), commandLatency[i]);
+            }
+        }
+        writer.header("ftp_replies_total", "counter", "FTP replies by reply code");
+        for (int code = 100; code < replyCodes.length; code++) {
+            long count = replyCodes[code].sum();
+            if (count > 0) {
+                writer.sample("ftp_replies_total", "code", Integer.toString(code), count);
+            }
+        }
+        writer.header("ftp_auth_failures_total", "counter", "Rejected authentication attempts by reason");
+        for (AuthFailureReason reason : AuthFailureReason.values()) {
+            writer.sample("ftp_auth_failures_total", "reason", reason.name(), authFailures[reason.ordinal()].sum());
+        }
+        writer.header("ftp_logins_total", "counter", "Successful logins").sample("ftp_logins_total", loginCount.sum());
+        writer.header("ftp_disconnects_total", "counter", "Closed FTP sessions").sample("ftp_disconnects_total", disconnectCount.sum());
+        writer.header("ftp_logged_in_sessions", "gauge", "Currently logged-in sessions")
+                .sample("ftp_logged_in_sessions", loginCount.sum() - logoutCount.sum());
+        writer.header("ftp_transfer_duration_seconds", "histogram", "File transfer duration by direction");
+        writer.histogram("ftp_transfer_duration_seconds", "direction", "upload", uploadDuration);
+        writer.histogram("ftp_transfer_duration_seconds", "direction", "download", downloadDuration);
+        writer.header("ftp_account_bytes_total", "counter", "Bytes transferred by account and direction");
+        accountTraffic.forEach((account, traffic) -> {
+            writer.sample("ftp_account_bytes_total", "account", account, "direction", "in", traffic.getBytesIn());
+            writer.sample("ftp_account_bytes_total", "account", account, "direction", "out", traffic.getBytesOut());
+        });
+        writer.header("ftp_account_transfers_total", "counter", "File transfers by account and direction");
+        accountTraffic.forEach((account, traffic) -> {
+            writer.sample("ftp_account_transfers_total", "account", account, "direction", "in", traffic.getUploads());
+            writer.sample("ftp_account_transfers_total", "account", account, "direction", "out", traffic.getDownloads());
+        });
+    }
+
+    public AccountTraffic getAccountTraffic(String account) {
+        return accountTraffic.get(account);
+    }
+}
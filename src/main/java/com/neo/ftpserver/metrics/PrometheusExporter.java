@@ -0,0 +1,247 @@
+package com.neo.ftpserver.metrics;
+
+import com.neo.ftpserver.cache.CacheSwapService;
+import com.neo.ftpserver.ftp.CustomUserManager;
+import com.neo.ftpserver.ftp.DirectoryListingCache;
+import com.neo.ftpserver.ftp.PassivePortAllocator;
+import com.neo.ftpserver.ftp.TransferThrottle;
+import com.neo.ftpserver.ftp.FtpReloadService;
+import com.neo.ftpserver.ftp.FtpServerService;
+import com.neo.ftpserver.ftp.InFlightTransfers;
+import com.neo.ftpserver.ftp.TunedNioListener;
+import com.neo.ftpserver.logger.AbstractJobProcessLog;
+import com.neo.ftpserver.permission.CredentialVerifier;
+import com.neo.ftpserver.permission.LoginRateLimiter;
+import com.neo.ftpserver.service.FtpAuditService;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ftpserver.listener.Listener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+/**
+ * Endpoint HTTP dạng Prometheus text (mặc định :9102/metrics) dựng trên com.sun.net.httpserver của JDK.
+ * Metric của ftplet lấy từ FtpMetrics, các thành phần còn lại đọc từ getter thống kê sẵn có lúc scrape.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PrometheusExporter {
+
+    @Value("${metrics.enabled:true}")
+    private boolean enabled;
+
+    // Endpoint không xác thực và lộ tên account/bộ đếm ban → mặc định chỉ nghe loopback
+    @Value("${metrics.bind-address:127.0.0.1}")
+    private String bindAddress;
+
+    @Value("${metrics.port:9102}")
+    private int port;
+
+    @Value("${metrics.path:/metrics}")
+    private String path;
+
+    private final FtpMetrics ftpMetrics;
+    private final TlsHandshakeMetrics tlsMetrics;
+    private final FtpServerService ftpServerService;
+    private final FtpReloadService reloadService;
+    private final InFlightTransfers inFlightTransfers;
+    private final List<CacheSwapService<?>> caches;
+    private final List<AbstractJobProcessLog> loaders;
+    private final CustomUserManager userManager;
+    private final PassivePortAllocator portAllocator;
+    private final DirectoryListingCache listingCache;
+    private final TransferThrottle transferThrottle;
+    private final FtpAuditService auditService;
+    private final CredentialVerifier credentialVerifier;
+    private final LoginRateLimiter loginRateLimiter;
+
+    private HttpServer server;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            server = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+            server.createContext(path, this::handle);
+            server.setExecutor(Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "metrics-http");
+                thread.setDaemon(true);
+                return thread;
+            }));
+            server.start();
+            log.info(">> Prometheus metrics exposed on {}:{}{}", bindAddress, port, path);
+        } catch (IOException e) {
+            // Không có metrics cũng không được làm dừng FTP server
+            log.error(">> Cannot start metrics endpoint on {}:{}", bindAddress, port, e);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    /**
+     * Dựng toàn bộ nội dung trả về cho một lần scrape
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(16 * 1024);
+        PrometheusWriter writer = new PrometheusWriter(out);
+        ftpMetrics.writeTo(writer);
+        tlsMetrics.writeTo(writer);
+        writeListeners(writer);
+        writeCaches(writer);
+        writeFtpComponents(writer);
+        writeAudit(writer);
+        writeLoaders(writer);
+        return out.toString();
+    }
+
+    private void writeListeners(PrometheusWriter writer) {
+        writer.header("ftp_sessions_active", "gauge", "Open control connections by listener");
+        // Listener hiện hành của server (có thể đã được FtpReloadService thay)
+        for (Map.Entry<String, Listener> entry : ftpServerService.getListeners().entrySet()) {
+            if (entry.getValue() instanceof TunedNioListener listener) {
+                writer.sample("ftp_sessions_active", "listener", entry.getKey(), listener.getActiveSessionCount());
+            }
+        }
+        writer.header("ftp_reloads_total", "counter", "Keystore reloads, listener rebinds and failed reloads");
+        writer.sample("ftp_reloads_total", "type", "ssl", reloadService.getSslReloads());
+        writer.sample("ftp_reloads_total", "type", "listener", reloadService.getListenerRebinds());
+        writer.sample("ftp_reloads_total", "type", "failed", reloadService.getFailedReloads());
+        writer.header("ftp_listeners_draining", "gauge", "Replaced listeners still serving their existing sessions")
+                .sample("ftp_listeners_draining", reloadService.getDrainingListeners());
+        writer.header("ftp_transfers_in_flight", "gauge", "File transfers with an open data stream")
+                .sample("ftp_transfers_in_flight", inFlightTransfers.getActiveCount());
+        writer.header("ftp_transfers_aborted_total", "counter", "Transfers cut off by shutdown after the drain timeout")
+                .sample("ftp_transfers_aborted_total", inFlightTransfers.getAbortedCount());
+    }
+
+    private void writeCaches(PrometheusWriter writer) {
+        writer.header("cache_refresh_duration_seconds", "histogram", "Cache refresh duration (full and delta)");
+        for (CacheSwapService<?> cache : caches) {
+            writer.histogram("cache_refresh_duration_seconds", "cache", beanName(cache), cache.getRefreshDurations());
+        }
+        writer.header("cache_refresh_total", "counter", "Cache refreshes by type");
+        for (CacheSwapService<?> cache : caches) {
+            String name = beanName(cache);
+            writer.sample("cache_refresh_total", "cache", name, "type", "full", cache.getFullRefreshCount());
+            writer.sample("cache_refresh_total", "cache", name, "type", "delta", cache.getDeltaRefreshCount());
+            writer.sample("cache_refresh_total", "cache", name, "type", "failed", cache.getFailedRefreshCount());
+        }
+        writer.header("cache_size", "gauge", "Entries in cache");
+        for (CacheSwapService<?> cache : caches) {
+            writer.sample("cache_size", "cache", beanName(cache), cache.getCacheSize());
+        }
+        writer.header("ftp_user_cache_hits_total", "counter", "User lookups served from cache")
+                .sample("ftp_user_cache_hits_total", userManager.getUserCacheHits());
+        writer.header("ftp_user_cache_misses_total", "counter", "User lookups that rebuilt the User")
+                .sample("ftp_user_cache_misses_total", userManager.getUserCacheMisses());
+        writer.header("ftp_credential_cache_requests_total", "counter", "Verified-credential cache lookups for slow password schemes");
+        writer.sample("ftp_credential_cache_requests_total", "result", "hit", credentialVerifier.getCacheHits());
+        writer.sample("ftp_credential_cache_requests_total", "result", "miss", credentialVerifier.getCacheMisses());
+        writer.header("ftp_credential_failures_total", "counter", "Password verifications that did not match")
+                .sample("ftp_credential_failures_total", credentialVerifier.getFailures());
+        writer.header("ftp_bans_total", "counter", "Bans issued by the login rate limiter");
+        writer.sample("ftp_bans_total", "kind", "ip", loginRateLimiter.getIpBanCount());
+        writer.sample("ftp_bans_total", "kind", "account", loginRateLimiter.getAccountBanCount());
+        writer.header("ftp_bans_active", "gauge", "IPs and accounts currently banned");
+        writer.sample("ftp_bans_active", "kind", "ip", loginRateLimiter.getActiveIpBans());
+        writer.sample("ftp_bans_active", "kind", "account", loginRateLimiter.getActiveAccountBans());
+        writer.header("ftp_limiter_rejected_total", "counter", "Connections and logins rejected while banned");
+        writer.sample("ftp_limiter_rejected_total", "stage", "connect", loginRateLimiter.getRejectedConnections());
+        writer.sample("ftp_limiter_rejected_total", "stage", "login", loginRateLimiter.getRejectedLogins());
+        writer.header("ftp_limiter_entries", "gauge", "IPs and accounts tracked by the login rate limiter")
+                .sample("ftp_limiter_entries", loginRateLimiter.getTrackedEntries());
+        writer.header("ftp_limiter_evictions_total", "counter", "Limiter entries evicted by the LRU bound")
+                .sample("ftp_limiter_evictions_total", loginRateLimiter.getEvictions());
+    }
+
+    private static String beanName(Object bean) {
+        // Bean có thể là proxy CGLIB, lấy tên class gốc
+        String name = bean.getClass().getSimpleName();
+        int proxy = name.indexOf("$$");
+        return proxy > 0 ? name.substring(0, proxy) : name;
+    }
+
+    private void writeFtpComponents(PrometheusWriter writer) {
+        writer.header("ftp_passive_ports_in_use", "gauge", "Passive ports currently allocated")
+                .sample("ftp_passive_ports_in_use", portAllocator.getInUse());
+        writer.header("ftp_passive_ports_capacity", "gauge", "Configured passive ports")
+                .sample("ftp_passive_ports_capacity", portAllocator.getCapacity());
+        writer.header("ftp_passive_port_exhausted_total", "counter", "Passive port requests that found the range exhausted")
+                .sample("ftp_passive_port_exhausted_total", portAllocator.getExhaustedCount());
+        writer.header("ftp_passive_port_wait_seconds_total", "counter", "Total time spent waiting for a passive port")
+                .sample("ftp_passive_port_wait_seconds_total", portAllocator.getTotalWaitMillis() / 1000.0);
+        writer.header("ftp_listing_cache_requests_total", "counter", "Directory listing cache lookups");
+        writer.sample("ftp_listing_cache_requests_total", "result", "hit", listingCache.getHits());
+        writer.sample("ftp_listing_cache_requests_total", "result", "miss", listingCache.getMisses());
+        writer.header("ftp_listing_cache_invalidations_total", "counter", "Directory listing cache invalidations")
+                .sample("ftp_listing_cache_invalidations_total", listingCache.getInvalidations());
+        writer.header("ftp_throttle_events_total", "counter", "Stream operations delayed by bandwidth shaping")
+                .sample("ftp_throttle_events_total", transferThrottle.getThrottleEvents());
+        writer.header("ftp_throttled_seconds_total", "counter", "Total delay imposed by bandwidth shaping")
+                .sample("ftp_throttled_seconds_total", transferThrottle.getThrottledMillis() / 1000.0);
+    }
+
+    private void writeAudit(PrometheusWriter writer) {
+        writer.header("audit_events_total", "counter", "Audit events by outcome");
+        writer.sample("audit_events_total", "result", "published", auditService.getPublishedCount());
+        writer.sample("audit_events_total", "result", "written", auditService.getWrittenCount());
+        writer.sample("audit_events_total", "result", "direct", auditService.getDirectWrittenCount());
+        writer.sample("audit_events_total", "result", "spooled", auditService.getSpooledCount());
+        writer.sample("audit_events_total", "result", "dropped", auditService.getDroppedCount());
+        writer.sample("audit_events_total", "result", "spilled", auditService.getSpilledCount());
+        writer.sample("audit_events_total", "result", "failed", auditService.getFailedCount());
+        writer.header("audit_queue_size", "gauge", "Audit events queued in the ring buffer")
+                .sample("audit_queue_size", auditService.getQueuedCount());
+        writer.header("audit_direct_suspended", "gauge", "1 if direct audit inserts are suspended")
+                .sample("audit_direct_suspended", auditService.isDirectSuspended() ? 1 : 0);
+    }
+
+    private void writeLoaders(PrometheusWriter writer) {
+        writer.header("log_loader_rows_total", "counter", "Log rows loaded into the database");
+        loaders.forEach(loader -> writer.sample("log_loader_rows_total", "job", beanName(loader), loader.getTotalRows()));
+        writer.header("log_loader_files_total", "counter", "Log files processed");
+        loaders.forEach(loader -> writer.sample("log_loader_files_total", "job", beanName(loader), loader.getTotalFiles()));
+        writer.header("log_loader_backlog_files", "gauge", "Log files waiting to be processed");
+        loaders.forEach(loader -> writer.sample("log_loader_backlog_files", "job", beanName(loader), loader.getBacklogSize()));
+        writer.header("log_loader_batch_size", "gauge", "Current adaptive batch size");
+        loaders.forEach(loader -> writer.sample("log_loader_batch_size", "job", beanName(loader), loader.getCurrentBatchSize()));
+        writer.header("log_loader_commit_p99_seconds", "gauge", "p99 of recent commit latencies");
+        loaders.forEach(loader -> writer.sample("log_loader_commit_p99_seconds", "job", beanName(loader),
+                loader.getCommitLatencyP99Ms() / 1000.0));
+    }
+}
@@ -0,0 +1,99 @@
+package com.neo.ftpserver.metrics;
+
+/**
+ * Ghi metric theo Prometheus text exposition format 0.0.4 vào StringBuilder
+ */
+public final class PrometheusWriter {
+
+    private final StringBuilder out;
+
+    public PrometheusWriter(StringBuilder out) {
+        this.out = out;
+    }
+
+    public PrometheusWriter header(String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        return this;
+    }
+
+    public PrometheusWriter sample(String name, double value) {
+        out.append(name).append(' ');
+        appendValue(value);
+        return this;
+    }
+
+    public PrometheusWriter sample(String name, String label, String labelValue, double value) {
+        out.append(name).append('{');
+        appendLabel(label, labelValue);
+        out.append("} ");
+        appendValue(value);
+        return this;
+    }
+
+    public PrometheusWriter sample(String name, String label1, String value1, String label2, String value2, double value) {
+        out.append(name).append('{');
+        appendLabel(label1, value1);
+        out.append(',');
+        appendLabel(label2, value2);
+        out.append("} ");
+        appendValue(value);
+        return this;
+    }
+
+    /**
+     * Ghi các dòng _bucket (cộng dồn), _sum, _count của histogram; label có thể null
+     */
+    public PrometheusWriter histogram(String name, String label, String labelValue, LatencyHistogram histogram) {
+        long cumulative = 0;
+        for (int i = 0; i < LatencyHistogram.BOUNDS_SECONDS.length; i++) {
+            cumulative += histogram.bucketCount(i);
+            out.append(name).append("_bucket{");
+            if (label != null) {
+                appendLabel(label, labelValue);
+                out.append(',');
+            }
+            out.append("le=\"").append(LatencyHistogram.BOUND_LABELS[i]).append("\"} ").append(cumulative).append('\n');
+        }
+        // count đọc sau bucket nên luôn >= tổng bucket dù có mẫu ghi xen giữa
+        long count = Math.max(cumulative, histogram.getCount());
+        out.append(name).append("_bucket{");
+        if (label != null) {
+            appendLabel(label, labelValue);
+            out.append(',');
+        }
+        out.append("le=\"+Inf\"} ").append(count).append('\n');
+        if (label != null) {
+            sample(name + "_sum", label, labelValue, histogram.getSumSeconds());
+            sample(name + "_count", label, labelValue, count);
+        } else {
+            sample(name + "_sum", histogram.getSumSeconds());
+            sample(name + "_count", count);
+        }
+        return this;
+    }
+
+    private void appendLabel(String label, String value) {
+        out.append(label).append("=\"");
+        String v = value == null ? "" : value;
+        for (int i = 0; i < v.length(); i++) {
+            char c = v.charAt(i);
+            switch (c) {
+                case '\\' -> out.append("\\\\");
+                case '"' -> out.append("\\\"");
+                case '\n' -> out.append("\\n");
+                default -> out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    private void appendValue(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+}
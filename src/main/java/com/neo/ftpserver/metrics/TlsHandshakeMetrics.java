@@ -0,0 +1,68 @@
+package com.neo.ftpserver.metrics;
+
+import com.neo.ftpserver.constans.TlsChannel;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Số handshake TLS đầy đủ/resume, lỗi và độ trễ theo kênh control/data.
+ * Tỷ lệ resume = resumed / (full + resumed), đo hiệu quả của session cache.
+ */
+@Component
+public class TlsHandshakeMetrics {
+
+    private static final TlsChannel[] CHANNELS = TlsChannel.values();
+
+    private final LongAdder[] fullHandshakes = new LongAdder[CHANNELS.length];
+    private final LongAdder[] resumedHandshakes = new LongAdder[CHANNELS.length];
+    private final LongAdder[] failedHandshakes = new LongAdder[CHANNELS.length];
+    private final LatencyHistogram[] durations = new LatencyHistogram[CHANNELS.length];
+
+    public TlsHandshakeMetrics() {
+        for (int i = 0; i < CHANNELS.length; i++) {
+            fullHandshakes[i] = new LongAdder();
+            resumedHandshakes[i] = new LongAdder();
+            failedHandshakes[i] = new LongAdder();
+            durations[i] = new LatencyHistogram();
+        }
+    }
+
+    public void handshakeCompleted(TlsChannel channel, boolean resumed, long durationNanos) {
+        (resumed ? resumedHandshakes : fullHandshakes)[channel.ordinal()].increment();
+        durations[channel.ordinal()].record(durationNanos);
+    }
+
+    public void handshakeFailed(TlsChannel channel) {
+        failedHandshakes[channel.ordinal()].increment();
+    }
+
+    public long getFullHandshakes(TlsChannel channel) {
+        return fullHandshakes[channel.ordinal()].sum();
+    }
+
+    public long getResumedHandshakes(TlsChannel channel) {
+        return resumedHandshakes[channel.ordinal()].sum();
+    }
+
+    public long getFailedHandshakes(TlsChannel channel) {
+        return failedHandshakes[channel.ordinal()].sum();
+    }
+
+    public void writeTo(PrometheusWriter writer) {
+        writer.header("ftp_tls_handshakes_total", "counter", "Completed TLS handshakes by channel and type");
+        for (TlsChannel channel : CHANNELS) {
+            String name = channel.name().toLowerCase();
+            writer.sample("ftp_tls_handshakes_total", "channel", name, "type", "full", getFullHandshakes(channel));
+            writer.sample("ftp_tls_handshakes_total", "channel", name, "type", "resumed", getResumedHandshakes(channel));
+        }
+        writer.header("ftp_tls_handshake_failures_total", "counter", "TLS handshakes that failed or were aborted");
+        for (TlsChannel channel : CHANNELS) {
+            writer.sample("ftp_tls_handshake_failures_total", "channel", channel.name().toLowerCase(), getFailedHandshakes(channel));
+        }
+        writer.header("ftp_tls_handshake_duration_seconds", "histogram", "TLS handshake latency by channel");
+        for (TlsChannel channel : CHANNELS) {
+            writer.histogram("ftp_tls_handshake_duration_seconds", "channel", channel.name().toLowerCase(), durations[channel.ordinal()]);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.neo.ftpserver.permission;
+
+import com.neo.ftpserver.constans.FtpCommand;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.net.InetAddress;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Ảnh chụp quyền của một account, được biên dịch sẵn mỗi lần cache làm mới.
+ * Bất biến sau khi tạo nên đọc được từ nhiều session mà không cần khóa.
+ */
+@Getter
+@Builder
+public final class AccountAuthorization {
+    private final String account;
+    private final boolean enabled;
+    private final String roleAccess;
+    private final boolean writeEnable;
+    // Lệnh chuẩn bị chặn
+    private final EnumSet<FtpCommand> deniedCommands;
+    // Lệnh không thuộc FtpCommand nhưng vẫn được khai báo trong cmdsDenied
+    private final Set<String> deniedOtherCommands;
+    private final IpMatcher ipMatcher;
+    private final boolean ftpAllowed;
+    private final boolean ftpsAllowed;
+    private final String homeDirectory;
+    // Mật khẩu đã giải mã (digest byte/salt), CustomUserManager.authenticate kiểm tra qua CredentialVerifier
+    private final Credential credential;
+    // Giới hạn đã gộp account → role, 0 = không giới hạn
+    private final long maxUploadRate;
+    private final long maxDownloadRate;
+    private final int maxLogins;
+    private final int maxLoginsPerIp;
+
+    public boolean isCommandDenied(FtpCommand command, String rawCommand) {
+        if (command != null) {
+            return deniedCommands.contains(command);
+        }
+        return !deniedOtherCommands.isEmpty() && deniedOtherCommands.contains(rawCommand);
+    }
+
+    public boolean isConnectionAllowed(boolean secure) {
+        return secure ? ftpsAllowed : ftpAllowed;
+    }
+
+    public boolean isIpAllowed(String clientIp) {
+        return ipMatcher.matches(clientIp);
+    }
+
+    public boolean isIpAllowed(InetAddress clientAddress) {
+        return ipMatcher.matches(clientAddress);
+    }
+}
@@ -1,22 +1,24 @@
 package com.neo.ftpserver.permission;
 
+import com.neo.ftpserver.constans.AuthFailureReason;
 import com.neo.ftpserver.constans.FtpCommandGroup;
+import com.neo.ftpserver.ftp.TransferRecord;
+import com.neo.ftpserver.ftp.TransferTracker;
+import com.neo.ftpserver.metrics.FtpMetrics;
 import com.neo.ftpserver.service.FtpAuditService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.ftpserver.ftplet.*;
 import org.springframework.stereotype.Component;
 
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class AuditLogFtplet extends DefaultFtplet {
 
+    // Publish chỉ đẩy vào ring buffer, gọi thẳng trên luồng lệnh để giữ thứ tự LOGIN → lệnh → LOGOUT
     private final FtpAuditService auditService;
+    private final FtpMetrics metrics;
 
     private String getFilePath(FtpSession session, FtpRequest request) {
         try {
@@ -80,9 +82,11 @@ public class AuditLogFtplet extends DefaultFtplet {
             String username = getUsername(session);
             String ip = getClientIp(session);
             boolean secure = isSecure(session);
+            long eventTime = System.currentTimeMillis();
+            metrics.loginSucceeded();
 
             log.info("[LOGIN] User={} IP={} Secure={}", username, ip, secure);
-            auditService.logEvent(username, "LOGIN", null, null, ip, secure);
+            auditService.logEvent(username, "LOGIN", null, null, ip, secure, eventTime);
         } catch (Exception e) {
             log.error("Error logging login event", e);
         }
@@ -95,30 +99,67 @@ public class AuditLogFtplet extends DefaultFtplet {
             String username = getUsername(session);
             String ip = getClientIp(session);
             boolean secure = isSecure(session);
+            long eventTime = System.currentTimeMillis();
+            metrics.sessionClosed(session.getUser() != null);
 
             log.info("[LOGOUT] User={} IP={}", username, ip);
-            auditService.logEvent(username, "LOGOUT", null, null, ip, secure);
+            auditService.logEvent(username, "LOGOUT", null, null, ip, secure, eventTime);
         } catch (Exception e) {
             log.error("Error logging logout event", e);
         }
         return FtpletResult.DEFAULT;
     }
 
+    @Override
+    public FtpletResult beforeCommand(FtpSession session, FtpRequest request) {
+        switch (request.getCommand().toUpperCase()) {
+            case "STOR", "STOU", "APPE", "RETR" ->
+                    TransferTracker.bindSession(session.getFileSystemView(), getClientIp(session), isSecure(session));
+            default -> {
+            }
+        }
+        return FtpletResult.DEFAULT;
+    }
+
     @Override
     public FtpletResult afterCommand(FtpSession session, FtpRequest request, FtpReply reply) {
+        int replyCode = reply != null ? reply.getCode() : 0;
+        metrics.commandCompleted(request.getCommand(), replyCode);
         String cmd = request.getCommand().toUpperCase();
+        if (replyCode == 530 && "PASS".equals(cmd)) {
+            metrics.authFailed(AuthFailureReason.BAD_PASSWORD);
+        }
         String username = getUsername(session);
         String ip = getClientIp(session);
         boolean secure = isSecure(session);
-        log.info("#afterCommand: {} from {}", cmd, ip);
+        long eventTime = System.currentTimeMillis();
+        log.debug("#afterCommand: {} from {}", cmd, ip);
+        FtpCommandGroup group = classifyCommand(cmd);
+        if (group == FtpCommandGroup.UNKNOWN) {
+            log.debug("[UNKNOWN_CMD] {} {} IP={}", username, cmd, ip);
+            return FtpletResult.DEFAULT;
+        }
+        // Chốt đường dẫn theo working directory hiện tại trước khi lệnh CWD tiếp theo kịp đổi nó
+        String path = group == FtpCommandGroup.FILE || group == FtpCommandGroup.DIRECTORY ? getFilePath(session, request) : null;
+        String argument = request.getArgument();
+        // Số byte/thời gian truyền do stream dữ liệu ghi lại khi đóng, không cần stat file
+        TransferRecord transfer = group == FtpCommandGroup.FILE ? takeTransfer(session) : null;
+        if (transfer != null && transfer.aborted()) {
+            // Bị cắt khi dừng server, đã audit là ABORT_* → không ghi sự kiện thứ hai cho cùng lần truyền
+            log.debug("[FILE] {} {} {} aborted on shutdown, already audited", username, cmd, transfer.path());
+            return FtpletResult.DEFAULT;
+        }
+        if (transfer != null) {
+            metrics.transferCompleted(username, transfer.upload(), transfer.bytes(), transfer.durationNanos());
+        }
         try {
-            FtpCommandGroup group = classifyCommand(cmd);
             switch (group) {
-                case FILE -> handleFileCommand(cmd, session, request, username, ip, secure);
-                case DIRECTORY -> handleDirectoryCommand(cmd, session, request, username, ip, secure);
-                case CONNECTION -> handleConnectionCommand(cmd, username, ip, secure);
-                case SYSTEM -> handleSystemCommand(cmd, request, username, ip, secure);
-                default -> log.debug("[UNKNOWN_CMD] {} {} IP={}", username, cmd, ip);
+                case FILE -> handleFileCommand(cmd, path, transfer, replyCode, username, ip, secure, eventTime);
+                case DIRECTORY -> handleDirectoryCommand(cmd, path, username, ip, secure, eventTime);
+                case CONNECTION -> handleConnectionCommand(cmd, username, ip, secure, eventTime);
+                case SYSTEM -> handleSystemCommand(cmd, argument, username, ip, secure, eventTime);
+                default -> {
+                }
             }
         } catch (Exception e) {
             log.error("Error in afterCommand for cmd={}", cmd, e);
@@ -128,7 +169,7 @@ public class AuditLogFtplet extends DefaultFtplet {
 
     public FtpCommandGroup classifyCommand(String cmd) {
         return switch (cmd.toUpperCase()) {
-            case "STOR", "APPE", "RETR", "DELE", "RNFR", "RNTO", "SIZE", "MDTM" -> FtpCommandGroup.FILE;
+            case "STOR", "STOU", "APPE", "RETR", "DELE", "RNFR", "RNTO", "SIZE", "MDTM" -> FtpCommandGroup.FILE;
             case "MKD", "RMD", "CWD", "PWD", "LIST", "NLST" -> FtpCommandGroup.DIRECTORY;
 //            case "USER", "PASS", "QUIT", "PORT", "PASV", "AUTH", "PBSZ", "PROT" -> FtpCommandGroup.CONNECTION;
             case "SITE", "STAT", "FEAT", "OPTS" -> FtpCommandGroup.SYSTEM;
@@ -136,125 +177,44 @@ public class AuditLogFtplet extends DefaultFtplet {
         };
     }
 
-    public void handleFileCommand(String cmd, FtpSession session, FtpRequest request, String username, String ip, boolean secure) {
-        String filePath = getFilePath(session, request);
-        Long size = (cmd.equals("STOR") || cmd.equals("APPE")) ? getFileSize(session, request) : null;
-        log.info("[FILE] {} {} Size={} IP={}", username, filePath, size, ip);
-        auditService.logEvent(username, cmd, filePath, size, ip, secure);
+    public void handleFileCommand(String cmd, String filePath, TransferRecord transfer, int replyCode, String username,
+                                  String ip, boolean secure, long eventTime) {
+        // Lệnh lỗi (550, 425 trước khi mở stream, 426/451/551 khi truyền bị cắt): ghi action riêng để không lẫn với lệnh thành công
+        String action = replyCode >= 400 ? cmd + "_FAILED" : cmd;
+        if (transfer == null) {
+            log.info("[FILE] {} {} {} Reply={} IP={}", username, action, filePath, replyCode, ip);
+            auditService.logEvent(username, action, filePath, null, ip, secure, eventTime);
+            return;
+        }
+        // Truyền bị hủy/lỗi: số byte là phần đã truyền được
+        log.info("[FILE] {} {} {} Reply={} Bytes={} Duration={}ms Rate={}B/s IP={}", username, action, transfer.path(), replyCode,
+                transfer.bytes(), transfer.durationMillis(), transfer.bytesPerSecond(), ip);
+        auditService.logTransfer(username, action, transfer.path(), transfer.bytes(), transfer.durationMillis(), ip, secure, eventTime);
     }
 
-    public void handleDirectoryCommand(String cmd, FtpSession session, FtpRequest request, String username, String ip, boolean secure) {
-        String dirPath = getFilePath(session, request); // dùng chung với filePath
+    public void handleDirectoryCommand(String cmd, String dirPath, String username, String ip, boolean secure, long eventTime) {
         log.info("[DIR] {} {} IP={}", username, dirPath, ip);
-        auditService.logEvent(username, cmd, dirPath, null, ip, secure);
+        auditService.logEvent(username, cmd, dirPath, null, ip, secure, eventTime);
     }
 
-    public void handleConnectionCommand(String cmd, String username, String ip, boolean secure) {
+    public void handleConnectionCommand(String cmd, String username, String ip, boolean secure, long eventTime) {
         if (!cmd.equals("QUIT")) { // QUIT đã xử lý trong onDisconnect
             log.info("[CONNECTION] {} {} IP={} Secure={}", username, cmd, ip, secure);
-            auditService.logEvent(username, cmd, null, null, ip, secure);
+            auditService.logEvent(username, cmd, null, null, ip, secure, eventTime);
         }
     }
 
-    public void handleSystemCommand(String cmd, FtpRequest request, String username, String ip, boolean secure) {
-        String arg = request.getArgument();
+    public void handleSystemCommand(String cmd, String arg, String username, String ip, boolean secure, long eventTime) {
         log.info("[SYSTEM] {} {} {} IP={}", username, cmd, arg, ip);
-        auditService.logEvent(username, cmd + "_" + arg, null, null, ip, secure);
+        auditService.logEvent(username, cmd + "_" + arg, null, null, ip, secure, eventTime);
     }
 
-    private Long getFileSize(FtpSession session, FtpRequest request) {
-        String argument = request.getArgument();
-
+    private TransferRecord takeTransfer(FtpSession session) {
         try {
-            log.debug("=== Getting file size for argument: {} ===", argument);
-
-            // Cách 1: Lấy từ FtpFile API
-            FtpFile file = session.getFileSystemView().getFile(argument);
-            log.debug("FtpFile obtained: {}", file != null ? "yes" : "no");
-
-            if (file != null) {
-                log.debug("File exists: {}", file.doesExist());
-                log.debug("File absolute path: {}", file.getAbsolutePath());
-                log.debug("File is file: {}", file.isFile());
-                log.debug("File is readable: {}", file.isReadable());
-
-                if (file.doesExist()) {
-                    long size = file.getSize();
-                    log.debug("File size from FtpFile API: {} bytes", size);
-                    if (size > 0) {
-                        log.debug("Got size from FtpFile API: {} bytes", size);
-                        return size;
-                    }
-                }
-
-                // Cách 2: Lấy từ physical path (nếu FtpFile không có size)
-                String physicalPath = file.getAbsolutePath();
-                log.debug("Trying physical path: {}", physicalPath);
-
-                if (physicalPath != null) {
-                    Path path = Paths.get(physicalPath);
-                    log.debug("Physical path exists: {}", Files.exists(path));
-                    log.debug("Physical path is file: {}", Files.isRegularFile(path));
-
-                    if (Files.exists(path)) {
-                        long size = Files.size(path);
-                        log.debug("Got size from physical file: {} bytes", size);
-                        return size;
-                    }
-                }
-            }
-
-            // Cách 3: Thử với working directory + argument
-            FtpFile workingDir = session.getFileSystemView().getWorkingDirectory();
-            String workingPath = workingDir.getAbsolutePath();
-            log.debug("Working directory: {}", workingPath);
-
-            String fullPath = workingPath.endsWith("/")
-                    ? workingPath + argument
-                    : workingPath + "/" + argument;
-            log.debug("Trying full path: {}", fullPath);
-
-            Path path = Paths.get(fullPath);
-            if (Files.exists(path)) {
-                long size = Files.size(path);
-                log.debug("Got size from full path: {} bytes", size);
-                return size;
-            }
-
-            // Cách 4: Thử với delay (file có thể chưa flush hoặc đang bị modify bởi MFMT)
-            log.debug("Waiting 200ms for file to be flushed...");
-            Thread.sleep(200);
-
-            file = session.getFileSystemView().getFile(argument);
-            if (file != null && file.doesExist()) {
-                long size = file.getSize();
-                if (size > 0) {
-                    log.debug("Got size after retry: {} bytes", size);
-                    return size;
-                }
-
-                // Thử lại với physical path
-                String physicalPath = file.getAbsolutePath();
-                if (physicalPath != null) {
-                    Path retryPath = Paths.get(physicalPath);
-                    if (Files.exists(retryPath)) {
-                        size = Files.size(retryPath);
-                        log.debug("Got size from physical file after retry: {} bytes", size);
-                        return size;
-                    }
-                }
-            }
-
-            log.warn("Cannot get file size for: {} after all attempts", argument);
-            return null;
-
-        } catch (InterruptedException ie) {
-            Thread.currentThread().interrupt();
-            log.warn("Interrupted while getting file size", ie);
-            return null;
+            return TransferTracker.takeLast(session.getFileSystemView());
         } catch (Exception e) {
-            log.error("Error getting file size for: {}", argument, e);
+            log.error("Error getting transfer record", e);
             return null;
         }
     }
-}
\ No newline at end of file
+}
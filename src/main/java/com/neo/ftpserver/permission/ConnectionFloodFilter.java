@@ -0,0 +1,27 @@
+package com.neo.ftpserver.permission;
+
+import org.apache.ftpserver.ipfilter.SessionFilter;
+import org.apache.mina.core.session.IoSession;
+
+import java.net.InetSocketAddress;
+
+/**
+ * SessionFilter của listener: từ chối kết nối từ IP đang bị cấm hoặc mở kết nối quá nhanh
+ * ngay ở sessionCreated, trước handshake TLS và trước khi chiếm luồng xử lý lệnh
+ */
+public class ConnectionFloodFilter implements SessionFilter {
+
+    private final LoginRateLimiter limiter;
+
+    public ConnectionFloodFilter(LoginRateLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    @Override
+    public boolean accept(IoSession session) {
+        if (session.getRemoteAddress() instanceof InetSocketAddress address && address.getAddress() != null) {
+            return limiter.tryConnect(address.getAddress().getHostAddress());
+        }
+        return true;
+    }
+}
@@ -0,0 +1,154 @@
+package com.neo.ftpserver.permission;
+
+import com.neo.ftpserver.constans.PasswordScheme;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Objects;
+
+/**
+ * Mật khẩu đã giải mã sẵn của account (digest dạng byte, salt, số vòng lặp), biên dịch cùng AccountAuthorization.
+ * Bất biến; hai Credential bằng nhau khi chuỗi lưu trong DB giống nhau.
+ */
+public final class Credential {
+
+    private static final String SHA256_PREFIX = "{SHA256}";
+    private static final String PBKDF2_PREFIX = "pbkdf2_sha256$";
+    private static final String BCRYPT_ALPHABET = "./ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final PasswordScheme scheme;
+    private final String encoded;
+    private final byte[] hash;
+    private final byte[] salt;
+    private final int iterations;
+
+    private Credential(PasswordScheme scheme, String encoded, byte[] hash, byte[] salt, int iterations) {
+        this.scheme = scheme;
+        this.encoded = encoded;
+        this.hash = hash;
+        this.salt = salt;
+        this.iterations = iterations;
+    }
+
+    /**
+     * Nhận diện scheme và giải mã chuỗi mật khẩu lưu trong DB; định dạng lạ trả về UNSUPPORTED
+     */
+    public static Credential parse(String stored) {
+        if (stored == null || stored.isBlank()) {
+            return unsupported(stored);
+        }
+        String value = stored.trim();
+        try {
+            if (value.startsWith(SHA256_PREFIX)) {
+                value = value.substring(SHA256_PREFIX.length());
+            }
+            if (value.length() == 64 && isHex(value)) {
+                return new Credential(PasswordScheme.SHA256, stored, HexFormat.of().parseHex(value), null, 0);
+            }
+            if (value.startsWith(PBKDF2_PREFIX)) {
+                // pbkdf2_sha256$<iterations>$<salt>$<hash base64> (cùng định dạng Django)
+                String[] parts = value.split("\\$");
+                if (parts.length == 4) {
+                    return new Credential(PasswordScheme.PBKDF2_SHA256, stored, Base64.getDecoder().decode(parts[3]),
+                            parts[2].getBytes(StandardCharsets.UTF_8), Integer.parseInt(parts[1]));
+                }
+            }
+            if (value.startsWith("$2a$") || value.startsWith("$2b$") || value.startsWith("$2y$")) {
+                return new Credential(PasswordScheme.BCRYPT, stored, null, null, 0);
+            }
+        } catch (IllegalArgumentException e) {
+            // Base64/hex/số vòng lặp hỏng → coi như không hỗ trợ
+        }
+        return unsupported(stored);
+    }
+
+    /**
+     * Credential giả cùng scheme và chi phí (số vòng PBKDF2 + độ dài hash, cost bcrypt) với template,
+     * salt/hash ngẫu nhiên nên không khớp mật khẩu nào
+     */
+    public static Credential dummyLike(Credential template) {
+        return switch (template.scheme) {
+            case SHA256 -> new Credential(PasswordScheme.SHA256, null, randomBytes(template.hash.length), null, 0);
+            case PBKDF2_SHA256 -> new Credential(PasswordScheme.PBKDF2_SHA256, null, randomBytes(template.hash.length),
+                    randomBytes(template.salt.length), template.iterations);
+            case BCRYPT -> {
+                // $2a$<cost>$ + 53 ký tự salt/hash
+                StringBuilder sb = new StringBuilder(template.encoded.trim().substring(0, 7));
+                for (int i = 0; i < 53; i++) {
+                    sb.append(BCRYPT_ALPHABET.charAt(RANDOM.nextInt(BCRYPT_ALPHABET.length())));
+                }
+                yield new Credential(PasswordScheme.BCRYPT, sb.toString(), null, null, 0);
+            }
+            default -> template;
+        };
+    }
+
+    /**
+     * Chi phí băm của credential để so sánh các account: scheme + số vòng (PBKDF2) hoặc cost (bcrypt)
+     */
+    public String costKey() {
+        return switch (scheme) {
+            case PBKDF2_SHA256 -> scheme + ":" + iterations + ":" + hash.length;
+            case BCRYPT -> scheme + ":" + encoded.trim().substring(4, 6);
+            default -> scheme.name();
+        };
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        RANDOM.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static Credential unsupported(String stored) {
+        return new Credential(PasswordScheme.UNSUPPORTED, stored, null, null, 0);
+    }
+
+    private static boolean isHex(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.digit(value.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public PasswordScheme getScheme() {
+        return scheme;
+    }
+
+    String getEncoded() {
+        return encoded;
+    }
+
+    byte[] getHash() {
+        return hash;
+    }
+
+    byte[] getSalt() {
+        return salt;
+    }
+
+    int getIterations() {
+        return iterations;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof Credential other && scheme == other.scheme && Objects.equals(encoded, other.encoded);
+    }
+
+    @Override
+    public int hashCode() {
+        return encoded == null ? 0 : encoded.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        // Không bao giờ in hash/salt ra log
+        return "Credential[" + scheme + "]";
+    }
+}
@@ -0,0 +1,213 @@
+package com.neo.ftpserver.permission;
+
+import com.neo.ftpserver.constans.PasswordScheme;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Kiểm tra mật khẩu theo Credential đã biên dịch trong snapshot quyền.
+ * <p>
+ * So sánh digest luôn bằng MessageDigest.isEqual (thời gian hằng). Với scheme chậm (PBKDF2, bcrypt),
+ * kết quả đúng được nhớ ngắn hạn theo account để đợt reconnect hàng loạt không phải băm lại;
+ * cache chỉ giữ digest có salt ngẫu nhiên theo tiến trình của mật khẩu, không giữ plaintext.
+ */
+@Slf4j
+@Component
+public class CredentialVerifier {
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> newDigest("SHA-256"));
+    private static final ThreadLocal<SecretKeyFactory> PBKDF2 = ThreadLocal.withInitial(CredentialVerifier::newPbkdf2);
+
+    // BCrypt.checkpw(String, String) của spring-security-crypto nếu có trên classpath
+    private static final Method BCRYPT_CHECKPW = findBcrypt();
+
+    @Value("${ftp.auth.verified-cache.enabled:true}")
+    private boolean cacheEnabled;
+
+    @Value("${ftp.auth.verified-cache.ttl-ms:300000}")
+    private long cacheTtlMs;
+
+    @Value("${ftp.auth.verified-cache.max-entries:10000}")
+    private int cacheMaxEntries;
+
+    private final byte[] cacheSalt = new byte[16];
+    private final ConcurrentHashMap<String, Verified> verified = new ConcurrentHashMap<>();
+
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    private record Verified(Credential credential, byte[] proof, long expiresAt) {
+    }
+
+    public CredentialVerifier() {
+        new SecureRandom().nextBytes(cacheSalt);
+    }
+
+    private static MessageDigest newDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(algorithm + " not available", e);
+        }
+    }
+
+    private static SecretKeyFactory newPbkdf2() {
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("PBKDF2WithHmacSHA256 not available", e);
+        }
+    }
+
+    private static Method findBcrypt() {
+        try {
+            return Class.forName("org.springframework.security.crypto.bcrypt.BCrypt").getMethod("checkpw", String.class, String.class);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Trả về true nếu password khớp credential của account
+     */
+    public boolean verify(String account, Credential credential, String password) {
+        if (credential == null || password == null) {
+            failures.increment();
+            return false;
+        }
+        boolean ok = switch (credential.getScheme()) {
+            case SHA256 -> verifySha256(credential, password);
+            case PBKDF2_SHA256, BCRYPT -> verifySlow(account, credential, password);
+            default -> {
+                log.warn("Unsupported password format for account {}", account);
+                yield false;
+            }
+        };
+        if (!ok) {
+            failures.increment();
+        }
+        return ok;
+    }
+
+    /**
+     * Account không tồn tại: vẫn băm mật khẩu một lần với credential giả cùng scheme/chi phí với đa số account
+     * (AccountAuthorizationCache.getDummyCredential) để thời gian phản hồi không cho biết account có tồn tại hay không.
+     * Không đi qua cache xác thực: cache chỉ trúng khi mật khẩu đúng, mật khẩu sai của account thật vẫn băm đủ vòng.
+     */
+    public void verifyDummy(Credential dummy, String password) {
+        String value = password != null ? password : "";
+        switch (dummy.getScheme()) {
+            case SHA256 -> verifySha256(dummy, value);
+            case PBKDF2_SHA256, BCRYPT -> verifyScheme(dummy, value);
+            default -> {
+            }
+        }
+    }
+
+    private boolean verifySha256(Credential credential, String password) {
+        MessageDigest digest = SHA256.get();
+        byte[] actual = digest.digest(password.getBytes(StandardCharsets.UTF_8));
+        return MessageDigest.isEqual(actual, credential.getHash());
+    }
+
+    private boolean verifySlow(String account, Credential credential, String password) {
+        if (!cacheEnabled) {
+            return verifyScheme(credential, password);
+        }
+        long now = System.currentTimeMillis();
+        byte[] proof = proof(account, password);
+        Verified entry = verified.get(account);
+        if (entry != null && entry.expiresAt() > now && entry.credential().equals(credential)
+                && MessageDigest.isEqual(entry.proof(), proof)) {
+            cacheHits.increment();
+            return true;
+        }
+        cacheMisses.increment();
+        if (!verifyScheme(credential, password)) {
+            // Mật khẩu sai không được làm mất mục đã xác thực của account
+            return false;
+        }
+        if (verified.size() >= cacheMaxEntries) {
+            evict(now);
+        }
+        verified.put(account, new Verified(credential, proof, now + cacheTtlMs));
+        return true;
+    }
+
+    private byte[] proof(String account, String password) {
+        MessageDigest digest = SHA256.get();
+        digest.update(cacheSalt);
+        digest.update(account.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        return digest.digest(password.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void evict(long now) {
+        verified.values().removeIf(entry -> entry.expiresAt() <= now);
+        if (verified.size() >= cacheMaxEntries) {
+            verified.clear();
+        }
+    }
+
+    private boolean verifyScheme(Credential credential, String password) {
+        if (credential.getScheme() == PasswordScheme.PBKDF2_SHA256) {
+            PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), credential.getSalt(), credential.getIterations(),
+                    credential.getHash().length * 8);
+            try {
+                byte[] actual = PBKDF2.get().generateSecret(spec).getEncoded();
+                return MessageDigest.isEqual(actual, credential.getHash());
+            } catch (GeneralSecurityException e) {
+                log.error("PBKDF2 verification failed", e);
+                return false;
+            } finally {
+                spec.clearPassword();
+            }
+        }
+        if (BCRYPT_CHECKPW == null) {
+            log.error("bcrypt password found but spring-security-crypto is not on the classpath");
+            return false;
+        }
+        try {
+            return (Boolean) BCRYPT_CHECKPW.invoke(null, password, credential.getEncoded());
+        } catch (ReflectiveOperationException e) {
+            log.error("bcrypt verification failed", e);
+            return false;
+        }
+    }
+
+    /**
+     * Bỏ kết quả đã nhớ của account (đổi mật khẩu, khóa account)
+     */
+    public void invalidate(String account) {
+        verified.remove(account);
+    }
+
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public int getCachedCount() {
+        return verified.size();
+    }
+}
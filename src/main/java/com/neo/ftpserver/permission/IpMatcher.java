@@ -0,0 +1,234 @@
+package com.neo.ftpserver.permission;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.math.BigInteger;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+
+/**
+ * Bộ so khớp IP whitelist đã được biên dịch sẵn từ cột ipList.
+ * <p>
+ * Hỗ trợ các dạng (phân tách bởi dấu phẩy):
+ * <ul>
+ *     <li>IP đơn: {@code 10.0.0.5}, {@code 2001:db8::1}</li>
+ *     <li>CIDR: {@code 10.0.0.0/8}, {@code 2001:db8::/32}</li>
+ *     <li>Dải: {@code 10.0.0.1-10.0.0.50}</li>
+ *     <li>Wildcard IPv4: {@code 192.168.1.*}, {@code 10.*.*.*}</li>
+ *     <li>{@code *}: cho phép tất cả</li>
+ * </ul>
+ * Mọi dạng đều được quy về CIDR và nạp vào {@link IpPrefixTrie}, tra cứu O(độ dài prefix).
+ */
+@Slf4j
+public final class IpMatcher {
+
+    private static final IpMatcher ALLOW_ALL = new IpMatcher(true, null, null);
+
+    private final boolean allowAll;
+    private final IpPrefixTrie ipv4;
+    private final IpPrefixTrie ipv6;
+
+    private IpMatcher(boolean allowAll, IpPrefixTrie ipv4, IpPrefixTrie ipv6) {
+        this.allowAll = allowAll;
+        this.ipv4 = ipv4;
+        this.ipv6 = ipv6;
+    }
+
+    /**
+     * Biên dịch danh sách IP. Rỗng hoặc có phần tử "*" nghĩa là không giới hạn.
+     * Phần tử sai định dạng bị bỏ qua (ghi log cảnh báo).
+     */
+    public static IpMatcher compile(String ipList) {
+        if (ipList == null || ipList.isBlank()) {
+            return ALLOW_ALL;
+        }
+        IpPrefixTrie ipv4 = new IpPrefixTrie(32);
+        IpPrefixTrie ipv6 = new IpPrefixTrie(128);
+        for (String raw : ipList.split(",")) {
+            String entry = raw.trim();
+            if (entry.isEmpty()) {
+                continue;
+            }
+            if ("*".equals(entry)) {
+                return ALLOW_ALL;
+            }
+            try {
+                addEntry(entry, ipv4, ipv6);
+            } catch (IllegalArgumentException e) {
+                log.warn("Invalid IP whitelist entry '{}': {}", entry, e.getMessage());
+            }
+        }
+        return new IpMatcher(false, ipv4, ipv6);
+    }
+
+    public boolean isAllowAll() {
+        return allowAll;
+    }
+
+    public boolean matches(InetAddress address) {
+        if (allowAll) {
+            return true;
+        }
+        if (address == null) {
+            return false;
+        }
+        if (address instanceof Inet4Address) {
+            byte[] b = address.getAddress();
+            return ipv4.containsIpv4(((b[0] & 0xff) << 24) | ((b[1] & 0xff) << 16) | ((b[2] & 0xff) << 8) | (b[3] & 0xff));
+        }
+        return ipv6.contains(address.getAddress());
+    }
+
+    public boolean matches(String clientIp) {
+        if (allowAll) {
+            return true;
+        }
+        if (clientIp == null) {
+            return false;
+        }
+        long packed = parseIpv4(clientIp);
+        if (packed >= 0) {
+            return ipv4.containsIpv4((int) packed);
+        }
+        try {
+            return ipv6.contains(parseAddress(clientIp));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static void addEntry(String entry, IpPrefixTrie ipv4, IpPrefixTrie ipv6) {
+        int dash = entry.indexOf('-');
+        if (dash > 0) {
+            byte[] start = parseAddress(entry.substring(0, dash).trim());
+            byte[] end = parseAddress(entry.substring(dash + 1).trim());
+            if (start.length != end.length) {
+                throw new IllegalArgumentException("range mixes IPv4 and IPv6");
+            }
+            addRange(start, end, start.length == 4 ? ipv4 : ipv6);
+            return;
+        }
+        int slash = entry.indexOf('/');
+        if (slash > 0) {
+            byte[] address = parseAddress(entry.substring(0, slash).trim());
+            int prefix = Integer.parseInt(entry.substring(slash + 1).trim());
+            if (prefix < 0 || prefix > address.length * 8) {
+                throw new IllegalArgumentException("invalid prefix length " + prefix);
+            }
+            (address.length == 4 ? ipv4 : ipv6).insert(address, prefix);
+            return;
+        }
+        if (entry.indexOf('*') >= 0) {
+            addIpv4Wildcard(entry, ipv4);
+            return;
+        }
+        byte[] address = parseAddress(entry);
+        (address.length == 4 ? ipv4 : ipv6).insert(address, address.length * 8);
+    }
+
+    /**
+     * Wildcard chỉ được ở các octet cuối, ví dụ 10.1.*.* tương đương 10.1.0.0/16
+     */
+    private static void addIpv4Wildcard(String entry, IpPrefixTrie ipv4) {
+        String[] octets = entry.split("\\.");
+        if (octets.length != 4) {
+            throw new IllegalArgumentException("wildcard must have 4 octets");
+        }
+        byte[] address = new byte[4];
+        int prefix = 32;
+        for (int i = 0; i < 4; i++) {
+            if ("*".equals(octets[i])) {
+                if (prefix == 32) {
+                    prefix = i * 8;
+                }
+            } else if (prefix != 32) {
+                throw new IllegalArgumentException("wildcard only allowed in trailing octets");
+            } else {
+                address[i] = (byte) parseOctet(octets[i]);
+            }
+        }
+        ipv4.insert(address, prefix);
+    }
+
+    /**
+     * Tách dải [start, end] thành tập CIDR tối thiểu
+     */
+    private static void addRange(byte[] start, byte[] end, IpPrefixTrie trie) {
+        int bits = start.length * 8;
+        BigInteger current = new BigInteger(1, start);
+        BigInteger last = new BigInteger(1, end);
+        if (current.compareTo(last) > 0) {
+            throw new IllegalArgumentException("range start is after range end");
+        }
+        while (current.compareTo(last) <= 0) {
+            int size = current.signum() == 0 ? bits : current.getLowestSetBit();
+            while (size > 0 && current.add(BigInteger.ONE.shiftLeft(size)).subtract(BigInteger.ONE).compareTo(last) > 0) {
+                size--;
+            }
+            trie.insert(toBytes(current, start.length), bits - size);
+            current = current.add(BigInteger.ONE.shiftLeft(size));
+        }
+    }
+
+    private static byte[] toBytes(BigInteger value, int length) {
+        byte[] raw = value.toByteArray();
+        byte[] result = new byte[length];
+        int copy = Math.min(raw.length, length);
+        System.arraycopy(raw, raw.length - copy, result, length - copy, copy);
+        return result;
+    }
+
+    private static byte[] parseAddress(String text) {
+        long packed = parseIpv4(text);
+        if (packed >= 0) {
+            return new byte[]{(byte) (packed >>> 24), (byte) (packed >>> 16), (byte) (packed >>> 8), (byte) packed};
+        }
+        if (text.indexOf(':') < 0) {
+            throw new IllegalArgumentException("not an IP literal");
+        }
+        try {
+            // Chuỗi có ':' luôn được coi là literal IPv6, không phân giải DNS
+            return InetAddress.getByName(text).getAddress();
+        } catch (Exception e) {
+            throw new IllegalArgumentException("not an IP literal");
+        }
+    }
+
+    /**
+     * Parse IPv4 dạng a.b.c.d thành số không dấu 32 bit, trả về -1 nếu không hợp lệ
+     */
+    private static long parseIpv4(String text) {
+        long result = 0;
+        int octet = 0;
+        int digits = 0;
+        int dots = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                octet = octet * 10 + (c - '0');
+                if (++digits > 3 || octet > 255) {
+                    return -1;
+                }
+            } else if (c == '.' && digits > 0 && dots < 3) {
+                result = (result << 8) | octet;
+                octet = 0;
+                digits = 0;
+                dots++;
+            } else {
+                return -1;
+            }
+        }
+        if (dots != 3 || digits == 0) {
+            return -1;
+        }
+        return (result << 8) | octet;
+    }
+
+    private static int parseOctet(String text) {
+        int value = Integer.parseInt(text);
+        if (value < 0 || value > 255) {
+            throw new IllegalArgumentException("invalid octet " + text);
+        }
+        return value;
+    }
+}
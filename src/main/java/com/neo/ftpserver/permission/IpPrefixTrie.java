@@ -0,0 +1,93 @@
+package com.neo.ftpserver.permission;
+
+import java.util.Arrays;
+
+/**
+ * Cây tiền tố nhị phân (binary trie) lưu các dải CIDR của một họ địa chỉ (IPv4 hoặc IPv6).
+ * Node được lưu trong mảng int nên tra cứu không cấp phát bộ nhớ, chi phí O(độ dài prefix).
+ */
+final class IpPrefixTrie {
+
+    private static final int NONE = 0;
+
+    private final int bits;
+    // Node 0 là gốc; con = 0 nghĩa là không có (gốc không bao giờ là con)
+    private int[] zero = new int[16];
+    private int[] one = new int[16];
+    private boolean[] terminal = new boolean[16];
+    private int nodeCount = 1;
+
+    IpPrefixTrie(int bits) {
+        this.bits = bits;
+    }
+
+    boolean isEmpty() {
+        return nodeCount == 1 && !terminal[0];
+    }
+
+    void insert(byte[] address, int prefixLength) {
+        int node = 0;
+        for (int i = 0; i < prefixLength; i++) {
+            if (terminal[node]) {
+                return; // Đã có dải rộng hơn bao phủ
+            }
+            int[] branch = bit(address, i) == 0 ? zero : one;
+            int next = branch[node];
+            if (next == NONE) {
+                next = newNode();
+                // Mảng có thể đã được cấp phát lại trong newNode()
+                (bit(address, i) == 0 ? zero : one)[node] = next;
+            }
+            node = next;
+        }
+        terminal[node] = true;
+    }
+
+    boolean contains(byte[] address) {
+        if (address.length * 8 != bits) {
+            return false;
+        }
+        int node = 0;
+        for (int i = 0; i < bits; i++) {
+            if (terminal[node]) {
+                return true;
+            }
+            node = bit(address, i) == 0 ? zero[node] : one[node];
+            if (node == NONE) {
+                return false;
+            }
+        }
+        return terminal[node];
+    }
+
+    /**
+     * Tra cứu IPv4 đã đóng gói thành int, tránh cấp phát mảng byte
+     */
+    boolean containsIpv4(int address) {
+        int node = 0;
+        for (int i = 0; i < 32; i++) {
+            if (terminal[node]) {
+                return true;
+            }
+            node = ((address >>> (31 - i)) & 1) == 0 ? zero[node] : one[node];
+            if (node == NONE) {
+                return false;
+            }
+        }
+        return terminal[node];
+    }
+
+    private int newNode() {
+        if (nodeCount == zero.length) {
+            int capacity = zero.length * 2;
+            zero = Arrays.copyOf(zero, capacity);
+            one = Arrays.copyOf(one, capacity);
+            terminal = Arrays.copyOf(terminal, capacity);
+        }
+        return nodeCount++;
+    }
+
+    private static int bit(byte[] address, int index) {
+        return (address[index >>> 3] >>> (7 - (index & 7))) & 1;
+    }
+}
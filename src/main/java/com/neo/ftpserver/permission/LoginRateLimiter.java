@@ -0,0 +1,295 @@
+package com.neo.ftpserver.permission;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Chống dò mật khẩu và flood kết nối: đếm đăng nhập sai theo IP và theo account, số kết nối mới theo IP
+ * trong cửa sổ trượt; vượt ngưỡng thì cấm với thời gian tăng gấp đôi mỗi lần tái phạm (tới ban-max-ms).
+ * <p>
+ * Trạng thái nằm trong LRU có giới hạn, chia stripe theo hash để các luồng ít tranh chấp;
+ * quét phân tán từ rất nhiều IP chỉ đẩy các mục cũ ra ngoài, bộ nhớ không tăng.
+ */
+@Slf4j
+@Component
+public class LoginRateLimiter {
+
+    @Value("${ftp.limiter.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ftp.limiter.window-ms:60000}")
+    private long windowMs;
+
+    @Value("${ftp.limiter.ip-max-failures:10}")
+    private int ipMaxFailures;
+
+    @Value("${ftp.limiter.account-max-failures:5}")
+    private int accountMaxFailures;
+
+    // Số kết nối mới tối đa từ một IP trong cửa sổ, 0 = không giới hạn
+    @Value("${ftp.limiter.ip-max-connections:120}")
+    private int ipMaxConnections;
+
+    @Value("${ftp.limiter.ban-base-ms:60000}")
+    private long banBaseMs;
+
+    @Value("${ftp.limiter.ban-max-ms:3600000}")
+    private long banMaxMs;
+
+    @Value("${ftp.limiter.max-entries:100000}")
+    private int maxEntries;
+
+    @Value("${ftp.limiter.stripes:32}")
+    private int stripeCount;
+
+    private Stripe[] ipStripes;
+    private Stripe[] accountStripes;
+
+    private final LongAdder ipBans = new LongAdder();
+    private final LongAdder accountBans = new LongAdder();
+    private final LongAdder rejectedConnections = new LongAdder();
+    private final LongAdder rejectedLogins = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Trạng thái của một IP hoặc account
+     */
+    static final class Subject {
+        final SlidingWindowCounter failures;
+        final SlidingWindowCounter connections;
+        volatile long bannedUntil;
+        // Số lần đã bị cấm liên tiếp, quyết định thời gian cấm kế tiếp
+        int strikes;
+        long lastBanEnd;
+
+        Subject(long windowMs) {
+            failures = new SlidingWindowCounter(windowMs);
+            connections = new SlidingWindowCounter(windowMs);
+        }
+
+        boolean isBanned(long now) {
+            return bannedUntil > now;
+        }
+    }
+
+    /**
+     * Một phần của LRU, truy cập trong synchronized(stripe)
+     */
+    private final class Stripe extends LinkedHashMap<String, Subject> {
+        private final int capacity;
+
+        Stripe(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Subject> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        int stripes = Integer.highestOneBit(Math.max(1, stripeCount));
+        int perStripe = Math.max(16, maxEntries / stripes);
+        ipStripes = new Stripe[stripes];
+        accountStripes = new Stripe[stripes];
+        for (int i = 0; i < stripes; i++) {
+            ipStripes[i] = new Stripe(perStripe);
+            accountStripes[i] = new Stripe(perStripe);
+        }
+    }
+
+    private Subject subject(Stripe[] stripes, String key, boolean create) {
+        int h = key.hashCode();
+        Stripe stripe = stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+        synchronized (stripe) {
+            Subject subject = stripe.get(key);
+            if (subject == null && create) {
+                subject = new Subject(windowMs);
+                stripe.put(key, subject);
+            }
+            return subject;
+        }
+    }
+
+    /**
+     * Gọi khi có kết nối mới (trước handshake TLS): false nếu IP đang bị cấm hoặc vừa vượt ngưỡng kết nối
+     */
+    public boolean tryConnect(String ip) {
+        if (!enabled || ip == null) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        Subject subject = subject(ipStripes, ip, true);
+        if (subject.isBanned(now)) {
+            rejectedConnections.increment();
+            return false;
+        }
+        if (ipMaxConnections > 0 && subject.connections.increment(now) > ipMaxConnections) {
+            ban(subject, "IP", ip, now, ipBans);
+            rejectedConnections.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * true nếu IP hoặc account đang bị cấm đăng nhập
+     */
+    public boolean isLoginBlocked(String ip, String account) {
+        if (!enabled) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        Subject ipSubject = ip != null ? subject(ipStripes, ip, false) : null;
+        Subject accountSubject = account != null ? subject(accountStripes, account, false) : null;
+        if ((ipSubject != null && ipSubject.isBanned(now)) || (accountSubject != null && accountSubject.isBanned(now))) {
+            rejectedLogins.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Đăng nhập sai (kể cả account không tồn tại): tăng bộ đếm IP và account, cấm nếu vượt ngưỡng
+     */
+    public void recordFailure(String ip, String account) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (ip != null) {
+            Subject subject = subject(ipStripes, ip, true);
+            if (subject.failures.increment(now) >= ipMaxFailures) {
+                ban(subject, "IP", ip, now, ipBans);
+            }
+        }
+        if (account != null) {
+            Subject subject = subject(accountStripes, account, true);
+            if (subject.failures.increment(now) >= accountMaxFailures) {
+                ban(subject, "account", account, now, accountBans);
+            }
+        }
+    }
+
+    /**
+     * Đăng nhập đúng: xóa số lần sai của account (IP giữ nguyên để vẫn bắt được dò nhiều account từ một IP)
+     */
+    public void recordSuccess(String account) {
+        if (!enabled || account == null) {
+            return;
+        }
+        Subject subject = subject(accountStripes, account, false);
+        if (subject != null) {
+            subject.failures.reset();
+        }
+    }
+
+    private void ban(Subject subject, String kind, String key, long now, LongAdder counter) {
+        long until;
+        synchronized (subject) {
+            if (subject.isBanned(now)) {
+                return;
+            }
+            // Hết án đủ lâu (bằng thời gian cấm tối đa) thì bắt đầu lại từ mức cơ bản
+            if (now - subject.lastBanEnd > banMaxMs) {
+                subject.strikes = 0;
+            }
+            long duration = Math.min(banMaxMs, banBaseMs << Math.min(subject.strikes, 20));
+            subject.strikes++;
+            until = now + duration;
+            subject.lastBanEnd = until;
+            subject.bannedUntil = until;
+            subject.failures.reset();
+            subject.connections.reset();
+        }
+        counter.increment();
+        log.warn(">> Banned {} {} for {}ms (strike {})", kind, key, until - now, subject.strikes);
+    }
+
+    /**
+     * Gỡ cấm thủ công
+     */
+    public void unban(String ip, String account) {
+        if (ip != null) {
+            Subject subject = subject(ipStripes, ip, false);
+            if (subject != null) {
+                subject.bannedUntil = 0;
+            }
+        }
+        if (account != null) {
+            Subject subject = subject(accountStripes, account, false);
+            if (subject != null) {
+                subject.bannedUntil = 0;
+            }
+        }
+    }
+
+    private static int countBanned(Stripe[] stripes, long now) {
+        int count = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                for (Subject subject : stripe.values()) {
+                    if (subject.isBanned(now)) {
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    private static int countEntries(Stripe[] stripes) {
+        int count = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                count += stripe.size();
+            }
+        }
+        return count;
+    }
+
+    public int getActiveIpBans() {
+        return countBanned(ipStripes, System.currentTimeMillis());
+    }
+
+    public int getActiveAccountBans() {
+        return countBanned(accountStripes, System.currentTimeMillis());
+    }
+
+    public int getTrackedEntries() {
+        return countEntries(ipStripes) + countEntries(accountStripes);
+    }
+
+    public long getIpBanCount() {
+        return ipBans.sum();
+    }
+
+    public long getAccountBanCount() {
+        return accountBans.sum();
+    }
+
+    public long getRejectedConnections() {
+        return rejectedConnections.sum();
+    }
+
+    public long getRejectedLogins() {
+        return rejectedLogins.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+}
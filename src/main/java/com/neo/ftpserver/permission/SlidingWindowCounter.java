@@ -0,0 +1,57 @@
+package com.neo.ftpserver.permission;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bộ đếm cửa sổ trượt không khóa: cửa sổ chia thành SLOTS ô, mỗi ô là một long gói (số thứ tự ô << 24 | count).
+ * Ô cũ được tái sử dụng bằng CAS khi sang chu kỳ mới, tổng chỉ cộng các ô còn nằm trong cửa sổ.
+ */
+final class SlidingWindowCounter {
+
+    static final int SLOTS = 6;
+    private static final int COUNT_BITS = 24;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    private final AtomicLongArray slots = new AtomicLongArray(SLOTS);
+    private final long slotMillis;
+
+    SlidingWindowCounter(long windowMillis) {
+        this.slotMillis = Math.max(1, windowMillis / SLOTS);
+    }
+
+    /**
+     * Tăng 1 và trả về tổng trong cửa sổ tính cả lần này
+     */
+    int increment(long now) {
+        long epoch = now / slotMillis;
+        int index = (int) (epoch % SLOTS);
+        while (true) {
+            long current = slots.get(index);
+            long next = (current >>> COUNT_BITS) == epoch
+                    ? current + (((current & COUNT_MASK) < COUNT_MASK) ? 1 : 0)
+                    : (epoch << COUNT_BITS) | 1;
+            if (slots.compareAndSet(index, current, next)) {
+                break;
+            }
+        }
+        return sum(now);
+    }
+
+    int sum(long now) {
+        long epoch = now / slotMillis;
+        int total = 0;
+        for (int i = 0; i < SLOTS; i++) {
+            long value = slots.get(i);
+            if (epoch - (value >>> COUNT_BITS) < SLOTS) {
+                total += (int) (value & COUNT_MASK);
+            }
+        }
+        return total;
+    }
+
+    void reset() {
+        for (int i = 0; i < SLOTS; i++) {
+            slots.set(i, 0);
+        }
+    }
+}
@@ -1,9 +1,10 @@
 package com.neo.ftpserver.permission;
 
-import com.neo.ftpserver.cache.AccountFtpCache;
-import com.neo.ftpserver.cache.AccountFtpRoleCache;
-import com.neo.ftpserver.dto.AccountFtpDto;
-import com.neo.ftpserver.dto.AccountFtpRoleDto;
+import com.neo.ftpserver.cache.AccountAuthorizationCache;
+import com.neo.ftpserver.constans.AuthFailureReason;
+import com.neo.ftpserver.constans.FtpCommand;
+import com.neo.ftpserver.ftp.InFlightTransfers;
+import com.neo.ftpserver.metrics.FtpMetrics;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.ftpserver.ftplet.*;
@@ -11,56 +12,77 @@ import org.apache.ftpserver.impl.FtpIoSession;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.List;
+import java.net.InetAddress;
+import java.util.EnumSet;
+import java.util.Set;
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class UnifiedFtplet extends DefaultFtplet {
 
-    private final AccountFtpCache accountFtpCache;
-    private final AccountFtpRoleCache accountFtpRoleCache;
+    // Lệnh mở kết nối dữ liệu để truyền file, bị từ chối khi server đang drain
+    private static final Set<FtpCommand> TRANSFER_COMMANDS = EnumSet.of(FtpCommand.STOR, FtpCommand.STOU, FtpCommand.APPE, FtpCommand.RETR);
+
+    private final AccountAuthorizationCache authorizationCache;
+    private final FtpMetrics metrics;
+    private final LoginRateLimiter loginRateLimiter;
+    private final InFlightTransfers inFlightTransfers;
 
     @Override
     public FtpletResult beforeCommand(FtpSession session, FtpRequest request) throws FtpException, IOException {
-        String command = request.getCommand().toUpperCase();
-        String clientIp = session.getClientAddress().getAddress().getHostAddress();
-
-        log.debug("Processing command: {} from IP: {}", command, clientIp);
+        // Mốc thời gian cho histogram độ trễ lệnh, AuditLogFtplet.afterCommand chốt lại
+        metrics.commandStarted();
+        // FtpServer đã upper-case tên lệnh khi parse request
+        String rawCommand = request.getCommand();
+        FtpCommand command = FtpCommand.of(rawCommand);
+
+        // Server đang tắt: không bắt đầu lần truyền mới, client kết nối lại sang node khác
+        if (command != null && TRANSFER_COMMANDS.contains(command) && inFlightTransfers.isDraining()) {
+            session.write(new DefaultFtpReply(421, "Server is shutting down, please reconnect"));
+            metrics.commandRejected(421);
+            return FtpletResult.DISCONNECT;
+        }
 
         // Bước 1: Kiểm tra USER command - chỉ validate IP tại thời điểm login
-        if ("USER".equals(command)) {
-            return handleUserCommand(session, request, clientIp);
+        if (command == FtpCommand.USER) {
+            return handleUserCommand(session, request, session.getClientAddress().getAddress());
         }
 
         // Bước 2: Kiểm tra PASS command - validate login và connection type
-        if ("PASS".equals(command)) {
-            return handlePassCommand(session, request, clientIp);
+        if (command == FtpCommand.PASS) {
+            return handlePassCommand(session, request);
         }
 
         // Bước 3: Kiểm tra các lệnh khác - validate permissions
-        return handleOtherCommands(session, command);
+        return handleOtherCommands(session, command, rawCommand);
     }
 
     /**
      * Xử lý lệnh USER - Chỉ kiểm tra IP whitelist
      */
-    private FtpletResult handleUserCommand(FtpSession session, FtpRequest request, String clientIp) throws FtpException {
+    private FtpletResult handleUserCommand(FtpSession session, FtpRequest request, InetAddress clientAddress) throws FtpException {
         String username = request.getArgument();
+        String clientIp = clientAddress.getHostAddress();
+        // IP/account đang bị cấm: từ chối trước khi tra cache, không log từng lần để tránh flood log
+        if (loginRateLimiter.isLoginBlocked(clientIp, username)) {
+            return rejectBlocked(session);
+        }
         log.info("User login attempt: {} from IP: {}", username, clientIp);
 
-        // Lấy thông tin user từ cache để kiểm tra IP
-        AccountFtpDto ftpUser = accountFtpCache.getObject(username);
-        if (ftpUser == null) {
+        // Lấy thông tin quyền đã biên dịch để kiểm tra IP
+        AccountAuthorization authorization = authorizationCache.get(username);
+        if (authorization == null) {
             log.warn("User not found in cache: {}", username);
             return FtpletResult.DEFAULT; // Để FTP server xử lý authentication
         }
 
         // Kiểm tra IP whitelist
-        if (!isIpAllowedForUser(ftpUser, clientIp)) {
+        if (!authorization.isIpAllowed(clientAddress)) {
             log.warn("IP {} not allowed for user: {}", clientIp, username);
             session.write(new DefaultFtpReply(530, "Connection not allowed from your IP address"));
+            metrics.authFailed(AuthFailureReason.IP_DENIED);
+            metrics.commandRejected(530);
             closeSession(session);
             return FtpletResult.SKIP;
         }
@@ -72,101 +94,61 @@ public class UnifiedFtplet extends DefaultFtplet {
     /**
      * Xử lý lệnh PASS - Kiểm tra connection type sau khi authenticate
      */
-    private FtpletResult handlePassCommand(FtpSession session, FtpRequest request, String clientIp) {
+    private FtpletResult handlePassCommand(FtpSession session, FtpRequest request) throws FtpException {
         // Lưu ý: User chưa được authenticate tại thời điểm này
         // Cần kiểm tra connection type sau khi login thành công
+        // Lệnh cấm có thể đến giữa USER và PASS (nhiều phiên song song cùng dò) → kiểm tra lại trước khi verify mật khẩu
+        if (loginRateLimiter.isLoginBlocked(session.getClientAddress().getAddress().getHostAddress(), session.getUserArgument())) {
+            return rejectBlocked(session);
+        }
         return FtpletResult.DEFAULT;
     }
 
+    private FtpletResult rejectBlocked(FtpSession session) throws FtpException {
+        session.write(new DefaultFtpReply(421, "Too many failed login attempts, try again later"));
+        metrics.authFailed(AuthFailureReason.BANNED);
+        metrics.commandRejected(421);
+        // Ftplet nhận DefaultFtpSession (không phải FtpIoSession) nên phải để FtpServer đóng phiên sau khi gửi reply
+        return FtpletResult.DISCONNECT;
+    }
+
     /**
      * Xử lý các lệnh khác - Kiểm tra connection type và command permissions
      */
-    private FtpletResult handleOtherCommands(FtpSession session, String command) throws FtpException {
+    private FtpletResult handleOtherCommands(FtpSession session, FtpCommand command, String rawCommand) throws FtpException {
         User user = session.getUser();
         if (user == null) {
-            log.debug("No authenticated user for command: {}", command);
             return FtpletResult.DEFAULT;
         }
 
         String username = user.getName();
-        AccountFtpDto ftpUser = accountFtpCache.getObject(username);
-        if (ftpUser == null) {
+        AccountAuthorization authorization = authorizationCache.get(username);
+        if (authorization == null) {
             log.warn("User data not found in cache: {}", username);
             return FtpletResult.DEFAULT;
         }
 
-        // Kiểm tra connection type (chỉ lần đầu sau khi login)
-        if (!isConnectionTypeAllowed(session, ftpUser)) {
+        // Kiểm tra connection type (FTP/FTPS)
+        if (!authorization.isConnectionAllowed(session.isSecure())) {
             log.warn("Connection type not allowed for user: {}", username);
             session.write(new DefaultFtpReply(530, "Connection type (FTP/FTPS) not allowed for your account"));
+            metrics.authFailed(AuthFailureReason.CONNECTION_TYPE);
+            metrics.commandRejected(530);
             closeSession(session);
             return FtpletResult.SKIP;
         }
 
         // Kiểm tra command permissions
-        AccountFtpRoleDto roleDto = accountFtpRoleCache.getObject(ftpUser.getRoleAccess());
-        if (roleDto != null && roleDto.getCmdsDenied() != null && roleDto.getCmdsDenied().contains(command)) {
-            log.warn("Command {} denied for user {} with role {}", command, username, ftpUser.getRoleAccess());
+        if (authorization.isCommandDenied(command, rawCommand)) {
+            log.warn("Command {} denied for user {} with role {}", rawCommand, username, authorization.getRoleAccess());
             session.write(new DefaultFtpReply(550, "Permission denied: Command not allowed"));
+            metrics.commandRejected(550);
             return FtpletResult.SKIP;
         }
 
         return FtpletResult.DEFAULT;
     }
 
-    /**
-     * Kiểm tra IP có được phép cho user không
-     * Sử dụng IpRestrictionPermission từ authorities
-     */
-    private boolean isIpAllowedForUser(AccountFtpDto ftpUser, String clientIp) {
-        // Nếu không có IP restriction, cho phép tất cả
-        if (ftpUser.getIpList() == null || ftpUser.getIpList().isEmpty()) {
-            log.debug("No IP restriction for user: {}", ftpUser.getAccount());
-            return true;
-        }
-        if (ftpUser.getIpList().contains("*")) {
-            return true;
-        }
-        List<String> stringList = Arrays.stream(ftpUser.getIpList().split(",")).map(String::trim).toList();
-        // Kiểm tra IP trong whitelist
-        boolean allowed = stringList.contains(clientIp);
-
-        log.debug("IP {} check result for user {}: {}", clientIp, ftpUser.getAccount(), allowed);
-        return allowed;
-    }
-
-    /**
-     * Kiểm tra connection type (FTP/FTPS) có được phép không
-     */
-    private boolean isConnectionTypeAllowed(FtpSession session, AccountFtpDto ftpUser) {
-        boolean isSecure = session.isSecure();
-        int requiredType = ftpUser.getTypeConnect(); // 1 = FTP only, 2 = FTPS only, 3 = Both
-
-        log.info("Connection validation - User: {}, IsSecure: {}, RequiredType: {}",
-                ftpUser.getAccount(), isSecure, requiredType);
-
-        // Type 3 = cho phép cả FTP và FTPS
-        if (requiredType == 3) {
-            return true;
-        }
-
-        // Type 1 = chỉ cho phép FTP (không secure)
-        // Type 2 = chỉ cho phép FTPS (secure)
-        return (requiredType == 1 && !isSecure) || (requiredType == 2 && isSecure);
-    }
-
-    /**
-     * Convert IP string to long
-     */
-    private long ipToLong(String ip) {
-        String[] octets = ip.split("\\.");
-        long result = 0;
-        for (int i = 0; i < 4; i++) {
-            result |= (Long.parseLong(octets[i]) << (24 - (8 * i)));
-        }
-        return result;
-    }
-
     /**
      * Đóng session một cách an toàn
      */
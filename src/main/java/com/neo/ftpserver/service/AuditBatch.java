@@ -0,0 +1,83 @@
+package com.neo.ftpserver.service;
+
+/**
+ * Lô sự kiện audit lưu theo cột, cấp phát một lần và dùng lại giữa các lần flush.
+ * Chỉ luồng consumer của pipeline truy cập.
+ */
+final class AuditBatch {
+
+    final String[] username;
+    final String[] action;
+    final String[] filePath;
+    final long[] fileSize;
+    final boolean[] hasFileSize;
+    final long[] durationMs;
+    final boolean[] hasDuration;
+    final String[] clientIp;
+    final boolean[] secure;
+    final long[] timestampMillis;
+    private int size;
+    private long firstEventAt;
+
+    AuditBatch(int capacity) {
+        username = new String[capacity];
+        action = new String[capacity];
+        filePath = new String[capacity];
+        fileSize = new long[capacity];
+        hasFileSize = new boolean[capacity];
+        durationMs = new long[capacity];
+        hasDuration = new boolean[capacity];
+        clientIp = new String[capacity];
+        secure = new boolean[capacity];
+        timestampMillis = new long[capacity];
+    }
+
+    void add(AuditEvent event) {
+        if (size == 0) {
+            firstEventAt = System.currentTimeMillis();
+        }
+        username[size] = event.getUsername();
+        action[size] = event.getAction();
+        filePath[size] = event.getFilePath();
+        fileSize[size] = event.getFileSize();
+        hasFileSize[size] = event.isHasFileSize();
+        durationMs[size] = event.getDurationMs();
+        hasDuration[size] = event.isHasDuration();
+        clientIp[size] = event.getClientIp();
+        secure[size] = event.isSecure();
+        timestampMillis[size] = event.getTimestampMillis();
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isFull() {
+        return size == username.length;
+    }
+
+    long getFirstEventAt() {
+        return firstEventAt;
+    }
+
+    void writeJson(AuditJsonWriter writer, StringBuilder out) {
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                out.append('\n');
+            }
+            writer.write(username[i], action[i], filePath[i], hasFileSize[i], fileSize[i],
+                    hasDuration[i], durationMs[i], clientIp[i], secure[i], timestampMillis[i], out);
+        }
+    }
+
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            username[i] = null;
+            action[i] = null;
+            filePath[i] = null;
+            clientIp[i] = null;
+        }
+        size = 0;
+    }
+}
@@ -0,0 +1,86 @@
+package com.neo.ftpserver.service;
+
+import com.neo.ftpserver.logger.LogFtp;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ghi trực tiếp một lô audit vào bảng ftp_audit_log qua logJdbcTemplate (chế độ direct)
+ */
+@Slf4j
+@Component
+public class AuditDbWriter {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    // Câu insert theo dialect của DB log, cùng cách dò với LogFtp
+    private final LogFtp logFtp;
+
+    // Khóa idempotent cho bản ghi ghi trực tiếp: tiền tố theo tiến trình + số thứ tự tăng dần
+    private final String keyPrefix = "d:" + ManagementFactory.getRuntimeMXBean().getName() + ":" + System.currentTimeMillis() + ":";
+    private final AtomicLong keySequence = new AtomicLong();
+
+    @Autowired
+    public AuditDbWriter(@Qualifier("logJdbcTemplate") JdbcTemplate logJdbcTemplate,
+                         PlatformTransactionManager transactionManager,
+                         LogFtp logFtp) {
+        this.jdbcTemplate = logJdbcTemplate;
+        this.logFtp = logFtp;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Insert cả lô trong một transaction; ném exception nếu lỗi để caller chuyển sang spool file
+     */
+    void write(AuditBatch batch) {
+        long firstKey = keySequence.getAndAdd(batch.size());
+        transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.batchUpdate(logFtp.getSql(), new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ps.setString(1, keyPrefix + (firstKey + i));
+                        ps.setString(2, batch.username[i]);
+                        ps.setString(3, batch.action[i]);
+                        ps.setString(4, batch.filePath[i]);
+                        if (batch.hasFileSize[i]) {
+                            ps.setLong(5, batch.fileSize[i]);
+                        } else {
+                            ps.setNull(5, Types.NUMERIC);
+                        }
+                        ps.setString(6, batch.clientIp[i]);
+                        ps.setBoolean(7, batch.secure[i]);
+                        ps.setTimestamp(8, new Timestamp(batch.timestampMillis[i]));
+                        if (batch.hasDuration[i]) {
+                            ps.setLong(9, batch.durationMs[i]);
+                        } else {
+                            ps.setNull(9, Types.NUMERIC);
+                        }
+                        if (batch.hasDuration[i] && batch.hasFileSize[i]) {
+                            ps.setLong(10, AuditJsonWriter.throughput(batch.fileSize[i], batch.durationMs[i]));
+                        } else {
+                            ps.setNull(10, Types.NUMERIC);
+                        }
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return batch.size();
+                    }
+                }));
+    }
+}
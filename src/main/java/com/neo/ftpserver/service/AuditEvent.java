@@ -0,0 +1,50 @@
+package com.neo.ftpserver.service;
+
+import lombok.Getter;
+
+/**
+ * Một ô trong ring buffer audit. Được cấp phát sẵn và tái sử dụng,
+ * producer ghi đè các trường rồi publish, consumer đọc trước khi trả ô lại.
+ */
+@Getter
+public final class AuditEvent {
+    private String username;
+    private String action;
+    private String filePath;
+    private long fileSize;
+    private boolean hasFileSize;
+    // Thời gian truyền (STOR/APPE/RETR), dùng cùng fileSize để tính tốc độ
+    private long durationMs;
+    private boolean hasDuration;
+    private String clientIp;
+    private boolean secure;
+    private long timestampMillis;
+
+    void set(String username, String action, String filePath, Long fileSize, Long durationMs,
+             String clientIp, boolean secure, long timestampMillis) {
+        this.username = username;
+        this.action = action;
+        this.filePath = filePath;
+        this.hasFileSize = fileSize != null;
+        this.fileSize = fileSize != null ? fileSize : 0L;
+        this.hasDuration = durationMs != null;
+        this.durationMs = durationMs != null ? durationMs : 0L;
+        this.clientIp = clientIp;
+        this.secure = secure;
+        this.timestampMillis = timestampMillis;
+    }
+
+    /**
+     * Xóa tham chiếu để ô trống không giữ String của sự kiện cũ
+     */
+    void clear() {
+        this.username = null;
+        this.action = null;
+        this.filePath = null;
+        this.clientIp = null;
+    }
+
+    public Long getFileSizeOrNull() {
+        return hasFileSize ? fileSize : null;
+    }
+}
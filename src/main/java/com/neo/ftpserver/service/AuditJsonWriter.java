@@ -0,0 +1,95 @@
+package com.neo.ftpserver.service;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Ghi AuditEvent ra JSON cùng định dạng với FtpAuditLog vào một StringBuilder dùng lại.
+ * Không thread-safe: mỗi luồng ghi dùng một instance riêng.
+ */
+final class AuditJsonWriter {
+
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss")
+            .withZone(ZoneId.systemDefault());
+
+    // Timestamp có độ phân giải giây nên chỉ format lại khi sang giây mới
+    private long cachedSecond = Long.MIN_VALUE;
+    private String cachedTimestamp;
+
+    void write(AuditEvent event, StringBuilder out) {
+        write(event.getUsername(), event.getAction(), event.getFilePath(), event.isHasFileSize(), event.getFileSize(),
+                event.isHasDuration(), event.getDurationMs(), event.getClientIp(), event.isSecure(), event.getTimestampMillis(), out);
+    }
+
+    void write(String username, String action, String filePath, boolean hasFileSize, long fileSize,
+               boolean hasDuration, long durationMs, String clientIp, boolean secure, long timestampMillis, StringBuilder out) {
+        out.append("{\"username\":");
+        appendString(out, username);
+        out.append(",\"action\":");
+        appendString(out, action);
+        out.append(",\"filePath\":");
+        appendString(out, filePath);
+        out.append(",\"fileSize\":");
+        if (hasFileSize) {
+            out.append(fileSize);
+        } else {
+            out.append("null");
+        }
+        // Chỉ sự kiện truyền file mới có durationMs/throughput, bỏ hẳn field với sự kiện khác cho dòng log gọn
+        if (hasDuration) {
+            out.append(",\"durationMs\":").append(durationMs);
+            if (hasFileSize) {
+                out.append(",\"throughput\":").append(throughput(fileSize, durationMs));
+            }
+        }
+        out.append(",\"clientIp\":");
+        appendString(out, clientIp);
+        out.append(",\"secure\":").append(secure);
+        out.append(",\"timestamp\":");
+        appendString(out, formatTimestamp(timestampMillis));
+        out.append('}');
+    }
+
+    /**
+     * Tốc độ trung bình byte/s; truyền xong dưới 1ms tính như 1ms
+     */
+    static long throughput(long bytes, long durationMs) {
+        return bytes * 1000L / Math.max(1L, durationMs);
+    }
+
+    String formatTimestamp(long timestampMillis) {
+        long second = Math.floorDiv(timestampMillis, 1000L);
+        if (second != cachedSecond) {
+            cachedTimestamp = TIMESTAMP_FORMAT.format(Instant.ofEpochSecond(second));
+            cachedSecond = second;
+        }
+        return cachedTimestamp;
+    }
+
+    private static void appendString(StringBuilder out, String value) {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+}
@@ -0,0 +1,86 @@
+package com.neo.ftpserver.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Ring buffer có giới hạn, nhiều producer - một consumer (MPSC), không dùng khóa.
+ * <p>
+ * Producer giành sequence bằng CAS, ghi vào ô đã cấp phát sẵn rồi đánh dấu publish.
+ * Consumer duy nhất đọc lần lượt các ô đã publish và tiến consumer sequence để trả chỗ.
+ */
+final class AuditRingBuffer {
+
+    private final AuditEvent[] slots;
+    // published[i] = sequence đã được publish vào ô i (-1 nếu chưa có)
+    private final AtomicLongArray published;
+    private final int mask;
+    private final AtomicLong producerSequence = new AtomicLong();
+    private final AtomicLong consumerSequence = new AtomicLong();
+
+    AuditRingBuffer(int requestedCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(2, requestedCapacity - 1)) << 1;
+        this.slots = new AuditEvent[capacity];
+        this.published = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new AuditEvent();
+            published.set(i, -1L);
+        }
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+
+    /**
+     * Số sự kiện đang chờ consumer xử lý
+     */
+    long size() {
+        return producerSequence.get() - consumerSequence.get();
+    }
+
+    /**
+     * Ghi sự kiện vào buffer, trả về false nếu buffer đầy
+     */
+    boolean offer(String username, String action, String filePath, Long fileSize, Long durationMs,
+                  String clientIp, boolean secure, long timestampMillis) {
+        long sequence;
+        do {
+            sequence = producerSequence.get();
+            if (sequence - consumerSequence.get() >= slots.length) {
+                return false;
+            }
+        } while (!producerSequence.compareAndSet(sequence, sequence + 1));
+        int index = (int) sequence & mask;
+        slots[index].set(username, action, filePath, fileSize, durationMs, clientIp, secure, timestampMillis);
+        published.lazySet(index, sequence);
+        return true;
+    }
+
+    /**
+     * Chỉ consumer gọi: lấy tối đa maxEvents sự kiện đã publish, trả về số sự kiện đã xử lý
+     */
+    int drain(EventHandler handler, int maxEvents) {
+        long next = consumerSequence.get();
+        int processed = 0;
+        while (processed < maxEvents) {
+            int index = (int) next & mask;
+            if (published.get(index) != next) {
+                break;
+            }
+            handler.onEvent(slots[index]);
+            slots[index].clear();
+            next++;
+            processed++;
+        }
+        if (processed > 0) {
+            consumerSequence.lazySet(next);
+        }
+        return processed;
+    }
+
+    interface EventHandler {
+        void onEvent(AuditEvent event);
+    }
+}
@@ -1,43 +1,348 @@
 package com.neo.ftpserver.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.neo.ftpserver.dto.FtpAuditLog;
+import com.neo.ftpserver.constans.AuditBackpressure;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * Pipeline audit bất đồng bộ: ftplet chỉ ghi sự kiện vào ring buffer (MPSC),
+ * một luồng riêng serialize theo lô và ghi ra logger log-inbound.
+ * <p>
+ * Ở chế độ direct, lô được insert thẳng vào ftp_audit_log; file log-inbound chỉ còn
+ * là spool dự phòng (write-ahead) khi DB lỗi hoặc chậm.
+ */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class FtpAuditService {
 
-    private final ObjectMapper objectMapper;
     private static final Logger logger = LoggerFactory.getLogger("log-inbound");
 
+    @Value("${audit.pipeline.capacity:8192}")
+    private int capacity;
+
+    @Value("${audit.pipeline.batch-size:256}")
+    private int batchSize;
+
+    @Value("${audit.pipeline.backpressure:BLOCK}")
+    private AuditBackpressure backpressure;
+
+    // Thời gian consumer nghỉ khi hàng đợi rỗng
+    @Value("${audit.pipeline.idle-wait-ms:5}")
+    private long idleWaitMs;
+
+    @Value("${audit.direct.enabled:false}")
+    private boolean directEnabled;
+
+    @Value("${audit.direct.batch-size:1000}")
+    private int directBatchSize;
+
+    @Value("${audit.direct.flush-interval-ms:1000}")
+    private long directFlushIntervalMs;
+
+    // Lô commit lâu hơn ngưỡng này bị coi là DB chậm → tạm chuyển sang spool file
+    @Value("${audit.direct.slow-threshold-ms:5000}")
+    private long directSlowThresholdMs;
+
+    @Value("${audit.direct.retry-after-ms:30000}")
+    private long directRetryAfterMs;
+
+    private final AuditDbWriter dbWriter;
+
+    private AuditRingBuffer ringBuffer;
+    private AuditBatch directBatch;
+    // Thời điểm được thử lại DB sau khi lỗi/chậm, 0 = đang ghi DB bình thường
+    private volatile long directSuspendedUntil;
+    private Thread consumer;
+    private volatile boolean running;
+
+    // Bộ đệm dùng lại của consumer
+    private final StringBuilder batchBuffer = new StringBuilder(64 * 1024);
+    private final AuditJsonWriter batchWriter = new AuditJsonWriter();
+    private int batchCount;
+
+    private final LongAdder publishedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder spilledCount = new LongAdder();
+    private final LongAdder blockedCount = new LongAdder();
+    private final LongAdder writtenCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder directWrittenCount = new LongAdder();
+    private final LongAdder spooledCount = new LongAdder();
+    private final LongAdder directFailureCount = new LongAdder();
+
+    @PostConstruct
+    public void start() {
+        ringBuffer = new AuditRingBuffer(capacity);
+        if (directEnabled) {
+            directBatch = new AuditBatch(directBatchSize);
+        }
+        running = true;
+        consumer = new Thread(this::consumeLoop, "ftp-audit-writer");
+        consumer.setDaemon(true);
+        consumer.start();
+        log.info(">> Audit pipeline started: capacity={}, batchSize={}, backpressure={}, direct={}", ringBuffer.capacity(), batchSize, backpressure, directEnabled);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+            try {
+                consumer.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        log.info(">> Audit pipeline stopped: published={}, written={}, direct={}, spooled={}, dropped={}, spilled={}",
+                publishedCount.sum(), writtenCount.sum(), directWrittenCount.sum(), spooledCount.sum(), droppedCount.sum(), spilledCount.sum());
+    }
+
     public void logEvent(String username, String action, String filePath, Long fileSize,
                          String clientIp, boolean isSecure) {
-        try {
-            LocalDateTime timestamp = LocalDateTime.now();
-
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
-            String formatted = timestamp.format(formatter);
-            FtpAuditLog log = FtpAuditLog.builder()
-                    .username(username)
-                    .action(action)
-                    .filePath(filePath)
-                    .fileSize(fileSize)
-                    .clientIp(clientIp)
-                    .isSecure(isSecure)
-                    .timestamp(formatted)
-                    .build();
-            String logApiStr = objectMapper.writeValueAsString(log);
-            logger.info("{}", logApiStr);
-        } catch (JsonProcessingException e) {
-            e.printStackTrace();
+        publish(username, action, filePath, fileSize, null, clientIp, isSecure, System.currentTimeMillis());
+    }
+
+    /**
+     * Publish sự kiện với thời điểm xảy ra do luồng gọi ghi nhận (dùng khi sự kiện được publish bất đồng bộ)
+     */
+    public void logEvent(String username, String action, String filePath, Long fileSize,
+                         String clientIp, boolean isSecure, long now) {
+        publish(username, action, filePath, fileSize, null, clientIp, isSecure, now);
+    }
+
+    /**
+     * Sự kiện truyền file: số byte thực tế và thời gian truyền đo trên stream dữ liệu
+     */
+    public void logTransfer(String username, String action, String filePath, long bytes, long durationMs,
+                            String clientIp, boolean isSecure, long now) {
+        publish(username, action, filePath, bytes, durationMs, clientIp, isSecure, now);
+    }
+
+    private void publish(String username, String action, String filePath, Long fileSize, Long durationMs,
+                         String clientIp, boolean isSecure, long now) {
+        if (ringBuffer.offer(username, action, filePath, fileSize, durationMs, clientIp, isSecure, now)) {
+            publishedCount.increment();
+            return;
+        }
+        switch (backpressure) {
+            case DROP -> droppedCount.increment();
+            case SPILL -> spill(username, action, filePath, fileSize, durationMs, clientIp, isSecure, now);
+            default -> block(username, action, filePath, fileSize, durationMs, clientIp, isSecure, now);
+        }
+    }
+
+    private void block(String username, String action, String filePath, Long fileSize, Long durationMs,
+                       String clientIp, boolean isSecure, long now) {
+        blockedCount.increment();
+        while (!ringBuffer.offer(username, action, filePath, fileSize, durationMs, clientIp, isSecure, now)) {
+            if (!running) {
+                // Pipeline đã dừng, không còn ai tiêu thụ → ghi thẳng
+                spill(username, action, filePath, fileSize, durationMs, clientIp, isSecure, now);
+                return;
+            }
+            LockSupport.parkNanos(100_000L);
+        }
+        publishedCount.increment();
+    }
+
+    /**
+     * Ghi đồng bộ trên luồng gọi khi buffer đầy
+     */
+    private void spill(String username, String action, String filePath, Long fileSize, Long durationMs,
+                       String clientIp, boolean isSecure, long now) {
+        AuditEvent event = new AuditEvent();
+        event.set(username, action, filePath, fileSize, durationMs, clientIp, isSecure, now);
+        StringBuilder line = new StringBuilder(256);
+        new AuditJsonWriter().write(event, line);
+        logger.info("{}", line);
+        spilledCount.increment();
+    }
+
+    private void consumeLoop() {
+        while (running || ringBuffer.size() > 0) {
+            int drained;
+            try {
+                drained = ringBuffer.drain(this::appendToBatch, batchSize);
+                flushBatch();
+                flushDirectBatch(false);
+            } catch (Exception e) {
+                log.error(">> Audit pipeline write failed, {} events lost", batchCount, e);
+                failedCount.add(batchCount);
+                resetBatch();
+                continue;
+            }
+            if (drained == 0 && running) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(idleWaitMs));
+            }
+        }
+        // Dừng pipeline: đẩy nốt lô direct còn lại
+        flushDirectBatch(true);
+    }
+
+    private void appendToBatch(AuditEvent event) {
+        if (isDirectActive()) {
+            directBatch.add(event);
+            if (directBatch.isFull()) {
+                flushDirectBatch(true);
+            }
+            return;
+        }
+        if (batchCount > 0) {
+            batchBuffer.append('\n');
+        }
+        batchWriter.write(event, batchBuffer);
+        batchCount++;
+    }
+
+    private boolean isDirectActive() {
+        if (directBatch == null) {
+            return false;
+        }
+        if (directSuspendedUntil != 0 && System.currentTimeMillis() >= directSuspendedUntil) {
+            directSuspendedUntil = 0;
+            log.info(">> Audit direct mode resumed");
         }
+        return directSuspendedUntil == 0;
+    }
+
+    private void flushBatch() {
+        if (batchCount == 0) {
+            return;
+        }
+        // Một lần ghi cho cả lô, mỗi sự kiện vẫn là một dòng trong file
+        logger.info(batchBuffer.toString());
+        writtenCount.add(batchCount);
+        resetBatch();
+    }
+
+    /**
+     * Insert lô direct khi đủ kích thước hoặc quá flush-interval; lỗi thì spool ra file log-inbound
+     */
+    private void flushDirectBatch(boolean force) {
+        if (directBatch == null || directBatch.size() == 0) {
+            return;
+        }
+        if (!force && !directBatch.isFull()
+                && System.currentTimeMillis() - directBatch.getFirstEventAt() < directFlushIntervalMs) {
+            return;
+        }
+        int rows = directBatch.size();
+        if (directSuspendedUntil == 0) {
+            long start = System.currentTimeMillis();
+            try {
+                dbWriter.write(directBatch);
+                long duration = System.currentTimeMillis() - start;
+                directWrittenCount.add(rows);
+                writtenCount.add(rows);
+                directBatch.clear();
+                if (duration > directSlowThresholdMs) {
+                    suspendDirect("slow commit " + duration + "ms");
+                }
+                return;
+            } catch (Exception e) {
+                directFailureCount.increment();
+                log.error(">> Audit direct insert failed for {} rows, spooling to file", rows, e);
+                suspendDirect(e.getMessage());
+            }
+        }
+        spoolDirectBatch();
+    }
+
+    private void suspendDirect(String reason) {
+        directSuspendedUntil = System.currentTimeMillis() + directRetryAfterMs;
+        log.warn(">> Audit direct mode suspended for {}ms: {}", directRetryAfterMs, reason);
+    }
+
+    private void spoolDirectBatch() {
+        int rows = directBatch.size();
+        // Ghi nốt các dòng file đang chờ trước khi dùng lại buffer
+        flushBatch();
+        directBatch.writeJson(batchWriter, batchBuffer);
+        logger.info(batchBuffer.toString());
+        spooledCount.add(rows);
+        writtenCount.add(rows);
+        directBatch.clear();
+        resetBatch();
+    }
+
+    private void resetBatch() {
+        batchCount = 0;
+        batchBuffer.setLength(0);
+        // Không để buffer phình mãi sau một lô lớn bất thường
+        if (batchBuffer.capacity() > 1024 * 1024) {
+            batchBuffer.trimToSize();
+        }
+    }
+
+    /**
+     * Chờ tới khi mọi sự kiện đã publish được ghi xong hoặc hết thời gian, trả về true nếu đã ghi hết
+     */
+    public boolean flush(long timeoutMs) {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (!isDrained() && System.currentTimeMillis() < deadline) {
+            LockSupport.unpark(consumer);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        return isDrained();
+    }
+
+    private boolean isDrained() {
+        return writtenCount.sum() + failedCount.sum() >= publishedCount.sum();
+    }
+
+    public long getQueuedCount() {
+        return ringBuffer.size();
+    }
+
+    public long getPublishedCount() {
+        return publishedCount.sum();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    public long getSpilledCount() {
+        return spilledCount.sum();
+    }
+
+    public long getBlockedCount() {
+        return blockedCount.sum();
+    }
+
+    public long getWrittenCount() {
+        return writtenCount.sum();
+    }
+
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    public long getDirectWrittenCount() {
+        return directWrittenCount.sum();
+    }
+
+    public long getSpooledCount() {
+        return spooledCount.sum();
+    }
+
+    public long getDirectFailureCount() {
+        return directFailureCount.sum();
+    }
+
+    public boolean isDirectSuspended() {
+        return directSuspendedUntil != 0;
     }
 }
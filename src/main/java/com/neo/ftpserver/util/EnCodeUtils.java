@@ -98,7 +98,6 @@ public class EnCodeUtils {
     public static String getEncodeSHA256(String value) {
         String key = "";
         try {
-            logger.debug("input: {}", value);
             MessageDigest digest = MessageDigest.getInstance("SHA-256");
             byte[] hash = digest.digest(value.getBytes(StandardCharsets.UTF_8));
             key = bytesToHex(hash);
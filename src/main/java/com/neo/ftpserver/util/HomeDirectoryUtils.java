@@ -0,0 +1,37 @@
+package com.neo.ftpserver.util;
+
+import com.neo.ftpserver.dto.AccountFtpDto;
+import lombok.experimental.UtilityClass;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+@UtilityClass
+public class HomeDirectoryUtils {
+
+    /**
+     * Xác định home directory của account (không tạo thư mục)
+     */
+    public static Path resolveHomeDirectory(AccountFtpDto accountFtpDto) {
+        String folderAccess = accountFtpDto.getFolderAccess();
+        String folderFix = accountFtpDto.getFolderFix();
+        String account = accountFtpDto.getAccount();
+        Path homePath;
+        // Logic xây dựng home directory
+        if (folderAccess != null && !folderAccess.trim().isEmpty()) {
+            // Trường hợp 1: Có folderAccess
+            homePath = Paths.get(folderAccess.trim());
+
+            // Nếu có folderFix, append vào sau folderAccess
+            if (folderFix != null && !folderFix.trim().isEmpty()) {
+                homePath = homePath.resolve(folderFix.trim());
+            }
+        } else {
+            // Trường hợp 2: Không có folderAccess → dùng folder mặc định
+            homePath = Paths.get(account);
+        }
+        Path rootFolder = Paths.get("ftp").resolve(homePath);
+        // Normalize và convert về absolute path
+        return rootFolder.normalize().toAbsolutePath();
+    }
+}
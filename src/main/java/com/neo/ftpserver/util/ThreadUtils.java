@@ -0,0 +1,52 @@
+package com.neo.ftpserver.util;
+
+import lombok.experimental.UtilityClass;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Slf4j
+@UtilityClass
+public class ThreadUtils {
+
+    // Thread.ofVirtual() chỉ có từ JDK 21, tra qua reflection để vẫn build/chạy được trên JDK 17
+    private static final Method OF_VIRTUAL = findOfVirtual();
+
+    private static Method findOfVirtual() {
+        try {
+            return Thread.class.getMethod("ofVirtual");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    public static boolean isVirtualThreadSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * ThreadFactory đặt tên prefix-N; virtual = true dùng virtual thread nếu JVM hỗ trợ, ngược lại daemon platform thread
+     */
+    public static ThreadFactory newThreadFactory(String prefix, boolean virtual) {
+        if (virtual && OF_VIRTUAL != null) {
+            try {
+                // Thread.ofVirtual().name(prefix, 0).factory()
+                // Lấy method từ interface public Thread.Builder, class cài đặt nằm trong java.lang không truy cập được
+                Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+                Object builder = OF_VIRTUAL.invoke(null);
+                builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+                return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                log.warn(">> Virtual thread factory unavailable for {}, using platform threads", prefix, e);
+            }
+        }
+        AtomicInteger sequence = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + sequence.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}